@@ -61,14 +61,14 @@ public class DataInitializer {
                     createProfile("bobwilson", "Bob Wilson", "Data Scientist")
                 );
                 
-                // Set user reference in profiles before saving
+                // Set owning user id in profiles before saving
                 for (User user : users) {
                     UserProfile profile = profiles.stream()
                         .filter(p -> p.getUsername().equals(user.getUsername()))
                         .findFirst()
                         .orElse(null);
                     if (profile != null) {
-                        profile.setUser(user);
+                        profile.setUserId(user.getId());
                     }
                 }
 
@@ -83,10 +83,10 @@ public class DataInitializer {
                             newProfile.setUsername(user.getUsername());
                             newProfile.setDisplayName(user.getUsername());
                             newProfile.setStatus("Online");
-                            newProfile.setUser(user); // Set user reference here too
+                            newProfile.setUserId(user.getId()); // Set owning user id here too
                             return profileRepository.save(newProfile);
                         });
-                    user.setProfile(profile);
+                    user.setProfileId(profile.getId().toHexString());
                     userRepository.save(user);
                 });
                 
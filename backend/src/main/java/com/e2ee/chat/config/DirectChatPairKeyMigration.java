@@ -0,0 +1,148 @@
+package com.e2ee.chat.config;
+
+import com.e2ee.chat.model.Chat;
+import com.e2ee.chat.model.Message;
+import com.e2ee.chat.model.User;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Backfill of Chat.pairKey on direct chats created before the unique pairKey index.
+ * Direct chats are processed oldest first in batches. The first chat of a participant pair
+ * gets the pairKey; any further chat of the same pair is merged into it (messages, message
+ * ids, users' chat lists, latest preview) and deleted, so the unique index can be built and
+ * createChatWithUser finds the existing history. The index is created here, right after the
+ * backfill, so it never sees duplicates; the runner is a no-op once every direct chat has
+ * its pairKey.
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class DirectChatPairKeyMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public CommandLineRunner migrateDirectChatPairKeys() {
+        return args -> {
+            try {
+                Result result = migrate(
+                        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Chat.class)),
+                        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Message.class)),
+                        mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class)));
+                if (result.keyed() > 0 || result.merged() > 0) {
+                    log.info("Backfilled pairKey on {} direct chats, merged {} duplicate chats", result.keyed(), result.merged());
+                }
+                // One direct chat per participant pair; group chats have no pairKey
+                mongoTemplate.indexOps(Chat.class).ensureIndex(new Index("pairKey", Sort.Direction.ASC).unique().sparse());
+            } catch (Exception e) {
+                log.error("Error backfilling direct chat pairKeys: " + e.getMessage(), e);
+            }
+        };
+    }
+
+    record Result(int keyed, int merged) {
+    }
+
+    Result migrate(MongoCollection<Document> chats, MongoCollection<Document> messages, MongoCollection<Document> users) {
+        List<Object> unusable = new ArrayList<>();
+        // Chats keyed during this run, so duplicates inside the backlog find their canonical chat
+        Map<String, Document> canonicalByPair = new HashMap<>();
+        int keyed = 0;
+        int merged = 0;
+        while (true) {
+            Bson pending = Filters.and(
+                    Filters.exists("pairKey", false),
+                    Filters.ne("chatType", "group"),
+                    Filters.size("participants", 2),
+                    Filters.nin("_id", unusable));
+            List<Document> batch = chats.find(pending)
+                    .sort(Sorts.ascending("createdAt", "_id"))
+                    .limit(BATCH_SIZE)
+                    .into(new ArrayList<>());
+            if (batch.isEmpty()) {
+                return new Result(keyed, merged);
+            }
+
+            for (Document chat : batch) {
+                List<String> participants = chat.getList("participants", String.class);
+                if (participants.get(0) == null || participants.get(1) == null) {
+                    unusable.add(chat.get("_id"));
+                    continue;
+                }
+                String pairKey = Chat.pairKey(participants.get(0), participants.get(1));
+                Document canonical = canonicalByPair.get(pairKey);
+                if (canonical == null) {
+                    canonical = chats.find(Filters.eq("pairKey", pairKey)).first();
+                }
+                if (canonical == null) {
+                    chats.updateOne(Filters.eq("_id", chat.get("_id")), Updates.set("pairKey", pairKey));
+                    chat.put("pairKey", pairKey);
+                    canonicalByPair.put(pairKey, chat);
+                    keyed++;
+                } else {
+                    mergeInto(canonical, chat, chats, messages, users);
+                    canonicalByPair.put(pairKey, canonical);
+                    merged++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Move a duplicate chat's history into the canonical chat of its pair and delete it
+     */
+    private void mergeInto(Document canonical, Document duplicate, MongoCollection<Document> chats,
+            MongoCollection<Document> messages, MongoCollection<Document> users) {
+        String canonicalId = canonical.get("_id").toString();
+        String duplicateId = duplicate.get("_id").toString();
+        log.info("Merging duplicate direct chat {} into {}", duplicateId, canonicalId);
+
+        messages.updateMany(Filters.eq("chatId", duplicateId), Updates.set("chatId", canonicalId));
+
+        List<Bson> updates = new ArrayList<>();
+        List<String> messageIds = duplicate.getList("messageIds", String.class);
+        if (messageIds != null && !messageIds.isEmpty()) {
+            updates.add(Updates.addEachToSet("messageIds", messageIds));
+        }
+        Date canonicalUpdated = canonical.getDate("updatedAt");
+        Date duplicateUpdated = duplicate.getDate("updatedAt");
+        if (duplicateUpdated != null && (canonicalUpdated == null || duplicateUpdated.after(canonicalUpdated))) {
+            updates.add(Updates.set("updatedAt", duplicateUpdated));
+            updates.add(Updates.set("lastMessagePreview", duplicate.get("lastMessagePreview")));
+            canonical.put("updatedAt", duplicateUpdated);
+        }
+        if (!updates.isEmpty()) {
+            chats.updateOne(Filters.eq("_id", canonical.get("_id")), Updates.combine(updates));
+        }
+
+        Bson listsDuplicate = Filters.eq("chats", duplicateId);
+        users.updateMany(listsDuplicate, Updates.addToSet("chats", canonicalId));
+        users.updateMany(listsDuplicate, Updates.pull("chats", duplicateId));
+
+        chats.deleteOne(Filters.eq("_id", duplicate.get("_id")));
+    }
+}
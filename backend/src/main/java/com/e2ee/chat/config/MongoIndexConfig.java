@@ -10,19 +10,25 @@ import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
 import org.springframework.data.mongodb.core.index.TextIndexDefinition;
 import org.springframework.data.mongodb.core.index.TextIndexDefinition.TextIndexDefinitionBuilder;
 import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 
 import com.e2ee.chat.model.Chat;
 import com.e2ee.chat.model.ChatMessage;
 import com.e2ee.chat.model.Message;
+import com.e2ee.chat.model.ResumeTicket;
 import com.e2ee.chat.model.User;
 import com.e2ee.chat.model.UserProfile;
+import com.e2ee.chat.service.UserSearchService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.bson.Document;
 
+import java.time.Duration;
+
 /**
  * Configuration for MongoDB indices
  */
@@ -31,6 +37,12 @@ import org.bson.Document;
 @Slf4j
 public class MongoIndexConfig {
 
+    // Non-unique lookup index of the same keys, replaced by CLIENT_TEMP_ID_INDEX
+    private static final String LEGACY_CLIENT_TEMP_ID_INDEX = "senderId_1_clientTempId_1";
+    // Replaced by the (chatId, timestamp, _id) history index
+    private static final String LEGACY_CHAT_MESSAGES_INDEX = "chatId_1_timestamp_-1";
+    private static final String CLIENT_TEMP_ID_INDEX = "senderId_clientTempId_unique";
+
     private final MongoTemplate mongoTemplate;
 
     @Bean
@@ -43,19 +55,35 @@ public class MongoIndexConfig {
                 mongoTemplate.indexOps(Chat.class).ensureIndex(new Index("ownerId", Sort.Direction.ASC));
                 mongoTemplate.indexOps(Chat.class).ensureIndex(new Index("participants", Sort.Direction.ASC));
                 mongoTemplate.indexOps(Chat.class).ensureIndex(new Index("updatedAt", Sort.Direction.DESC));
+                // The unique pairKey index is built by DirectChatPairKeyMigration after its backfill
                 
                 // Create indices for Message collection
                 mongoTemplate.indexOps(Message.class).ensureIndex(new Index("chatId", Sort.Direction.ASC));
                 mongoTemplate.indexOps(Message.class).ensureIndex(new Index("senderId", Sort.Direction.ASC));
                 mongoTemplate.indexOps(Message.class).ensureIndex(new Index("timestamp", Sort.Direction.DESC));
                 
-                // Compound index for messages in a chat with timestamp
+                // History pages of a chat, newest first, with the message id as tie-breaker for cursors;
+                // the earlier (chatId, timestamp) index is a prefix of it and is dropped
+                dropIndexIfPresent(Message.class, LEGACY_CHAT_MESSAGES_INDEX);
                 Document chatMessagesIndex = new Document();
                 chatMessagesIndex.put("chatId", 1);
                 chatMessagesIndex.put("timestamp", -1);
+                chatMessagesIndex.put("_id", -1);
                 mongoTemplate.indexOps(Message.class)
                     .ensureIndex(new CompoundIndexDefinition(chatMessagesIndex));
                 
+                // One stored message per sender and clientTempId, so a resent message can never be
+                // inserted twice; partial because messages without a clientTempId are not deduplicated
+                dropIndexIfPresent(Message.class, LEGACY_CLIENT_TEMP_ID_INDEX);
+                Document clientTempIdIndex = new Document();
+                clientTempIdIndex.put("senderId", 1);
+                clientTempIdIndex.put("clientTempId", 1);
+                mongoTemplate.indexOps(Message.class)
+                    .ensureIndex(new CompoundIndexDefinition(clientTempIdIndex)
+                        .named(CLIENT_TEMP_ID_INDEX)
+                        .unique()
+                        .partial(PartialIndexFilter.of(Criteria.where("clientTempId").exists(true))));
+                
                 // Create indices for ChatMessage collection
                 mongoTemplate.indexOps(ChatMessage.class).ensureIndex(new Index("sender", Sort.Direction.ASC));
                 mongoTemplate.indexOps(ChatMessage.class).ensureIndex(new Index("recipient", Sort.Direction.ASC));
@@ -71,9 +99,18 @@ public class MongoIndexConfig {
                     .onField("displayName") 
                     .build();
                 mongoTemplate.indexOps(UserProfile.class).ensureIndex(textIndex);
+                // Multikey index for anchored prefix search on normalized username/displayName terms
+                mongoTemplate.indexOps(UserProfile.class).ensureIndex(new Index("searchTerms", Sort.Direction.ASC));
                 
                 // Create indices for User collection (avoid _id field)
                 mongoTemplate.indexOps(User.class).ensureIndex(new Index("username", Sort.Direction.ASC).unique());
+                // Principal lookup by JWT subject (profile id)
+                mongoTemplate.indexOps(User.class).ensureIndex(new Index("profileId", Sort.Direction.ASC).unique().sparse());
+                mongoTemplate.indexOps(UserProfile.class).ensureIndex(new Index("userId", Sort.Direction.ASC));
+                
+                // WebSocket resume tickets are removed once their resume window has passed
+                mongoTemplate.indexOps(ResumeTicket.class)
+                    .ensureIndex(new Index("expiresAt", Sort.Direction.ASC).expire(Duration.ZERO));
                 
                 log.info("MongoDB indices created successfully");
             } catch (Exception e) {
@@ -83,4 +120,22 @@ public class MongoIndexConfig {
             }
         };
     }
+
+    private void dropIndexIfPresent(Class<?> entityClass, String indexName) {
+        if (mongoTemplate.indexOps(entityClass).getIndexInfo().stream()
+                .anyMatch(index -> indexName.equals(index.getName()))) {
+            mongoTemplate.indexOps(entityClass).dropIndex(indexName);
+        }
+    }
+
+    @Bean
+    public CommandLineRunner buildUserSearchIndex(UserSearchService userSearchService) {
+        return args -> {
+            try {
+                userSearchService.rebuildIndex();
+            } catch (Exception e) {
+                log.error("Error building user search index: " + e.getMessage(), e);
+            }
+        };
+    }
 }
@@ -0,0 +1,100 @@
+package com.e2ee.chat.config;
+
+import com.e2ee.chat.model.User;
+import com.e2ee.chat.model.UserProfile;
+import com.mongodb.DBRef;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One-off migration from the old mutual @DBRef layout (users.profile / user_profiles.user)
+ * to plain id fields (users.profileId / user_profiles.userId).
+ * Documents are converted in batches; already migrated documents are skipped, so the runner
+ * is safe to keep enabled on every startup.
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class ProfileLinkMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public CommandLineRunner migrateProfileLinks() {
+        return args -> {
+            try {
+                int users = migrate(mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class)),
+                        "profile", "profileId");
+                int profiles = migrate(mongoTemplate.getCollection(mongoTemplate.getCollectionName(UserProfile.class)),
+                        "user", "userId");
+                if (users > 0 || profiles > 0) {
+                    log.info("Migrated DBRef links: {} users, {} profiles", users, profiles);
+                }
+            } catch (Exception e) {
+                log.error("Error migrating user/profile links: " + e.getMessage(), e);
+            }
+        };
+    }
+
+    /**
+     * Replace a DBRef field with the referenced id stored as a hex string
+     * @param collection Collection to migrate
+     * @param refField Legacy DBRef field name
+     * @param idField New plain id field name
+     * @return Number of documents migrated
+     */
+    private int migrate(MongoCollection<Document> collection, String refField, String idField) {
+        Bson pending = Filters.exists(refField);
+        int migrated = 0;
+        while (true) {
+            List<Document> batch = collection.find(pending)
+                    .projection(Projections.include(refField))
+                    .limit(BATCH_SIZE)
+                    .into(new ArrayList<>());
+            if (batch.isEmpty()) {
+                return migrated;
+            }
+
+            List<WriteModel<Document>> writes = new ArrayList<>(batch.size());
+            for (Document doc : batch) {
+                String refId = referencedId(doc.get(refField));
+                Bson update = refId != null
+                        ? Updates.combine(Updates.set(idField, refId), Updates.unset(refField))
+                        : Updates.unset(refField);
+                writes.add(new UpdateOneModel<>(Filters.eq("_id", doc.get("_id")), update));
+            }
+            collection.bulkWrite(writes);
+            migrated += writes.size();
+        }
+    }
+
+    private String referencedId(Object ref) {
+        Object id = null;
+        if (ref instanceof DBRef dbRef) {
+            id = dbRef.getId();
+        } else if (ref instanceof Document doc) {
+            id = doc.get("$id");
+        }
+        return id != null ? id.toString() : null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.e2ee.chat.config;
+
+import com.e2ee.chat.model.UserProfile;
+import com.e2ee.chat.util.SearchTextUtil;
+import com.e2ee.chat.util.UsernamePrefixIndex;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveCallback;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the normalized search fields and the in-memory username index in sync
+ * whenever a UserProfile is saved through Spring Data.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserProfileSearchCallback implements BeforeConvertCallback<UserProfile>, AfterSaveCallback<UserProfile> {
+
+    private final UsernamePrefixIndex usernamePrefixIndex;
+
+    @Override
+    @NonNull
+    public UserProfile onBeforeConvert(@NonNull UserProfile profile, @NonNull String collection) {
+        profile.setSearchTerms(SearchTextUtil.searchTerms(profile.getUsername(), profile.getDisplayName()));
+        return profile;
+    }
+
+    @Override
+    @NonNull
+    public UserProfile onAfterSave(@NonNull UserProfile profile, @NonNull Document document, @NonNull String collection) {
+        usernamePrefixIndex.put(profile.getId(), profile.getUsername());
+        return profile;
+    }
+}
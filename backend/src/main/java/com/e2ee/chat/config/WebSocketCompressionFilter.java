@@ -0,0 +1,58 @@
+package com.e2ee.chat.config;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Switch for permessage-deflate on WebSocket connections.
+ * Tomcat accepts permessage-deflate whenever a client offers it, so it is turned off by
+ * hiding the client's Sec-WebSocket-Extensions header from the upgrade when
+ * websocket.compression.enabled is false.
+ */
+@Component
+@Slf4j
+public class WebSocketCompressionFilter extends OncePerRequestFilter {
+
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
+    private final boolean compressionEnabled;
+
+    public WebSocketCompressionFilter(@Value("${websocket.compression.enabled:true}") boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+        log.info("WebSocket permessage-deflate {}", compressionEnabled ? "enabled" : "disabled");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return compressionEnabled || request.getHeader(EXTENSIONS_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        filterChain.doFilter(new HttpServletRequestWrapper(request) {
+            @Override
+            public String getHeader(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaders(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+            }
+        }, response);
+    }
+}
@@ -26,6 +26,8 @@ import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.lang.NonNull;
 
+import com.e2ee.chat.websocket.WebSocketCompressionMetrics;
+
 import java.security.Principal;
 
 @Configuration
@@ -33,9 +35,11 @@ import java.security.Principal;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
     private final WebSocketErrorHandler webSocketErrorHandler;
+    private final WebSocketCompressionMetrics compressionMetrics;
 
-    public WebSocketConfig(WebSocketErrorHandler webSocketErrorHandler) {
+    public WebSocketConfig(WebSocketErrorHandler webSocketErrorHandler, WebSocketCompressionMetrics compressionMetrics) {
         this.webSocketErrorHandler = webSocketErrorHandler;
+        this.compressionMetrics = compressionMetrics;
     }
 
     @Override
@@ -47,6 +51,11 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void registerStompEndpoints(@NonNull StompEndpointRegistry registry) {
+        // Raw WebSocket for clients that support it (the desktop client): no SockJS framing per frame
+        registry.addEndpoint("/ws-native")
+                .addInterceptors(new UsernameHandshakeInterceptor())
+                .setAllowedOriginPatterns("*");
+        // SockJS fallback for clients behind proxies that block the WebSocket upgrade
         registry.addEndpoint("/ws")
                 .addInterceptors(new UsernameHandshakeInterceptor())
                 .setAllowedOriginPatterns("*")
@@ -72,7 +81,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registry) {
         registry.setMessageSizeLimit(128 * 1024) // 128KB
                .setSendBufferSizeLimit(512 * 1024) // 512KB
-               .setSendTimeLimit(20000); // 20 seconds
+               .setSendTimeLimit(20000) // 20 seconds
+               .addDecoratorFactory(compressionMetrics::decorate); // permessage-deflate ratio metrics
     }
 
     @Override
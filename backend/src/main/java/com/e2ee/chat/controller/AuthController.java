@@ -2,6 +2,7 @@ package com.e2ee.chat.controller;
 
 import com.e2ee.chat.dto.AuthRequest;
 import com.e2ee.chat.dto.AuthResponse;
+import com.e2ee.chat.model.ProfileSummary;
 import com.e2ee.chat.model.User;
 import com.e2ee.chat.model.UserProfile;
 import com.e2ee.chat.security.JwtTokenProvider;
@@ -40,20 +41,24 @@ public class AuthController {
             log.debug("Authentication successful for user: {}", loginRequest.getUsername());
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
-            String jwt = tokenProvider.generateToken(authentication);
-            
-            User user = userService.findByUsername(loginRequest.getUsername());
-            UserProfile profile;
-            try {
-                profile = profileService.getProfile(loginRequest.getUsername());
-            } catch (RuntimeException e) {
-                // If profile doesn't exist, create one
-                profile = profileService.createProfile(user);
+
+            // The authenticated principal is the already-loaded User, no need to fetch it again
+            User user = (User) authentication.getPrincipal();
+            String displayName;
+            String publicKey = null;
+            if (user.getProfileId() == null) {
+                // If profile doesn't exist, create one (also links it on the user)
+                displayName = profileService.createProfile(user).getDisplayName();
+            } else {
+                ProfileSummary summary = profileService.getProfileSummary(loginRequest.getUsername());
+                displayName = summary.getDisplayName();
+                publicKey = summary.getPublicKey();
             }
+            String jwt = tokenProvider.generateToken(authentication);
             
             log.debug("Generated JWT token and retrieved/created profile for user: {}", loginRequest.getUsername());
             
-            return ResponseEntity.ok(new AuthResponse(jwt, loginRequest.getUsername(), profile.getDisplayName()));
+            return ResponseEntity.ok(new AuthResponse(jwt, loginRequest.getUsername(), displayName, publicKey));
         } catch (Exception e) {
             log.error("Authentication failed for user: {}", loginRequest.getUsername(), e);
             throw e;
@@ -78,6 +83,6 @@ public class AuthController {
         String jwt = tokenProvider.generateToken(authentication);
 
         log.debug("Registration successful for user: {}", registerRequest.getUsername());
-        return ResponseEntity.ok(new AuthResponse(jwt, user.getUsername(), profile.getDisplayName()));
+        return ResponseEntity.ok(new AuthResponse(jwt, user.getUsername(), profile.getDisplayName(), profile.getPublicKey()));
     }
 }
\ No newline at end of file
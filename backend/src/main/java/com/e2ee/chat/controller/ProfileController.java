@@ -1,18 +1,21 @@
 package com.e2ee.chat.controller;
 
+import com.e2ee.chat.dto.ProfileBatchRequest;
 import com.e2ee.chat.model.UserProfile;
 import com.e2ee.chat.service.ProfileService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
-import com.e2ee.chat.model.Chat;
-import com.e2ee.chat.service.ChatService;
+import java.util.TreeMap;
 
 @RestController
 @RequestMapping("/api/profile")
@@ -20,7 +23,6 @@ import com.e2ee.chat.service.ChatService;
 public class ProfileController {
 
     private final ProfileService profileService;
-    private final ChatService chatService;
 
     @GetMapping
     public ResponseEntity<UserProfile> getProfile(@AuthenticationPrincipal UserDetails userDetails) {
@@ -71,17 +73,47 @@ public class ProfileController {
         }
     }
 
+    /**
+     * Batch profile lookup for chat lists and group members: one $in query instead of one
+     * request per profile. Each profile carries an ETag; profiles whose ETag the client sent
+     * are listed under notModified instead of being returned again.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> getProfilesBatch(@RequestBody ProfileBatchRequest request) {
+        Map<String, String> known = request.getEtags() != null ? request.getEtags() : Map.of();
+        List<Map<String, String>> profiles = new ArrayList<>();
+        Map<String, String> etags = new HashMap<>();
+        List<String> notModified = new ArrayList<>();
+        if (request.getIds() != null) {
+            for (Map<String, String> profile : profileService.getProfilesByIds(request.getIds())) {
+                String profileId = profile.get("profileId");
+                String etag = etagOf(profile);
+                if (etag.equals(known.get(profileId))) {
+                    notModified.add(profileId);
+                } else {
+                    profiles.add(profile);
+                    etags.put(profileId, etag);
+                }
+            }
+        }
+        return ResponseEntity.ok(Map.of("profiles", profiles, "etags", etags, "notModified", notModified));
+    }
+
+    private static String etagOf(Map<String, String> profile) {
+        // Sorted so the tag only depends on the field values
+        String canonical = new TreeMap<>(profile).toString();
+        return "\"" + DigestUtils.md5DigestAsHex(canonical.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Read-only profile search. Chats are not created here; the client creates
+     * a direct chat explicitly over /chat.createChatRequest when the user opens
+     * one, before the first message is sent.
+     */
     @GetMapping("/search")
-    public ResponseEntity<List<Chat>> searchUsers(
+    public ResponseEntity<List<Map<String, String>>> searchUsers(
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam String query) {
-        List<Map<String, String>> matchingUsers = profileService.searchUsers(userDetails.getUsername(), query);
-        List<Chat> chats = matchingUsers.stream()
-                .map(userMap -> chatService.createChat(
-                        userDetails.getUsername(),
-                        userMap.get("username"),
-                        userMap.get("publicKey")))
-                .toList();
-        return ResponseEntity.ok(chats);
+        return ResponseEntity.ok(profileService.searchUsers(query, userDetails.getUsername()));
     }
 }
\ No newline at end of file
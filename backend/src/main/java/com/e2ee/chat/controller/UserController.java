@@ -3,6 +3,7 @@ package com.e2ee.chat.controller;
 import com.e2ee.chat.model.User;
 import com.e2ee.chat.service.UserService;
 import com.e2ee.chat.service.ProfileService;
+import com.e2ee.chat.service.UserSearchService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -24,6 +25,7 @@ public class UserController {
 
     private final UserService userService;
     private final ProfileService profileService;
+    private final UserSearchService userSearchService;
 
     @GetMapping
     public ResponseEntity<List<String>> getAllUsers() {
@@ -43,6 +45,13 @@ public class UserController {
         return ResponseEntity.ok(profileService.searchUsers(query.trim(), currentUsername));
     }
     
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<String>> autocomplete(@RequestParam(name = "q") String prefix,
+                                                     @RequestParam(defaultValue = "10") int limit) {
+        // Served from the in-memory username index, no database round-trip
+        return ResponseEntity.ok(userSearchService.autocomplete(prefix, limit));
+    }
+
     @GetMapping("/online")
     public ResponseEntity<List<Map<String, String>>> getOnlineUsers(Principal principal) { // Added Principal
         String currentUsername = principal.getName(); // Get current username
@@ -9,4 +9,5 @@ public class AuthResponse {
     private String token;
     private String username;
     private String displayName;
+    private String publicKey;
 } 
\ No newline at end of file
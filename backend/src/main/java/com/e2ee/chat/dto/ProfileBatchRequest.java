@@ -0,0 +1,12 @@
+package com.e2ee.chat.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class ProfileBatchRequest {
+    private List<String> ids;
+    private Map<String, String> etags; // profileId -> ETag the client already holds
+}
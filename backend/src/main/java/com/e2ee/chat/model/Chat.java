@@ -23,4 +23,12 @@ public class Chat {
     private String ownerId;
     private String groupName; // For group chats
     private String chatType; // "private" or "group"
+    private String pairKey; // Private chats only: sorted "idA:idB" participant pair, unique
+
+    /**
+     * Canonical key of a direct chat between two users, independent of argument order
+     */
+    public static String pairKey(String userA, String userB) {
+        return userA.compareTo(userB) <= 0 ? userA + ":" + userB : userB + ":" + userA;
+    }
 }
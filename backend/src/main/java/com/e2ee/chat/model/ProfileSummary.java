@@ -0,0 +1,15 @@
+package com.e2ee.chat.model;
+
+import org.bson.types.ObjectId;
+
+/**
+ * Projection of the frequently read UserProfile fields.
+ * Used by repository queries that should not load the full profile document.
+ */
+public interface ProfileSummary {
+    ObjectId getId();
+    String getUsername();
+    String getDisplayName();
+    String getPublicKey();
+    String getStatus();
+}
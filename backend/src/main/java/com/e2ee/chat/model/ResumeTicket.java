@@ -0,0 +1,26 @@
+package com.e2ee.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * WebSocket resume token of a user (one per user), kept in Mongo so it survives a backend
+ * restart. See SessionResumeRegistry.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "resumeTickets")
+public class ResumeTicket {
+    @Id
+    private String userId;
+    private String token;
+    private LocalDateTime disconnectedAt; // null while the session is connected
+    private Date expiresAt; // TTL index field; null while connected, end of the resume window after
+}
@@ -1,9 +1,7 @@
 package com.e2ee.chat.model;
 
 import lombok.Data;
-import lombok.ToString;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -14,7 +12,6 @@ import java.util.Collection;
 import java.util.List;
 
 @Data
-@ToString(exclude = "profile")
 @Document(collection = "users")
 public class User implements UserDetails {
     @Id
@@ -26,8 +23,7 @@ public class User implements UserDetails {
     private String role = "ROLE_USER";
     private List<String> chats = new ArrayList<>();
 
-    @DBRef
-    private UserProfile profile; // Reference to the associated UserProfile
+    private String profileId; // Hex id of the associated UserProfile (stored inline, no DBRef)
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -1,9 +1,14 @@
 package com.e2ee.chat.repository;
 import com.e2ee.chat.model.Message;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface MessageRepository extends MongoRepository<Message, String> {
     List<Message> findByChatIdOrderByTimestampAsc(String chatId);
+    // Messages at or after a client's sync cursor; served by the (chatId, timestamp) index
+    List<Message> findByChatIdAndTimestampGreaterThanEqualOrderByTimestampAsc(String chatId, LocalDateTime since);
+    // Idempotent sends: a resent message carries the clientTempId it was first sent with
+    Message findFirstBySenderIdAndClientTempId(String senderId, String clientTempId);
     // Add more methods as needed for chatId-based access
 }
\ No newline at end of file
@@ -6,4 +6,5 @@ import java.util.Optional;
 
 public interface UserRepository extends MongoRepository<User, String> {
     Optional<User> findByUsername(String username);
+    Optional<User> findByProfileId(String profileId);
 } 
\ No newline at end of file
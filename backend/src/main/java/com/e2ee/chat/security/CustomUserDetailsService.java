@@ -2,13 +2,11 @@ package com.e2ee.chat.security;
 
 import com.e2ee.chat.model.User;
 import com.e2ee.chat.repository.UserRepository;
-import com.e2ee.chat.repository.UserProfileRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,7 +17,7 @@ public class CustomUserDetailsService implements UserDetailsService {
     private static final Logger logger = LoggerFactory.getLogger(CustomUserDetailsService.class);
 
     private final UserRepository userRepository;
-    private final UserProfileRepository profileRepository;
+    private final PrincipalCache principalCache;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
@@ -28,12 +26,14 @@ public class CustomUserDetailsService implements UserDetailsService {
     }
 
     public UserDetails loadUserById(String profileId) throws UsernameNotFoundException {
-        logger.debug("Attempting to load user by profileId: {}", profileId);
-        ObjectId objectId = new ObjectId(profileId);
-        var profileOpt = profileRepository.findById(objectId);
-        logger.debug("Profile found: {}", profileOpt.isPresent() ? profileOpt.get() : "NOT FOUND");
-        return profileOpt
-                .map(profile -> profile.getUser())
+        UserDetails cached = principalCache.get(profileId);
+        if (cached != null) {
+            return cached;
+        }
+        logger.debug("Principal cache miss for profileId: {}", profileId);
+        UserDetails user = userRepository.findByProfileId(profileId)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with profile id: " + profileId));
+        principalCache.put(profileId, user);
+        return user;
     }
 }
\ No newline at end of file
@@ -7,7 +7,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 import com.e2ee.chat.model.User; // Import the User class
-import org.bson.types.ObjectId;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
@@ -24,15 +23,15 @@ public class JwtTokenProvider {
     }
 
     public String generateToken(Authentication authentication) {
-        User user = (User) authentication.getPrincipal(); // Cast to User to access the profile
-        if (user.getProfile() == null) {
+        User user = (User) authentication.getPrincipal(); // Cast to User to access the profile id
+        if (user.getProfileId() == null) {
             throw new IllegalStateException("User profile is not initialized for user: " + user.getUsername());
         }
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
 
         return Jwts.builder()
-                .setSubject(user.getProfile().getId().toHexString()) // Use ObjectId as hex string
+                .setSubject(user.getProfileId()) // ObjectId hex string of the profile
                 .setIssuedAt(new Date())
                 .setExpiration(expiryDate)
                 .signWith(key)
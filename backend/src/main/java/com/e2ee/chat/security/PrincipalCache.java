@@ -0,0 +1,150 @@
+package com.e2ee.chat.security;
+
+import com.e2ee.chat.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived cache of authenticated principals keyed by profileId.
+ * Keeps the JWT filter from hitting Mongo on every request; entries are
+ * evicted whenever a user document is saved (see UserCacheEvictionListener).
+ * The cache is a bounded LRU: once full, each put drops the least recently
+ * used entry. Expired entries are dropped when they are next read.
+ */
+@Component
+public class PrincipalCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrincipalCache.class);
+
+    private final long ttlMillis;
+    private final int maxSize;
+    private final LongSupplier clock;
+    // Access-ordered, so the eldest entry is the least recently used one
+    private final LinkedHashMap<String, Entry> entries;
+    // User ID -> cache keys holding that user, so evictUser does not scan
+    private final Map<String, Set<String>> keysByUserId = new HashMap<>();
+
+    @Autowired
+    public PrincipalCache(@Value("${security.principal-cache.ttl-ms:60000}") long ttlMillis,
+                          @Value("${security.principal-cache.max-size:10000}") int maxSize) {
+        this(ttlMillis, maxSize, System::currentTimeMillis);
+    }
+
+    PrincipalCache(long ttlMillis, int maxSize, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= PrincipalCache.this.maxSize) {
+                    return false;
+                }
+                unindex(eldest.getKey(), eldest.getValue());
+                logger.debug("Principal cache over {} entries, evicted {}", PrincipalCache.this.maxSize, eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get a cached principal
+     * @param profileId Profile ID used as the JWT subject
+     * @return Cached principal or null if absent or expired
+     */
+    public synchronized UserDetails get(String profileId) {
+        Entry entry = entries.get(profileId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt < clock.getAsLong()) {
+            remove(profileId);
+            return null;
+        }
+        return entry.principal;
+    }
+
+    public synchronized void put(String profileId, UserDetails principal) {
+        Entry previous = entries.remove(profileId);
+        if (previous != null) {
+            unindex(profileId, previous);
+        }
+        Entry entry = new Entry(principal, clock.getAsLong() + ttlMillis);
+        String userId = userIdOf(principal);
+        if (userId != null) {
+            keysByUserId.computeIfAbsent(userId, id -> new HashSet<>()).add(profileId);
+        }
+        entries.put(profileId, entry);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void evict(String profileId) {
+        if (profileId != null && remove(profileId)) {
+            logger.debug("Evicted cached principal for profileId: {}", profileId);
+        }
+    }
+
+    /**
+     * Evict every cached principal belonging to the given user
+     * @param user User whose credentials, role or enabled flag changed
+     */
+    public synchronized void evictUser(User user) {
+        if (user == null) {
+            return;
+        }
+        evict(user.getProfileId());
+        // Also covers entries keyed differently, e.g. when the profile link was not populated
+        Set<String> keys = user.getId() != null ? keysByUserId.get(user.getId()) : null;
+        if (keys != null) {
+            for (String key : Set.copyOf(keys)) {
+                evict(key);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        keysByUserId.clear();
+    }
+
+    private boolean remove(String profileId) {
+        Entry removed = entries.remove(profileId);
+        if (removed == null) {
+            return false;
+        }
+        unindex(profileId, removed);
+        return true;
+    }
+
+    private void unindex(String profileId, Entry entry) {
+        String userId = userIdOf(entry.principal);
+        if (userId == null) {
+            return;
+        }
+        Set<String> keys = keysByUserId.get(userId);
+        if (keys != null && keys.remove(profileId) && keys.isEmpty()) {
+            keysByUserId.remove(userId);
+        }
+    }
+
+    private static String userIdOf(UserDetails principal) {
+        return principal instanceof User user ? user.getId() : null;
+    }
+
+    private record Entry(UserDetails principal, long expiresAt) {
+    }
+}
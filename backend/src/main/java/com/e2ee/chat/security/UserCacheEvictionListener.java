@@ -0,0 +1,24 @@
+package com.e2ee.chat.security;
+
+import com.e2ee.chat.model.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drops the cached principal whenever a user document is saved, so password, role,
+ * enabled flag and profile link changes take effect on the next request no matter
+ * which code path saved the user.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserCacheEvictionListener extends AbstractMongoEventListener<User> {
+
+    private final PrincipalCache principalCache;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        principalCache.evictUser(event.getSource());
+    }
+}
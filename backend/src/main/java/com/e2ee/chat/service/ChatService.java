@@ -5,15 +5,23 @@ import com.e2ee.chat.model.Chat;
 import com.e2ee.chat.model.Message;
 import com.e2ee.chat.model.UserProfile;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ChatService {
     // Remove ChatMessage from interface, use Message for all persistence
     Message processMessage(Message message);
     void saveMessage(Message message);
+    // Store a new message; DuplicateKeyException if its id or (senderId, clientTempId) is already stored
+    void insertMessage(Message message);
     List<Chat> getChatsByOwner(String ownerId);
     List<Message> getMessagesByChatId(String chatId);
-    Chat createChat(String ownerId, String targetUserId, String targetPublicKey);
+    List<Message> getMessagesSince(String chatId, LocalDateTime since);
+    // One history page, newest first: skip offset messages (from since on, if given)
+    List<Message> getLatestMessages(String chatId, LocalDateTime since, int offset, int limit);
+    // One history page, newest first, of the messages older than a (timestamp, messageId) cursor
+    List<Message> getMessagesBefore(String chatId, LocalDateTime before, String beforeId, int limit);
+    Message findByClientTempId(String senderId, String clientTempId);
     
     // New methods for WebSocket functionality
     List<UserProfile> searchUsers(String query, int limit);
@@ -1,18 +1,22 @@
 package com.e2ee.chat.service;
 
+import com.e2ee.chat.model.ProfileSummary;
 import com.e2ee.chat.model.User;
 import com.e2ee.chat.model.UserProfile;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 public interface ProfileService {
     UserProfile getProfile(String username);
     UserProfile getProfileById(String profileId);
+    ProfileSummary getProfileSummary(String username);
     UserProfile updateProfile(UserProfile profile);
     UserProfile updateStatus(String username, String status);
     UserProfile updatePublicKey(String username, String publicKey);
     UserProfile createProfile(User user);
     UserProfile updateBio(String username, String bio);
     List<Map<String, String>> searchUsers(String query, String currentUsername);
+    List<Map<String, String>> getProfilesByIds(Collection<String> profileIds);
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.e2ee.chat.service;
+
+import com.e2ee.chat.model.UserProfile;
+
+import java.util.List;
+
+public interface UserSearchService {
+    List<UserProfile> search(String query, String excludeUsername, int limit);
+    List<String> autocomplete(String prefix, int limit);
+    void rebuildIndex();
+}
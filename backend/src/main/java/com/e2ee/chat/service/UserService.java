@@ -11,4 +11,7 @@ public interface UserService {
     User findByUsername(String username);
     List<User> getAllUsers();
     List<UserProfile> searchUsers(String query);
+    User updatePassword(String username, String rawPassword);
+    User updateRole(String username, String role);
+    User setEnabled(String username, boolean enabled);
 }
\ No newline at end of file
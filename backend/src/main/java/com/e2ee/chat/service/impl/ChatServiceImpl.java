@@ -4,13 +4,19 @@ import com.e2ee.chat.model.User;
 import com.e2ee.chat.model.UserProfile;
 import com.e2ee.chat.repository.ChatRepository;
 import com.e2ee.chat.repository.MessageRepository;
-import com.e2ee.chat.repository.UserProfileRepository;
-import com.e2ee.chat.repository.UserRepository;
 import com.e2ee.chat.service.ChatService;
+import com.e2ee.chat.service.UserSearchService;
 import com.e2ee.chat.model.Chat;
 import com.e2ee.chat.model.Message;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -29,8 +35,11 @@ public class ChatServiceImpl implements ChatService {
 
     private final ChatRepository chatRepository;
     private final MessageRepository messageRepository;
-    private final UserProfileRepository userProfileRepository;
-    private final UserRepository userRepository;
+    private final UserSearchService userSearchService;
+    private final MongoTemplate mongoTemplate;
+
+    // History order; matches the (chatId, timestamp, _id) index
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "timestamp", "_id");
 
     @Override
     public Message processMessage(Message message) {
@@ -53,6 +62,12 @@ public class ChatServiceImpl implements ChatService {
         }
     }
 
+    @Override
+    public void insertMessage(Message message) {
+        // insert, not save: save upserts by id and would silently store a resend again
+        messageRepository.insert(message);
+    }
+
     @Override
     public List<Chat> getChatsByOwner(String ownerId) {
         return chatRepository.findByOwnerId(ownerId);
@@ -64,69 +79,90 @@ public class ChatServiceImpl implements ChatService {
     }
 
     @Override
-    public Chat createChat(String ownerId, String targetUserId, String targetPublicKey) {
-        Chat chat = new Chat();
-        chat.setOwnerId(ownerId);
-        chat.setTargetUserId(targetUserId);
-        chat.setTargetPublicKey(targetPublicKey);
-        return chatRepository.save(chat);
+    public List<Message> getMessagesSince(String chatId, LocalDateTime since) {
+        return messageRepository.findByChatIdAndTimestampGreaterThanEqualOrderByTimestampAsc(chatId, since);
     }
 
-    // New methods implementation
-
     @Override
-    public List<UserProfile> searchUsers(String query, int limit) {
-        // Use the repository method to perform a more efficient search
-        List<UserProfile> results = userProfileRepository.findByUsernameOrDisplayNameContainingIgnoreCase(query);
-        
-        // Limit the results
-        if (results.size() > limit) {
-            return results.subList(0, limit);
+    public List<Message> getLatestMessages(String chatId, LocalDateTime since, int offset, int limit) {
+        Criteria criteria = Criteria.where("chatId").is(chatId);
+        if (since != null) {
+            criteria = criteria.and("timestamp").gte(since);
         }
-        return results;
+        return mongoTemplate.find(new Query(criteria).with(NEWEST_FIRST).skip(offset).limit(limit), Message.class);
     }
 
     @Override
-    @Transactional
-    public Chat createChatWithUser(String ownerId, String targetUserId) {
-        // Check if a chat already exists between these two user IDs
-        List<Chat> existingChats = chatRepository.findByParticipantsContainingBoth(ownerId, targetUserId);
-        if (!existingChats.isEmpty()) {
-            return existingChats.get(0);
+    public List<Message> getMessagesBefore(String chatId, LocalDateTime before, String beforeId, int limit) {
+        // Ties on the timestamp are broken by id, so equal timestamps never straddle a page unseen
+        Criteria older = beforeId == null
+                ? Criteria.where("timestamp").lt(before)
+                : new Criteria().orOperator(
+                        Criteria.where("timestamp").lt(before),
+                        Criteria.where("timestamp").is(before).and("_id").lt(beforeId));
+        Query query = new Query(new Criteria().andOperator(Criteria.where("chatId").is(chatId), older))
+                .with(NEWEST_FIRST)
+                .limit(limit);
+        return mongoTemplate.find(query, Message.class);
+    }
+
+    @Override
+    public Message findByClientTempId(String senderId, String clientTempId) {
+        if (clientTempId == null || clientTempId.isEmpty()) {
+            return null;
         }
+        return messageRepository.findFirstBySenderIdAndClientTempId(senderId, clientTempId);
+    }
 
-        // Create a new chat with the target user ID
-        Chat chat = new Chat();
-        List<String> participants = new ArrayList<>();
-        participants.add(ownerId);
-        participants.add(targetUserId);
+    // New methods implementation
 
-        chat.setParticipants(participants);
-        chat.setOwnerId(ownerId);
-        chat.setTargetUserId(targetUserId);
-        chat.setCreatedAt(LocalDateTime.now());
-        chat.setUpdatedAt(LocalDateTime.now());
-        chat.setChatType("private");
+    @Override
+    public List<UserProfile> searchUsers(String query, int limit) {
+        // Indexed prefix search with the limit pushed into the query
+        return userSearchService.search(query, null, limit);
+    }
 
-        // Save the chat
-        Chat savedChat = chatRepository.save(chat);
+    @Override
+    public Chat createChatWithUser(String ownerId, String targetUserId) {
+        String pairKey = Chat.pairKey(ownerId, targetUserId);
 
-        // Update owner's chat list
-        Optional<User> ownerOptional = userRepository.findById(ownerId);
-        if (ownerOptional.isPresent()) {
-            User owner = ownerOptional.get();
-            List<String> chats = owner.getChats();
-            if (chats == null) {
-                chats = new ArrayList<>();
-            }
-            chats.add(savedChat.getChatId());
-            owner.setChats(chats);
-            userRepository.save(owner);
+        // Steady state: the direct chat already exists, single indexed point read
+        Optional<Chat> existing = chatRepository.findByPairKey(pairKey);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        // Atomic get-or-create; the unique pairKey index guarantees one chat per pair
+        Chat savedChat;
+        try {
+            savedChat = upsertDirectChat(pairKey, ownerId, targetUserId);
+        } catch (DuplicateKeyException e) {
+            // Lost an insert race with a concurrent request, the winner's chat is there now
+            savedChat = chatRepository.findByPairKey(pairKey)
+                    .orElseThrow(() -> new RuntimeException("Direct chat not found after upsert conflict"));
         }
 
+        // Update owner's chat list ($addToSet keeps it idempotent)
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(ownerId)),
+                new Update().addToSet("chats", savedChat.getChatId()), User.class);
+
         return savedChat;
     }
 
+    private Chat upsertDirectChat(String pairKey, String ownerId, String targetUserId) {
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update()
+                .setOnInsert("participants", List.of(ownerId, targetUserId))
+                .setOnInsert("messageIds", new ArrayList<String>())
+                .setOnInsert("ownerId", ownerId)
+                .setOnInsert("targetUserId", targetUserId)
+                .setOnInsert("chatType", "private")
+                .setOnInsert("createdAt", now)
+                .setOnInsert("updatedAt", now);
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("pairKey").is(pairKey)), update,
+                FindAndModifyOptions.options().upsert(true).returnNew(true), Chat.class);
+    }
+
     @Override
     @Transactional
     public Message sendMessageToChat(String chatId, String senderId, String content, String messageType) {
@@ -201,8 +237,10 @@ public class ChatServiceImpl implements ChatService {
     
     @Override
     public List<Chat> findChatsBetweenUsers(String user1, String user2) {
-        // Search for chats where both users are participants
-        return chatRepository.findByParticipantsContainingBoth(user1, user2);
+        // Direct chat between the two users, looked up by its canonical pair key
+        return chatRepository.findByPairKey(Chat.pairKey(user1, user2))
+                .map(List::of)
+                .orElseGet(List::of);
     }
     
     @Override
@@ -1,15 +1,20 @@
 package com.e2ee.chat.service.impl;
 
+import com.e2ee.chat.model.ProfileSummary;
 import com.e2ee.chat.model.User;
 import com.e2ee.chat.model.UserProfile;
 import com.e2ee.chat.repository.UserProfileRepository;
+import com.e2ee.chat.repository.UserRepository;
 import com.e2ee.chat.service.ProfileService;
+import com.e2ee.chat.service.UserSearchService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -19,7 +24,10 @@ import java.util.stream.Collectors;
 public class ProfileServiceImpl implements ProfileService {
 
     private static final Logger logger = LoggerFactory.getLogger(ProfileServiceImpl.class);
+    private static final int MAX_BATCH_SIZE = 500;
     private final UserProfileRepository profileRepository;
+    private final UserRepository userRepository;
+    private final UserSearchService userSearchService;
 
     @Override
     public UserProfile getProfile(String username) {
@@ -53,16 +61,17 @@ public class ProfileServiceImpl implements ProfileService {
 
     @Override
     public UserProfile createProfile(User user) {
-        if (user.getProfile() != null) {
-            return user.getProfile();
+        if (user.getProfileId() != null) {
+            return getProfileById(user.getProfileId());
         }
         UserProfile profile = new UserProfile();
         profile.setUsername(user.getUsername());
         profile.setDisplayName(user.getUsername());
         profile.setStatus("Online");
-        profile.setUser(user); // <-- Set the user reference
+        profile.setUserId(user.getId()); // <-- Set the owning user id
         profile = profileRepository.save(profile);
-        user.setProfile(profile); // Link the profile to the user
+        user.setProfileId(profile.getId().toHexString()); // Link the profile to the user
+        userRepository.save(user);
         return profile;
     }
 
@@ -76,25 +85,51 @@ public class ProfileServiceImpl implements ProfileService {
     @Override
     public List<Map<String, String>> searchUsers(String query, String currentUsername) {
         logger.debug("searchUsers called with query: {} for user: {}", query, currentUsername);
-        List<Map<String, String>> results = profileRepository.findAll().stream()
-                .filter(profile -> !profile.getUsername().equals(currentUsername)) // Exclude current user
-                .filter(profile -> profile.getUsername().contains(query) || (profile.getDisplayName() != null && profile.getDisplayName().contains(query)))
-                .limit(4) // Limit to 4 results
-                .map(profile -> Map.of(
-                    "profileId", String.valueOf(profile.getId()),
-                    "username", String.valueOf(profile.getUsername()),
-                    "displayName", String.valueOf(profile.getDisplayName()),
-                    "bio", String.valueOf(profile.getBio()),
-                    "email", String.valueOf(profile.getEmail()),
-                    "avatarUrl", String.valueOf(profile.getAvatarUrl()),
-                    "publicKey", String.valueOf(profile.getPublicKey()),
-                    "status", String.valueOf(profile.getStatus())
-                ))
+        // Current user is excluded and the limit of 4 is applied inside the indexed query
+        List<Map<String, String>> results = userSearchService.search(query, currentUsername, 4).stream()
+                .map(ProfileServiceImpl::toSummaryMap)
                 .collect(Collectors.toList());
         logger.debug("searchUsers returning {} results: {}", results.size(), results);
         return results;
     }
 
+    @Override
+    public List<Map<String, String>> getProfilesByIds(Collection<String> profileIds) {
+        List<ObjectId> ids = profileIds.stream()
+                .filter(ObjectId::isValid)
+                .distinct()
+                .limit(MAX_BATCH_SIZE)
+                .map(ObjectId::new)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // findAllById is a single $in query on _id
+        List<Map<String, String>> results = new ArrayList<>(ids.size());
+        profileRepository.findAllById(ids).forEach(profile -> results.add(toSummaryMap(profile)));
+        logger.debug("getProfilesByIds found {} of {} profiles", results.size(), ids.size());
+        return results;
+    }
+
+    private static Map<String, String> toSummaryMap(UserProfile profile) {
+        return Map.of(
+            "profileId", String.valueOf(profile.getId()),
+            "username", String.valueOf(profile.getUsername()),
+            "displayName", String.valueOf(profile.getDisplayName()),
+            "bio", String.valueOf(profile.getBio()),
+            "email", String.valueOf(profile.getEmail()),
+            "avatarUrl", String.valueOf(profile.getAvatarUrl()),
+            "publicKey", String.valueOf(profile.getPublicKey()),
+            "status", String.valueOf(profile.getStatus())
+        );
+    }
+
+    @Override
+    public ProfileSummary getProfileSummary(String username) {
+        return profileRepository.findSummaryByUsername(username)
+                .orElseThrow(() -> new RuntimeException("Profile not found"));
+    }
+
     @Override
     public UserProfile getProfileById(String profileId) {
         ObjectId objectId = new ObjectId(profileId);
@@ -0,0 +1,110 @@
+package com.e2ee.chat.service.impl;
+
+import com.e2ee.chat.model.UserProfile;
+import com.e2ee.chat.service.UserSearchService;
+import com.e2ee.chat.util.SearchTextUtil;
+import com.e2ee.chat.util.UsernamePrefixIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Index-backed user search.
+ * Queries are answered by an anchored prefix match on the indexed, normalized
+ * {@code searchTerms} field. The text index is only a fallback for queries that no
+ * name starts with; it never tops up prefix hits, so a result below {@code limit}
+ * holds every prefix match and clients can narrow it locally for longer queries.
+ * Limits are always pushed into Mongo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserSearchServiceImpl implements UserSearchService {
+
+    static final int MAX_LIMIT = 50;
+    private static final int MIN_TEXT_QUERY_LENGTH = 3;
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final UsernamePrefixIndex usernamePrefixIndex;
+
+    @Override
+    public List<UserProfile> search(String query, String excludeUsername, int limit) {
+        int max = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String normalized = SearchTextUtil.normalize(query);
+
+        Query prefixQuery = new Query().limit(max);
+        if (!normalized.isEmpty()) {
+            prefixQuery.addCriteria(Criteria.where("searchTerms").regex("^" + SearchTextUtil.escapeRegex(normalized)));
+        }
+        if (excludeUsername != null) {
+            prefixQuery.addCriteria(Criteria.where("username").ne(excludeUsername));
+        }
+        prefixQuery.fields().exclude("searchTerms");
+        List<UserProfile> results = new ArrayList<>(mongoTemplate.find(prefixQuery, UserProfile.class));
+
+        if (results.isEmpty() && normalized.length() >= MIN_TEXT_QUERY_LENGTH) {
+            results.addAll(textSearch(normalized, excludeUsername, max));
+        }
+        return results;
+    }
+
+    @Override
+    public List<String> autocomplete(String prefix, int limit) {
+        return usernamePrefixIndex.complete(prefix, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * Backfill search terms on profiles written before they existed and load all
+     * usernames into the in-memory prefix index.
+     */
+    @Override
+    public void rebuildIndex() {
+        int backfilled = 0;
+        while (true) {
+            Query pending = new Query(Criteria.where("searchTerms").exists(false)).limit(BACKFILL_BATCH_SIZE);
+            pending.fields().include("username").include("displayName");
+            List<UserProfile> batch = mongoTemplate.find(pending, UserProfile.class);
+            if (batch.isEmpty()) {
+                break;
+            }
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserProfile.class);
+            for (UserProfile profile : batch) {
+                bulk.updateOne(Query.query(Criteria.where("_id").is(profile.getId())),
+                        new Update().set("searchTerms",
+                                SearchTextUtil.searchTerms(profile.getUsername(), profile.getDisplayName())));
+            }
+            bulk.execute();
+            backfilled += batch.size();
+        }
+
+        usernamePrefixIndex.clear();
+        Query usernames = new Query();
+        usernames.fields().include("username");
+        try (Stream<UserProfile> stream = mongoTemplate.stream(usernames, UserProfile.class)) {
+            stream.forEach(profile -> usernamePrefixIndex.put(profile.getId(), profile.getUsername()));
+        }
+        log.info("User search index ready: {} usernames, {} profiles backfilled", usernamePrefixIndex.size(), backfilled);
+    }
+
+    private List<UserProfile> textSearch(String normalized, String excludeUsername, int limit) {
+        Query textQuery = TextQuery.queryText(TextCriteria.forDefaultLanguage().matchingAny(normalized))
+                .sortByScore()
+                .limit(limit);
+        if (excludeUsername != null) {
+            textQuery.addCriteria(Criteria.where("username").ne(excludeUsername));
+        }
+        return mongoTemplate.find(textQuery, UserProfile.class);
+    }
+}
@@ -4,7 +4,7 @@ import com.e2ee.chat.dto.AuthRequest;
 import com.e2ee.chat.model.User;
 import com.e2ee.chat.model.UserProfile;
 import com.e2ee.chat.repository.UserRepository;
-import com.e2ee.chat.repository.UserProfileRepository;
+import com.e2ee.chat.service.UserSearchService;
 import com.e2ee.chat.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -17,8 +17,8 @@ import java.util.List;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
-    private final UserProfileRepository userProfileRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserSearchService userSearchService;
 
     @Override
     public User createUser(AuthRequest request) {
@@ -45,10 +45,28 @@ public class UserServiceImpl implements UserService {
     
     @Override
     public List<UserProfile> searchUsers(String query) {
-        String lowercaseQuery = query.toLowerCase();
-        return userProfileRepository.findAll().stream()
-                .filter(profile -> profile.getUsername().toLowerCase().contains(lowercaseQuery)
-                        || (profile.getDisplayName() != null && profile.getDisplayName().toLowerCase().contains(lowercaseQuery)))
-                .toList();
+        return userSearchService.search(query, null, 20);
     }
-}
\ No newline at end of file
+
+    // Saving a user drops its cached principal (UserCacheEvictionListener)
+    @Override
+    public User updatePassword(String username, String rawPassword) {
+        User user = findByUsername(username);
+        user.setPassword(passwordEncoder.encode(rawPassword));
+        return userRepository.save(user);
+    }
+
+    @Override
+    public User updateRole(String username, String role) {
+        User user = findByUsername(username);
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+
+    @Override
+    public User setEnabled(String username, boolean enabled) {
+        User user = findByUsername(username);
+        user.setEnabled(enabled);
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,71 @@
+package com.e2ee.chat.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Helpers for building and querying the normalized user search fields.
+ */
+public final class SearchTextUtil {
+
+    private static final String REGEX_META = "\\^$.|?*+()[]{}";
+
+    private SearchTextUtil() {
+    }
+
+    /**
+     * Normalize text for prefix matching
+     * @param text Raw text
+     * @return Trimmed lowercase text, or empty string for null
+     */
+    public static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Build the indexed search terms of a profile: the full username, the full
+     * display name and each display name word, all normalized.
+     * @param username Profile username
+     * @param displayName Profile display name
+     * @return Distinct normalized terms
+     */
+    public static List<String> searchTerms(String username, String displayName) {
+        Set<String> terms = new LinkedHashSet<>();
+        addTerm(terms, username);
+        addTerm(terms, displayName);
+        if (displayName != null) {
+            for (String word : displayName.split("\\s+")) {
+                addTerm(terms, word);
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * Escape a literal for use in an anchored Mongo regex. Unlike Pattern.quote this
+     * keeps the prefix a plain string so Mongo can turn it into index bounds.
+     * @param literal Text to escape
+     * @return Regex-safe text
+     */
+    public static String escapeRegex(String literal) {
+        StringBuilder sb = new StringBuilder(literal.length() + 8);
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (REGEX_META.indexOf(c) >= 0) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static void addTerm(Set<String> terms, String text) {
+        String term = normalize(text);
+        if (!term.isEmpty()) {
+            terms.add(term);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.e2ee.chat.util;
+
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory prefix index of all usernames for instant autocomplete.
+ * Backed by a sorted concurrent set, so a prefix lookup is a single range scan
+ * (O(log n + k)) and updates never block readers. The entry of each profile is
+ * remembered by profile ID, so a renamed profile's old username is dropped.
+ */
+@Component
+public class UsernamePrefixIndex {
+
+    // Entries are "normalized\0original" so case variants of a name keep their spelling
+    private static final char SEPARATOR = '\u0000';
+
+    private final ConcurrentSkipListSet<String> entries = new ConcurrentSkipListSet<>();
+    // Profile ID -> the entry it is indexed under
+    private final Map<ObjectId, String> entryByProfile = new ConcurrentHashMap<>();
+
+    /**
+     * Index the current username of a profile, replacing the one it was indexed under before
+     * @param profileId Profile ID (null for a profile that is not stored yet)
+     * @param username Current username
+     */
+    public void put(ObjectId profileId, String username) {
+        if (username == null || username.isBlank()) {
+            return;
+        }
+        String entry = entryOf(username);
+        entries.add(entry);
+        if (profileId != null) {
+            String previous = entryByProfile.put(profileId, entry);
+            if (previous != null && !previous.equals(entry)) {
+                entries.remove(previous);
+            }
+        }
+    }
+
+    public void remove(String username) {
+        if (username != null) {
+            entries.remove(entryOf(username));
+        }
+    }
+
+    /**
+     * Find usernames starting with the given prefix (case-insensitive)
+     * @param prefix Prefix typed by the user
+     * @param limit Maximum number of results
+     * @return Matching usernames in lexicographic order
+     */
+    public List<String> complete(String prefix, int limit) {
+        String from = SearchTextUtil.normalize(prefix);
+        if (from.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        NavigableSet<String> range = entries.subSet(from, true, from + Character.MAX_VALUE, false);
+        List<String> results = new ArrayList<>(Math.min(limit, 16));
+        for (String entry : range) {
+            results.add(entry.substring(entry.indexOf(SEPARATOR) + 1));
+            if (results.size() >= limit) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        entryByProfile.clear();
+    }
+
+    private static String entryOf(String username) {
+        return SearchTextUtil.normalize(username) + SEPARATOR + username;
+    }
+}
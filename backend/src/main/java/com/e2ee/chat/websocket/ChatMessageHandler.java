@@ -4,9 +4,11 @@ import com.e2ee.chat.model.Chat;
 import com.e2ee.chat.model.ChatMessage;
 import com.e2ee.chat.model.Message;
 import com.e2ee.chat.service.ChatService;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
@@ -18,6 +20,7 @@ import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import org.springframework.web.socket.messaging.SessionSubscribeEvent;
 
 import java.security.Principal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -36,10 +39,12 @@ public class ChatMessageHandler {
     private final SimpMessagingTemplate messagingTemplate;
     private final ChatService chatService;
     private final WebSocketSessionTracker sessionTracker;
+    private final SessionResumeRegistry resumeRegistry;
     private final Set<String> onlineUsers = ConcurrentHashMap.newKeySet();
     private final Map<String, String> userRooms = new ConcurrentHashMap<>(); // Map profileId to their personal room
     private final Map<String, Set<String>> roomSubscribers = new ConcurrentHashMap<>(); // Track which profiles are
                                                                                         // subscribed to which rooms
+    private static final Duration RESUME_REPLAY_MARGIN = Duration.ofSeconds(5);
 
     /**
      * Called when a user connects to WebSocket
@@ -88,8 +93,12 @@ public class ChatMessageHandler {
             // Broadcast that user is online
             broadcastUserStatus();
 
-            // Send chat list to the user
-            sendChatListToUser(userId);
+            // A client resuming a short gap already has its chat list
+            String resumeToken = headerAccessor.getFirstNativeHeader(SessionResumeRegistry.RESUME_TOKEN_HEADER);
+            if (resumeSession(sessionId, userId, resumeToken) == null) {
+                // Send chat list to the user
+                sendChatListToUser(userId);
+            }
             log.info("=== WEBSOCKET CONNECT PROCESSING COMPLETE ===");
         } else {
             log.error("Invalid connection: userId or sessionId is null. userId: {}, sessionId: {}", userId, sessionId);
@@ -115,9 +124,12 @@ public class ChatMessageHandler {
             username = headerAccessor.getUser() != null ? headerAccessor.getUser().getName() : null;
         }
 
+        resumeRegistry.forgetSession(sessionId);
+
         if (username != null) {
             log.info("User disconnected: {} (session: {})", username, sessionId);
             onlineUsers.remove(username);
+            resumeRegistry.markDisconnected(username);
 
             // Remove user from all room subscriptions
             String roomId = userRooms.get(username);
@@ -220,16 +232,72 @@ public class ChatMessageHandler {
                     // Notify other users in chats about this user's online status
                     notifyUserStatusToContacts(username, true);
 
-                    // Send unread messages to the user
-                    sendUnreadMessagesToUser(username);
+                    LocalDateTime resumedSince = resumeRegistry.resumedSince(headerAccessor.getSessionId());
+                    if (resumedSince != null) {
+                        // Short gap: only what was missed while disconnected
+                        sendMessagesSince(username, resumedSince);
+                    } else {
+                        // Send unread messages to the user
+                        sendUnreadMessagesToUser(username);
 
-                    // Send chat list to the user
-                    sendChatListToUser(username);
+                        // Send chat list to the user
+                        sendChatListToUser(username);
+                    }
+                    sendSessionToken(username, resumedSince != null);
                 }
             }
         }
     }
 
+    /**
+     * Resume a session if the client presented a valid resume token.
+     * A chat created during the gap is not covered by the message replay, so it forces a full replay.
+     *
+     * @return The disconnect time to replay from, or null for a full replay
+     */
+    private LocalDateTime resumeSession(String sessionId, String userId, String resumeToken) {
+        LocalDateTime since = resumeRegistry.resume(sessionId, userId, resumeToken);
+        if (since == null) {
+            return null;
+        }
+        for (Chat chat : chatService.findChatsByParticipant(userId)) {
+            if (chat.getCreatedAt() != null && !chat.getCreatedAt().isBefore(since)) {
+                log.info("Chat {} was created while {} was away, full replay", chat.getChatId(), userId);
+                resumeRegistry.forgetSession(sessionId);
+                return null;
+            }
+        }
+        return since;
+    }
+
+    /**
+     * Replay the messages a resumed user missed; the client drops ones it already has
+     */
+    private void sendMessagesSince(String profileId, LocalDateTime since) {
+        // Messages stored just before the disconnect was noticed may not have reached the client
+        LocalDateTime from = since.minus(RESUME_REPLAY_MARGIN);
+        int replayed = 0;
+        for (Chat chat : chatService.findChatsByParticipant(profileId)) {
+            for (Message message : chatService.getMessagesSince(chat.getChatId(), from)) {
+                messagingTemplate.convertAndSendToUser(profileId, "/queue/messages", toChatMessage(message));
+                replayed++;
+            }
+        }
+        log.info("Resumed {}: replayed {} messages since {}", profileId, replayed, from);
+    }
+
+    /**
+     * Hand the client the token for resuming this session after a short disconnect
+     */
+    private void sendSessionToken(String profileId, boolean resumed) {
+        Map<String, Object> session = new HashMap<>();
+        session.put("type", "SESSION");
+        session.put("resumeToken", resumeRegistry.issue(profileId));
+        session.put("resumed", resumed);
+        session.put("resumeWindowSeconds", resumeRegistry.getResumeWindow().toSeconds());
+        messagingTemplate.convertAndSendToUser(profileId, "/queue/messages", session);
+    }
+
     /**
      * Notify all contacts of a user about their online status
      * 
@@ -286,17 +354,53 @@ public class ChatMessageHandler {
             jsonPayload = new String(decodedBytes, java.nio.charset.StandardCharsets.UTF_8);
             log.debug("[sendMessage] Decoded JSON string: {}", jsonPayload);
             
-            // Parse the JSON string to Message object
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.findAndRegisterModules(); // For handling Java 8 date/time
-            message = objectMapper.readValue(jsonPayload, Message.class);
-            log.debug("[sendMessage] Successfully parsed message: {}", message);
-            log.info("[sendMessage] Parsed Message clientTempId: {}", message.getClientTempId());
+            message = parseMessage(jsonPayload);
         } catch (Exception e) {
             log.error("[sendMessage] Failed to parse JSON: {}", e.getMessage(), e);
             return;
         }
-        
+        deliverMessage(message);
+    }
+
+    /**
+     * Several queued messages in one frame, sent by a client's outbox when it catches up after
+     * being offline: {"messages": [json, ...]}. Processed in order, each exactly like /chat.send.
+     */
+    @MessageMapping("/chat.sendBatch")
+    public void sendMessageBatch(@Payload Map<String, Object> payload) {
+        if (!(payload.get("messages") instanceof List<?> messages)) {
+            log.error("[sendMessageBatch] Payload has no message list");
+            return;
+        }
+        log.info("[sendMessageBatch] Processing {} queued messages", messages.size());
+        for (Object json : messages) {
+            try {
+                deliverMessage(parseMessage(String.valueOf(json)));
+            } catch (Exception e) {
+                // One bad entry must not hold back the rest; the client resends it without a receipt
+                log.error("[sendMessageBatch] Failed to process message: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private Message parseMessage(String jsonPayload) throws Exception {
+        // Parse the JSON string to Message object
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules(); // For handling Java 8 date/time
+        // Clients attach transport-only fields (iv, encryptedKey, chatType) that Message does not model
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        Message message = objectMapper.readValue(jsonPayload, Message.class);
+        log.debug("[sendMessage] Successfully parsed message: {}", message);
+        log.info("[sendMessage] Parsed Message clientTempId: {}", message.getClientTempId());
+        return message;
+    }
+
+    /**
+     * Store a message and deliver it to the chat's participants. A message whose clientTempId
+     * was already stored (a client outbox resending after a lost receipt) is not stored or
+     * delivered again; the sender just gets the receipt and its echo once more.
+     */
+    private void deliverMessage(Message message) {
         // Simple validation
         String senderId = message.getSenderId();
         if (senderId == null || senderId.isEmpty()) {
@@ -304,22 +408,94 @@ public class ChatMessageHandler {
             return;
         }
         
+        Message alreadyStored = chatService.findByClientTempId(senderId, message.getClientTempId());
+        if (alreadyStored != null) {
+            acknowledgeAgain(alreadyStored);
+            return;
+        }
+        
         String chatId = message.getChatId();
         if (chatId == null) {
             log.error("[sendMessage] chatId is null. Cannot process message.");
+            sendRejection(message, "Missing chatId");
             return;
         }
         Chat chat = chatService.getChatById(chatId);
         if (chat == null) {
             log.error("[sendMessage] Chat with ID {} not found.", chatId);
+            sendRejection(message, "Chat not found");
+            return;
+        }
+        try {
+            chatService.insertMessage(message);
+        } catch (DuplicateKeyException e) {
+            // A concurrent flush of the same message won the insert; it delivers the message
+            Message stored = chatService.findByClientTempId(senderId, message.getClientTempId());
+            acknowledgeAgain(stored != null ? stored : message);
             return;
         }
-        chatService.saveMessage(message);
         chatService.updateChatPreview(chatId, message.getContent());
+        sendReceipt(message);
 
         // Extra debugging
         log.info("[sendMessage] Message clientTempId before conversion: {}", message.getClientTempId());
 
+        ChatMessage chatMessageToSend = toChatMessage(message);
+        
+        // Extra debugging
+        log.info("[sendMessage] ChatMessage clientTempId after conversion: {}", chatMessageToSend.getClientTempId());
+
+        // Deliver to all participants in the chat
+        for (String participantId : chat.getParticipants()) {
+            String participantRoom = userRooms.get(participantId);
+            if (participantRoom != null) {
+                log.debug("[sendMessage] Sending ChatMessage to participant {} in room {}", participantId, participantRoom);
+                messagingTemplate.convertAndSendToUser(participantId, "/queue/messages", chatMessageToSend); // Send ChatMessage
+            }
+        }
+    }
+
+    /**
+     * A resend of a stored message: the sender gets the receipt and its echo again, nobody else
+     */
+    private void acknowledgeAgain(Message stored) {
+        log.info("[sendMessage] Message {} from {} already stored, acknowledging again", stored.getClientTempId(), stored.getSenderId());
+        sendReceipt(stored);
+        messagingTemplate.convertAndSendToUser(stored.getSenderId(), "/queue/messages", toChatMessage(stored));
+    }
+
+    /**
+     * Tell the sender its message is stored, so its outbox stops resending it
+     */
+    private void sendReceipt(Message message) {
+        if (message.getClientTempId() == null) {
+            return;
+        }
+        Map<String, Object> receipt = new HashMap<>();
+        receipt.put("type", "MESSAGE_RECEIPT");
+        receipt.put("clientTempId", message.getClientTempId());
+        receipt.put("messageId", message.getMessageId());
+        receipt.put("chatId", message.getChatId());
+        receipt.put("timestamp", message.getTimestamp());
+        messagingTemplate.convertAndSendToUser(message.getSenderId(), "/queue/messages", receipt);
+    }
+
+    /**
+     * Tell the sender its message will never be stored, so its outbox drops it instead of resending
+     */
+    private void sendRejection(Message message, String reason) {
+        if (message.getClientTempId() == null) {
+            return;
+        }
+        Map<String, Object> rejection = new HashMap<>();
+        rejection.put("type", "MESSAGE_REJECTED");
+        rejection.put("clientTempId", message.getClientTempId());
+        rejection.put("chatId", message.getChatId());
+        rejection.put("reason", reason);
+        messagingTemplate.convertAndSendToUser(message.getSenderId(), "/queue/messages", rejection);
+    }
+
+    private ChatMessage toChatMessage(Message message) {
         // Convert Message to ChatMessage before sending
         ChatMessage chatMessageToSend = new ChatMessage();
         chatMessageToSend.setId(message.getMessageId());
@@ -328,9 +504,6 @@ public class ChatMessageHandler {
         chatMessageToSend.setContent(message.getContent());
         chatMessageToSend.setTimestamp(message.getTimestamp());
         chatMessageToSend.setClientTempId(message.getClientTempId()); // Copy clientTempId for message deduplication
-        
-        // Extra debugging
-        log.info("[sendMessage] ChatMessage clientTempId after conversion: {}", chatMessageToSend.getClientTempId());
 
         // Determine ChatMessage.MessageType based on Message.messageType
         ChatMessage.MessageType targetType = ChatMessage.MessageType.MESSAGE; // Default
@@ -349,15 +522,7 @@ public class ChatMessageHandler {
             }
         }
         chatMessageToSend.setType(targetType);
-
-        // Deliver to all participants in the chat
-        for (String participantId : chat.getParticipants()) {
-            String participantRoom = userRooms.get(participantId);
-            if (participantRoom != null) {
-                log.debug("[sendMessage] Sending ChatMessage to participant {} in room {}", participantId, participantRoom);
-                messagingTemplate.convertAndSendToUser(participantId, "/queue/messages", chatMessageToSend); // Send ChatMessage
-            }
-        }
+        return chatMessageToSend;
     }
 
     @MessageMapping("/chat.keyExchange")
@@ -374,8 +539,8 @@ public class ChatMessageHandler {
             return;
         }
 
-        List<Chat> existingChats = chatService.findChatsBetweenUsers(senderId, recipientId);
-        Chat chat = existingChats.isEmpty() ? chatService.createChatWithUser(senderId, recipientId) : existingChats.get(0);
+        // Get-or-create by participant pair (point read when the chat exists)
+        Chat chat = chatService.createChatWithUser(senderId, recipientId);
 
         chatMessage.setChatId(chat.getChatId());
         messagingTemplate.convertAndSendToUser(recipientId, "/queue/keyExchange", chatMessage);
@@ -389,19 +554,9 @@ public class ChatMessageHandler {
         log.info("Creating chat between {} and {}", ownerId, targetUserId);
 
         try {
-            // Check if chat already exists between these users
-            List<Chat> existingChats = chatService.findChatsBetweenUsers(ownerId, targetUserId);
-            Chat chat;
-
-            if (existingChats.isEmpty()) {
-                // Create new chat
-                chat = chatService.createChatWithUser(ownerId, targetUserId);
-                log.info("Created new chat with ID: {} between {} and {}", chat.getChatId(), ownerId, targetUserId);
-            } else {
-                // Use existing chat
-                chat = existingChats.get(0);
-                log.info("Using existing chat with ID: {} between {} and {}", chat.getChatId(), ownerId, targetUserId);
-            }
+            // Idempotent get-or-create keyed on the participant pair
+            Chat chat = chatService.createChatWithUser(ownerId, targetUserId);
+            log.info("Using chat with ID: {} between {} and {}", chat.getChatId(), ownerId, targetUserId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("type", "CHAT_CREATED");
@@ -489,6 +644,38 @@ public class ChatMessageHandler {
         log.info("Group chat creation notifications sent to all {} participants", chat.getParticipants().size());
     }
 
+    /**
+     * Relay a group sender-key distribution (or key request) to a single member.
+     * The wrapped key is opaque to the server and is never persisted; unlike
+     * /chat.keyExchange this does not create a direct chat between the members.
+     * The sender is the authenticated session's profile ID; a "senderId" in the payload
+     * is ignored, so a member cannot relay a key in another member's name.
+     */
+    @MessageMapping("/chat.senderKey")
+    public void relaySenderKey(@Payload Map<String, Object> payload, Principal principal) {
+        String groupId = (String) payload.get("chatId");
+        String senderId = principal != null ? principal.getName() : null;
+        String recipientId = (String) payload.get("recipientId");
+        String content = (String) payload.get("content");
+
+        if (senderId == null) {
+            log.warn("[relaySenderKey] Unauthenticated session, dropping sender key for chat {}", groupId);
+            return;
+        }
+        if (groupId == null || recipientId == null || content == null) {
+            log.error("[relaySenderKey] Missing chatId, recipientId or content");
+            return;
+        }
+        Chat chat = chatService.getChatById(groupId);
+        if (chat == null || !chat.getParticipants().contains(senderId) || !chat.getParticipants().contains(recipientId)) {
+            log.warn("[relaySenderKey] {} and {} are not both members of chat {}", senderId, recipientId, groupId);
+            return;
+        }
+
+        ChatMessage keyMessage = new ChatMessage(ChatMessage.MessageType.KEY_EXCHANGE, senderId, groupId, content);
+        messagingTemplate.convertAndSendToUser(recipientId, "/queue/messages", keyMessage);
+    }
+
     // @MessageMapping("/chat.sendMessage") endpoint removed as it was redundant with "/chat.send"
     // The frontend only uses the "/chat.send" endpoint
 
@@ -690,7 +877,12 @@ public class ChatMessageHandler {
 
     /**
      * Get message history for a specific chat
-     * This is used when the client requests message history for a chat
+     * This is used when the client requests message history for a chat.
+     * With a "since" sync cursor (ISO timestamp of the newest message the client already
+     * holds) only messages from that point on are considered, so a client that restored its
+     * local snapshot only receives what it missed. Older pages are requested with a "before"
+     * cursor (timestamp and id of the oldest message the client holds) instead of an offset.
+     * Only the requested page is read from the database.
      */
     @MessageMapping("/chat.getHistory")
     public void getChatHistory(@Payload Map<String, Object> payload) {
@@ -698,6 +890,9 @@ public class ChatMessageHandler {
         String requesterId = (String) payload.get("requesterId");
         Integer limit = payload.get("limit") instanceof Number ? ((Number) payload.get("limit")).intValue() : 50;
         Integer offset = payload.get("offset") instanceof Number ? ((Number) payload.get("offset")).intValue() : 0;
+        String since = payload.get("since") instanceof String ? (String) payload.get("since") : null;
+        String before = payload.get("before") instanceof String ? (String) payload.get("before") : null;
+        String beforeId = payload.get("beforeId") instanceof String ? (String) payload.get("beforeId") : null;
 
         log.debug("User {} requested history for chat {}, limit: {}, offset: {}",
                 requesterId, chatId, limit, offset);
@@ -709,17 +904,11 @@ public class ChatMessageHandler {
                 throw new RuntimeException("Unauthorized access to chat history");
             }
 
-            // Get messages for this chat
-            List<Message> messages = chatService.getMessagesByChatId(chatId);
-
-            // Sort messages by timestamp (newest first) and apply pagination
-            messages.sort((m1, m2) -> m2.getTimestamp().compareTo(m1.getTimestamp()));
-
-            // Apply pagination
-            int fromIndex = Math.min(offset, messages.size());
-            int toIndex = Math.min(offset + limit, messages.size());
-            List<Message> paginatedMessages = fromIndex < toIndex ? messages.subList(fromIndex, toIndex)
-                    : new ArrayList<>();
+            // One page, newest first: older than the client's oldest message, or the newest
+            // (from the sync cursor on, if given)
+            List<Message> paginatedMessages = before != null
+                    ? chatService.getMessagesBefore(chatId, LocalDateTime.parse(before), beforeId, limit)
+                    : chatService.getLatestMessages(chatId, since != null ? LocalDateTime.parse(since) : null, offset, limit);
 
             // Convert List<Message> to List<ChatMessage>
             List<ChatMessage> chatMessagesToSend = new ArrayList<>();
@@ -757,7 +946,12 @@ public class ChatMessageHandler {
             response.put("messages", chatMessagesToSend); // Send List<ChatMessage>
             response.put("offset", offset);
             response.put("limit", limit);
-            response.put("total", messages.size());
+            if (since != null) {
+                response.put("since", since);
+            }
+            if (before != null) {
+                response.put("before", before);
+            }
 
             messagingTemplate.convertAndSendToUser(
                     requesterId,
@@ -770,8 +964,10 @@ public class ChatMessageHandler {
         } catch (Exception e) {
             log.error("Error retrieving chat history", e);
 
+            // Carries the chat ID so the client can request this chat's history again later
             Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("type", "ERROR");
+            errorResponse.put("type", "CHAT_HISTORY_ERROR");
+            errorResponse.put("chatId", chatId);
             errorResponse.put("error", "Failed to get chat history: " + e.getMessage());
 
             messagingTemplate.convertAndSendToUser(
@@ -0,0 +1,112 @@
+package com.e2ee.chat.websocket;
+
+import com.e2ee.chat.model.ResumeTicket;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resume tokens for WebSocket sessions.
+ * Every subscribed user gets a token; when the connection drops and the client comes back
+ * with that token within the resume window, the new session is marked as resumed and only
+ * what happened since the disconnect is replayed instead of the full chat list and unread
+ * messages. Tokens are stored in Mongo (one ResumeTicket per user) so a reconnect after a
+ * deploy can still resume; a TTL index on expiresAt removes tickets once their window has
+ * passed. A session the backend never saw close (crash) has no disconnect time and gets the
+ * full replay.
+ */
+@Component
+@Slf4j
+public class SessionResumeRegistry {
+
+    public static final String RESUME_TOKEN_HEADER = "resume-token";
+
+    private final MongoTemplate mongoTemplate;
+    private final Map<String, LocalDateTime> resumedSessions = new ConcurrentHashMap<>(); // sessionId -> since
+    private final Duration resumeWindow;
+
+    public SessionResumeRegistry(MongoTemplate mongoTemplate,
+                                 @Value("${websocket.resume-window-ms:120000}") long resumeWindowMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.resumeWindow = Duration.ofMillis(resumeWindowMillis);
+    }
+
+    public Duration getResumeWindow() {
+        return resumeWindow;
+    }
+
+    /**
+     * Issue a fresh token for a user, replacing the previous one
+     * @param userId Profile ID of the connected user
+     * @return The new token
+     */
+    public String issue(String userId) {
+        String token = UUID.randomUUID().toString();
+        mongoTemplate.save(new ResumeTicket(userId, token, null, null));
+        return token;
+    }
+
+    /**
+     * Start the resume window of a user's token
+     * @param userId Profile ID of the disconnected user
+     */
+    public void markDisconnected(String userId) {
+        LocalDateTime now = LocalDateTime.now();
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(userId)),
+                new Update().set("disconnectedAt", now)
+                        .set("expiresAt", new Date(System.currentTimeMillis() + resumeWindow.toMillis())),
+                ResumeTicket.class);
+    }
+
+    /**
+     * Try to resume a session with the token the client presented on connect.
+     * The token must belong to the user, its session must have been seen disconnecting
+     * and the gap must be within the resume window; it can be used only once.
+     * @return The disconnect time to replay from, or null if a full replay is needed
+     */
+    public LocalDateTime resume(String sessionId, String userId, String token) {
+        if (token == null || userId == null) {
+            return null;
+        }
+        // Removed whatever the outcome: a token is single use
+        ResumeTicket ticket = mongoTemplate.findAndRemove(
+                Query.query(Criteria.where("_id").is(userId).and("token").is(token)), ResumeTicket.class);
+        if (ticket == null || ticket.getDisconnectedAt() == null) {
+            log.info("Resume token of {} unknown or still in use, full replay", userId);
+            return null;
+        }
+        Duration gap = Duration.between(ticket.getDisconnectedAt(), LocalDateTime.now());
+        if (gap.compareTo(resumeWindow) > 0) {
+            // The TTL monitor runs about once a minute, so an expired ticket can still be found
+            log.info("Resume gap of {} for {} exceeds {}, full replay", gap, userId, resumeWindow);
+            return null;
+        }
+        log.info("Session {} of {} resumed after {}", sessionId, userId, gap);
+        resumedSessions.put(sessionId, ticket.getDisconnectedAt());
+        return ticket.getDisconnectedAt();
+    }
+
+    /**
+     * @return The disconnect time a session resumed from, or null if it did not resume
+     */
+    public LocalDateTime resumedSince(String sessionId) {
+        return sessionId != null ? resumedSessions.get(sessionId) : null;
+    }
+
+    public void forgetSession(String sessionId) {
+        if (sessionId != null) {
+            resumedSessions.remove(sessionId);
+        }
+    }
+}
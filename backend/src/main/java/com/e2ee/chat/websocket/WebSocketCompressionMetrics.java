@@ -0,0 +1,211 @@
+package com.e2ee.chat.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Metrics for permessage-deflate on WebSocket connections.
+ *
+ * The container (Tomcat) compresses every message of a connection that negotiated
+ * permessage-deflate and does not report the compressed size, so it is estimated by
+ * running the outgoing messages through a deflater set up like the container's (raw
+ * deflate, sync flush, shared window unless server_no_context_takeover was negotiated).
+ * That doubles the compression work, so only a sample of the compressed connections is
+ * estimated (websocket.compression.metrics.sample-rate, 0 turns the estimate off); a
+ * sampled connection is estimated for its whole life, so the shared window matches the
+ * container's. Messages are tagged small or large against
+ * websocket.compression.metrics.small-size, which shows whether compressing the small
+ * frames pays off.
+ *
+ * Exposed on /actuator/metrics as websocket.outbound.bytes (raw payload bytes, every
+ * connection), websocket.outbound.deflated.bytes (estimated bytes on the wire, sampled
+ * connections) and websocket.compression.ratio (deflated / raw, sampled connections).
+ */
+@Component
+@Slf4j
+public class WebSocketCompressionMetrics {
+
+    public static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+    private static final String NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    // Sync flush trailer that permessage-deflate strips from every message (RFC 7692)
+    private static final int SYNC_FLUSH_TRAILER = 4;
+
+    private final int smallSize;
+    private final double sampleRate;
+    private final AtomicLong sampledRaw = new AtomicLong();
+    private final AtomicLong sampledDeflated = new AtomicLong();
+    private final Map<String, MeteredSession> sessions = new ConcurrentHashMap<>();
+
+    // Registered once; indexed [compressed ? 1 : 0][large ? 1 : 0] and [large ? 1 : 0]
+    private final Counter[][] outboundBytes = new Counter[2][2];
+    private final Counter[] deflatedBytes = new Counter[2];
+
+    public WebSocketCompressionMetrics(MeterRegistry meterRegistry,
+            @Value("${websocket.compression.metrics.small-size:256}") int smallSize,
+            @Value("${websocket.compression.metrics.sample-rate:0.05}") double sampleRate) {
+        this.smallSize = smallSize;
+        this.sampleRate = sampleRate;
+        for (int compressed = 0; compressed < 2; compressed++) {
+            for (int large = 0; large < 2; large++) {
+                outboundBytes[compressed][large] = Counter.builder("websocket.outbound.bytes")
+                        .tag("compressed", String.valueOf(compressed == 1))
+                        .tag("size", sizeTag(large == 1))
+                        .register(meterRegistry);
+            }
+        }
+        for (int large = 0; large < 2; large++) {
+            deflatedBytes[large] = Counter.builder("websocket.outbound.deflated.bytes")
+                    .tag("size", sizeTag(large == 1))
+                    .register(meterRegistry);
+        }
+        Gauge.builder("websocket.compression.ratio", this, WebSocketCompressionMetrics::ratio)
+                .description("Estimated deflated / raw size of outgoing messages on sampled compressed connections")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Decorator factory for WebSocketTransportRegistration
+     */
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+                WebSocketExtension deflate = findDeflate(session);
+                log.debug("WebSocket session {} compression: {}", session.getId(), deflate != null ? deflate : "none");
+                boolean sampled = deflate != null && ThreadLocalRandom.current().nextDouble() < sampleRate;
+                MeteredSession metered = new MeteredSession(session, deflate, sampled);
+                sessions.put(session.getId(), metered);
+                super.afterConnectionEstablished(metered);
+            }
+
+            @Override
+            public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus closeStatus) throws Exception {
+                MeteredSession metered = sessions.remove(session.getId());
+                if (metered != null) {
+                    metered.release();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public double ratio() {
+        long raw = sampledRaw.get();
+        return raw == 0 ? 1.0 : (double) sampledDeflated.get() / raw;
+    }
+
+    private static String sizeTag(boolean large) {
+        return large ? "large" : "small";
+    }
+
+    private static WebSocketExtension findDeflate(WebSocketSession session) {
+        for (WebSocketExtension extension : session.getExtensions()) {
+            if (PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName())) {
+                return extension;
+            }
+        }
+        return null;
+    }
+
+    private void recordRaw(int length, boolean compressed) {
+        outboundBytes[compressed ? 1 : 0][length >= smallSize ? 1 : 0].increment(length);
+    }
+
+    private void recordDeflated(byte[] payload, Deflater deflater, boolean resetAfterMessage) {
+        int deflated = deflatedSize(deflater, payload, resetAfterMessage);
+        deflatedBytes[payload.length >= smallSize ? 1 : 0].increment(deflated);
+        sampledRaw.addAndGet(payload.length);
+        sampledDeflated.addAndGet(deflated);
+    }
+
+    private static int deflatedSize(Deflater deflater, byte[] payload, boolean resetAfterMessage) {
+        byte[] buffer = new byte[Math.max(64, payload.length / 2)];
+        int total = 0;
+        deflater.setInput(payload);
+        int written;
+        do {
+            written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            total += written;
+        } while (written == buffer.length);
+        if (resetAfterMessage) {
+            deflater.reset();
+        }
+        return Math.max(1, total - SYNC_FLUSH_TRAILER);
+    }
+
+    /**
+     * Counts what the STOMP handler sends through the session; sampled sessions also
+     * estimate the deflated size
+     */
+    private class MeteredSession extends WebSocketSessionDecorator {
+        private final boolean compressed;
+        private final Deflater deflater;
+        private final boolean resetAfterMessage;
+        private boolean released;
+
+        MeteredSession(WebSocketSession session, WebSocketExtension deflate, boolean sampled) {
+            super(session);
+            this.compressed = deflate != null;
+            this.deflater = sampled ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+            this.resetAfterMessage = deflate != null && deflate.getParameters().containsKey(NO_CONTEXT_TAKEOVER);
+        }
+
+        @Override
+        public void sendMessage(@NonNull WebSocketMessage<?> message) throws IOException {
+            super.sendMessage(message);
+            recordRaw(message.getPayloadLength(), compressed);
+            if (deflater == null) {
+                return;
+            }
+            byte[] payload = payloadBytes(message);
+            if (payload != null) {
+                synchronized (this) {
+                    if (!released) {
+                        recordDeflated(payload, deflater, resetAfterMessage);
+                    }
+                }
+            }
+        }
+
+        synchronized void release() {
+            released = true;
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+
+        private byte[] payloadBytes(WebSocketMessage<?> message) {
+            if (message instanceof TextMessage text) {
+                // The STOMP handler builds text frames from bytes, so this is not a copy
+                return text.asBytes();
+            }
+            if (message.getPayload() instanceof ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.duplicate().get(bytes);
+                return bytes;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.e2ee.chat.config;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DirectChatPairKeyMigrationTest {
+
+	@SuppressWarnings("unchecked")
+	private final MongoCollection<Document> chats = mock(MongoCollection.class);
+	@SuppressWarnings("unchecked")
+	private final MongoCollection<Document> messages = mock(MongoCollection.class);
+	@SuppressWarnings("unchecked")
+	private final MongoCollection<Document> users = mock(MongoCollection.class);
+
+	private static Document chat(String id, String a, String b, long updatedAt) {
+		return new Document("_id", id)
+				.append("participants", List.of(a, b))
+				.append("messageIds", List.of("m-" + id))
+				.append("updatedAt", new Date(updatedAt))
+				.append("lastMessagePreview", "preview " + id);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void pendingChats(Document... batch) {
+		FindIterable<Document> found = mock(FindIterable.class);
+		AtomicBoolean served = new AtomicBoolean();
+		when(chats.find(any(Bson.class))).thenReturn(found);
+		when(found.sort(any())).thenReturn(found);
+		when(found.limit(anyInt())).thenReturn(found);
+		when(found.into(any())).thenAnswer(invocation -> {
+			List<Document> target = invocation.getArgument(0);
+			if (!served.getAndSet(true)) {
+				target.addAll(List.of(batch));
+			}
+			return target;
+		});
+		// No chat carries a pairKey yet
+		when(found.first()).thenReturn(null);
+	}
+
+	private static BsonDocument bson(Bson bson) {
+		return bson.toBsonDocument();
+	}
+
+	@Test
+	void keysFirstChatOfEachPairAndMergesDuplicates() {
+		pendingChats(chat("c1", "bob", "alice", 1_000), chat("c2", "alice", "bob", 5_000), chat("c3", "alice", "carol", 2_000));
+
+		DirectChatPairKeyMigration.Result result = new DirectChatPairKeyMigration(null).migrate(chats, messages, users);
+
+		assertEquals(2, result.keyed());
+		assertEquals(1, result.merged());
+
+		ArgumentCaptor<Bson> filters = ArgumentCaptor.forClass(Bson.class);
+		ArgumentCaptor<Bson> updates = ArgumentCaptor.forClass(Bson.class);
+		verify(chats, times(3)).updateOne(filters.capture(), updates.capture());
+		assertEquals(bson(Filters.eq("_id", "c1")), bson(filters.getAllValues().get(0)));
+		assertEquals(bson(Updates.set("pairKey", "alice:bob")), bson(updates.getAllValues().get(0)));
+		// The duplicate's newer preview and message ids move to the canonical chat
+		assertEquals(bson(Filters.eq("_id", "c1")), bson(filters.getAllValues().get(1)));
+		BsonDocument merge = bson(updates.getAllValues().get(1));
+		assertTrue(merge.getDocument("$addToSet").containsKey("messageIds"));
+		assertEquals("preview c2", merge.getDocument("$set").getString("lastMessagePreview").getValue());
+		assertEquals(bson(Updates.set("pairKey", "alice:carol")), bson(updates.getAllValues().get(2)));
+
+		verify(messages).updateMany(filters.capture(), updates.capture());
+		assertEquals(bson(Filters.eq("chatId", "c2")), bson(filters.getValue()));
+		assertEquals(bson(Updates.set("chatId", "c1")), bson(updates.getValue()));
+
+		verify(users, times(2)).updateMany(any(Bson.class), any(Bson.class));
+		verify(chats).deleteOne(filters.capture());
+		assertEquals(bson(Filters.eq("_id", "c2")), bson(filters.getValue()));
+	}
+
+	@Test
+	void doesNothingWhenEveryDirectChatIsKeyed() {
+		pendingChats();
+
+		DirectChatPairKeyMigration.Result result = new DirectChatPairKeyMigration(null).migrate(chats, messages, users);
+
+		assertEquals(0, result.keyed());
+		assertEquals(0, result.merged());
+	}
+}
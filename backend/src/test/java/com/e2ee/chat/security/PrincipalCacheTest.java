@@ -0,0 +1,103 @@
+package com.e2ee.chat.security;
+
+import com.e2ee.chat.model.User;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PrincipalCacheTest {
+
+	private final AtomicLong now = new AtomicLong(1_000);
+
+	private static User user(String id, String profileId) {
+		User user = new User();
+		user.setId(id);
+		user.setUsername("user-" + id);
+		user.setProfileId(profileId);
+		return user;
+	}
+
+	@Test
+	void returnsCachedPrincipalUntilItExpires() {
+		PrincipalCache cache = new PrincipalCache(20, 100, now::get);
+		User alice = user("1", "p1");
+		cache.put("p1", alice);
+
+		assertSame(alice, cache.get("p1"));
+		now.addAndGet(20);
+		assertSame(alice, cache.get("p1"));
+		now.addAndGet(1);
+		assertNull(cache.get("p1"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void staysWithinMaxSizeDroppingTheLeastRecentlyUsedEntry() {
+		PrincipalCache cache = new PrincipalCache(60_000, 2, now::get);
+		cache.put("p1", user("1", "p1"));
+		cache.put("p2", user("2", "p2"));
+		cache.get("p1");
+		cache.put("p3", user("3", "p3"));
+
+		assertEquals(2, cache.size());
+		assertNull(cache.get("p2"));
+		assertNotNull(cache.get("p1"));
+		assertNotNull(cache.get("p3"));
+	}
+
+	@Test
+	void refreshingAnEntryRestartsItsTtl() {
+		PrincipalCache cache = new PrincipalCache(10, 100, now::get);
+		User alice = user("1", "p1");
+		cache.put("p1", alice);
+		now.addAndGet(8);
+		cache.put("p1", alice);
+		now.addAndGet(8);
+
+		assertSame(alice, cache.get("p1"));
+	}
+
+	@Test
+	void evictUserDropsEntryEvenWhenKeyedDifferently() {
+		PrincipalCache cache = new PrincipalCache(60_000, 100, now::get);
+		User alice = user("1", "p1");
+		cache.put("p1", alice);
+		cache.put("legacy-key", alice);
+
+		cache.evictUser(user("1", "p1"));
+
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void savingAUserEvictsItThroughTheMongoListener() {
+		PrincipalCache cache = new PrincipalCache(60_000, 100, now::get);
+		User alice = user("1", "p1");
+		cache.put("p1", alice);
+
+		new UserCacheEvictionListener(cache).onAfterSave(
+				new AfterSaveEvent<>(alice, new Document(), "users"));
+
+		assertNull(cache.get("p1"));
+	}
+
+	@Test
+	void userEvictedAsLeastRecentlyUsedIsNoLongerIndexed() {
+		PrincipalCache cache = new PrincipalCache(60_000, 1, now::get);
+		User alice = user("1", "p1");
+		cache.put("legacy-key", alice);
+		cache.put("p2", user("2", "p2"));
+		cache.put("p1", alice);
+
+		cache.evictUser(alice);
+
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,76 @@
+package com.e2ee.chat.service.impl;
+
+import com.e2ee.chat.model.Chat;
+import com.e2ee.chat.model.User;
+import com.e2ee.chat.repository.ChatRepository;
+import com.e2ee.chat.repository.MessageRepository;
+import com.e2ee.chat.service.UserSearchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatServiceImplPairKeyTest {
+
+	private final ChatRepository chatRepository = mock(ChatRepository.class);
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final ChatServiceImpl chatService = new ChatServiceImpl(chatRepository, mock(MessageRepository.class),
+			mock(UserSearchService.class), mongoTemplate);
+
+	private static Chat chat(String chatId) {
+		Chat chat = new Chat();
+		chat.setChatId(chatId);
+		chat.setPairKey("alice:bob");
+		return chat;
+	}
+
+	@Test
+	void pairKeyIsIndependentOfArgumentOrder() {
+		assertEquals("alice:bob", Chat.pairKey("alice", "bob"));
+		assertEquals("alice:bob", Chat.pairKey("bob", "alice"));
+	}
+
+	@Test
+	void returnsExistingDirectChatWithoutUpsert() {
+		Chat existing = chat("c1");
+		when(chatRepository.findByPairKey("alice:bob")).thenReturn(Optional.of(existing));
+
+		assertSame(existing, chatService.createChatWithUser("bob", "alice"));
+		verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class),
+				any(FindAndModifyOptions.class), eq(Chat.class));
+	}
+
+	@Test
+	void upsertsMissingDirectChatAndAddsItToTheOwner() {
+		Chat created = chat("c2");
+		when(chatRepository.findByPairKey("alice:bob")).thenReturn(Optional.empty());
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+				eq(Chat.class))).thenReturn(created);
+
+		assertSame(created, chatService.createChatWithUser("alice", "bob"));
+		verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(User.class));
+	}
+
+	@Test
+	void readsTheWinnerAfterLosingAnUpsertRace() {
+		Chat winner = chat("c3");
+		when(chatRepository.findByPairKey("alice:bob")).thenReturn(Optional.empty(), Optional.of(winner));
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+				eq(Chat.class))).thenThrow(new DuplicateKeyException("E11000"));
+
+		assertSame(winner, chatService.createChatWithUser("alice", "bob"));
+	}
+}
@@ -0,0 +1,45 @@
+package com.e2ee.chat.util;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UsernamePrefixIndexTest {
+
+	private final UsernamePrefixIndex index = new UsernamePrefixIndex();
+
+	@Test
+	void completesCaseInsensitivelyKeepingTheSpelling() {
+		index.put(new ObjectId(), "Alice");
+		index.put(new ObjectId(), "alfred");
+		index.put(new ObjectId(), "bob");
+
+		assertEquals(List.of("alfred", "Alice"), index.complete("AL", 10));
+		assertEquals(List.of("alfred"), index.complete("al", 1));
+	}
+
+	@Test
+	void renamedProfileIsNoLongerFoundUnderItsOldUsername() {
+		ObjectId profileId = new ObjectId();
+		index.put(profileId, "alice");
+
+		index.put(profileId, "alicia");
+
+		assertEquals(List.of("alicia"), index.complete("ali", 10));
+		assertEquals(List.of(), index.complete("alice", 10));
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	void savingAProfileAgainKeepsItsEntry() {
+		ObjectId profileId = new ObjectId();
+		index.put(profileId, "alice");
+
+		index.put(profileId, "alice");
+
+		assertEquals(List.of("alice"), index.complete("a", 10));
+	}
+}
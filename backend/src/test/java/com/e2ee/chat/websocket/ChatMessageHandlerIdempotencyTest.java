@@ -0,0 +1,88 @@
+package com.e2ee.chat.websocket;
+
+import com.e2ee.chat.model.Chat;
+import com.e2ee.chat.model.ChatMessage;
+import com.e2ee.chat.model.Message;
+import com.e2ee.chat.service.ChatService;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatMessageHandlerIdempotencyTest {
+
+	private static final String JSON = "{\"messageId\":\"m1\",\"chatId\":\"c1\",\"senderId\":\"alice\","
+			+ "\"content\":\"hi\",\"clientTempId\":\"t1\"}";
+
+	private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+	private final ChatService chatService = mock(ChatService.class);
+	private final ChatMessageHandler handler = new ChatMessageHandler(messagingTemplate, chatService,
+			mock(WebSocketSessionTracker.class), mock(SessionResumeRegistry.class));
+
+	private static Message stored() {
+		Message message = new Message("c1", "alice", "hi");
+		message.setMessageId("m1");
+		message.setClientTempId("t1");
+		return message;
+	}
+
+	private void send() {
+		handler.sendMessageBatch(Map.of("messages", List.of(JSON)));
+	}
+
+	private void verifyReceipt() {
+		verify(messagingTemplate).convertAndSendToUser(eq("alice"), eq("/queue/messages"),
+				argThat(payload -> payload instanceof Map<?, ?> map && "MESSAGE_RECEIPT".equals(map.get("type"))
+						&& "t1".equals(map.get("clientTempId"))));
+	}
+
+	@Test
+	void resendOfStoredMessageIsAcknowledgedWithoutStoringAgain() {
+		when(chatService.findByClientTempId("alice", "t1")).thenReturn(stored());
+
+		send();
+
+		verify(chatService, never()).insertMessage(any());
+		verify(chatService, never()).updateChatPreview(anyString(), anyString());
+		verifyReceipt();
+	}
+
+	@Test
+	void lostInsertRaceIsTreatedAsAlreadyStored() {
+		Chat chat = new Chat();
+		chat.setChatId("c1");
+		chat.setParticipants(List.of("alice", "bob"));
+		when(chatService.getChatById("c1")).thenReturn(chat);
+		// Nothing stored at the check, the concurrent flush inserts before us
+		when(chatService.findByClientTempId("alice", "t1")).thenReturn(null, stored());
+		doThrow(new DuplicateKeyException("E11000")).when(chatService).insertMessage(any());
+
+		send();
+
+		verify(chatService, never()).updateChatPreview(anyString(), anyString());
+		verifyReceipt();
+		verify(messagingTemplate).convertAndSendToUser(eq("alice"), eq("/queue/messages"), any(ChatMessage.class));
+	}
+
+	@Test
+	void messageForUnknownChatIsRejected() {
+		send();
+
+		verify(chatService, never()).insertMessage(any());
+		verify(messagingTemplate, times(1)).convertAndSendToUser(eq("alice"), eq("/queue/messages"),
+				argThat(payload -> payload instanceof Map<?, ?> map && "MESSAGE_REJECTED".equals(map.get("type"))));
+	}
+}
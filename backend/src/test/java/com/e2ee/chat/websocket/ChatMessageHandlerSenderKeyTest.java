@@ -0,0 +1,66 @@
+package com.e2ee.chat.websocket;
+
+import com.e2ee.chat.model.Chat;
+import com.e2ee.chat.model.ChatMessage;
+import com.e2ee.chat.service.ChatService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatMessageHandlerSenderKeyTest {
+
+	private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+	private final ChatService chatService = mock(ChatService.class);
+	private final ChatMessageHandler handler = new ChatMessageHandler(messagingTemplate, chatService,
+			mock(WebSocketSessionTracker.class), mock(SessionResumeRegistry.class));
+
+	@BeforeEach
+	void group() {
+		Chat chat = new Chat();
+		chat.setChatId("g1");
+		chat.setParticipants(List.of("alice", "bob", "carol"));
+		when(chatService.getChatById("g1")).thenReturn(chat);
+	}
+
+	private static Principal user(String profileId) {
+		return () -> profileId;
+	}
+
+	@Test
+	void senderIsTakenFromTheSessionNotThePayload() {
+		handler.relaySenderKey(Map.of("chatId", "g1", "senderId", "carol", "recipientId", "bob",
+				"content", "SKD1:g1:k1:0:wrapped"), user("alice"));
+
+		verify(messagingTemplate).convertAndSendToUser(eq("bob"), eq("/queue/messages"),
+				argThat(payload -> payload instanceof ChatMessage message && "alice".equals(message.getSenderId())));
+	}
+
+	@Test
+	void unauthenticatedSessionIsDropped() {
+		handler.relaySenderKey(Map.of("chatId", "g1", "senderId", "alice", "recipientId", "bob",
+				"content", "SKD1:g1:k1:0:wrapped"), null);
+
+		verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
+	}
+
+	@Test
+	void nonMemberCannotRelay() {
+		handler.relaySenderKey(Map.of("chatId", "g1", "recipientId", "bob",
+				"content", "SKD1:g1:k1:0:wrapped"), user("mallory"));
+
+		verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
+	}
+}
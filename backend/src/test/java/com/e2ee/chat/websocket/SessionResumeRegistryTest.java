@@ -0,0 +1,82 @@
+package com.e2ee.chat.websocket;
+
+import com.e2ee.chat.model.ResumeTicket;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionResumeRegistryTest {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final SessionResumeRegistry registry = new SessionResumeRegistry(mongoTemplate, 120_000);
+
+	private void stored(ResumeTicket ticket) {
+		when(mongoTemplate.findAndRemove(any(Query.class), eq(ResumeTicket.class))).thenReturn(ticket);
+	}
+
+	@Test
+	void issuedTokenReplacesTheUsersTicket() {
+		String token = registry.issue("alice");
+
+		verify(mongoTemplate).save(argThat((ResumeTicket ticket) -> "alice".equals(ticket.getUserId())
+				&& token.equals(ticket.getToken()) && ticket.getDisconnectedAt() == null && ticket.getExpiresAt() == null));
+	}
+
+	@Test
+	void disconnectStartsTheTtlOfTheTicket() {
+		registry.markDisconnected("alice");
+
+		verify(mongoTemplate).updateFirst(any(Query.class),
+				argThat((Update update) -> update.modifies("disconnectedAt") && update.modifies("expiresAt")),
+				eq(ResumeTicket.class));
+	}
+
+	@Test
+	void reconnectWithinTheWindowResumesFromTheDisconnect() {
+		LocalDateTime disconnectedAt = LocalDateTime.now().minusSeconds(30);
+		stored(new ResumeTicket("alice", "t1", disconnectedAt, null));
+
+		assertEquals(disconnectedAt, registry.resume("s2", "alice", "t1"));
+		assertEquals(disconnectedAt, registry.resumedSince("s2"));
+	}
+
+	@Test
+	void reconnectAfterTheWindowGetsTheFullReplay() {
+		stored(new ResumeTicket("alice", "t1", LocalDateTime.now().minusMinutes(3), null));
+
+		assertNull(registry.resume("s2", "alice", "t1"));
+		assertNull(registry.resumedSince("s2"));
+	}
+
+	@Test
+	void sessionNeverSeenClosingGetsTheFullReplay() {
+		stored(new ResumeTicket("alice", "t1", null, null));
+
+		assertNull(registry.resume("s2", "alice", "t1"));
+	}
+
+	@Test
+	void unknownTokenGetsTheFullReplay() {
+		assertNull(registry.resume("s2", "alice", "stale"));
+	}
+
+	@Test
+	void connectWithoutTokenDoesNotTouchTheStore() {
+		assertNull(registry.resume("s2", "alice", null));
+
+		verify(mongoTemplate, never()).findAndRemove(any(Query.class), eq(ResumeTicket.class));
+	}
+}
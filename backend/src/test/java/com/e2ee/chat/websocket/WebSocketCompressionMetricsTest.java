@@ -0,0 +1,79 @@
+package com.e2ee.chat.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebSocketCompressionMetricsTest {
+
+	private static final byte[] FRAME = ("MESSAGE\ndestination:/user/queue/messages\ncontent-type:application/json\n\n"
+			+ "{\"type\":\"MESSAGE_RECEIPT\",\"clientTempId\":\"0f8fad5b-d9cb-469f-a165-70867728950e\"}\0")
+			.getBytes(StandardCharsets.UTF_8);
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private WebSocketSession connect(WebSocketCompressionMetrics metrics, boolean deflate) throws Exception {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("s1");
+		when(session.getExtensions()).thenReturn(deflate
+				? List.of(new WebSocketExtension(WebSocketCompressionMetrics.PERMESSAGE_DEFLATE))
+				: List.of());
+		WebSocketHandler handler = mock(WebSocketHandler.class);
+		metrics.decorate(handler).afterConnectionEstablished(session);
+		ArgumentCaptor<WebSocketSession> decorated = ArgumentCaptor.forClass(WebSocketSession.class);
+		verify(handler).afterConnectionEstablished(decorated.capture());
+		return decorated.getValue();
+	}
+
+	private double counted(String name, String... tags) {
+		return registry.get(name).tags(tags).counter().count();
+	}
+
+	@Test
+	void sampledConnectionEstimatesTheDeflatedSize() throws Exception {
+		WebSocketCompressionMetrics metrics = new WebSocketCompressionMetrics(registry, 64, 1.0);
+		WebSocketSession session = connect(metrics, true);
+		for (int i = 0; i < 10; i++) {
+			session.sendMessage(new TextMessage(FRAME));
+		}
+
+		assertEquals(10.0 * FRAME.length, counted("websocket.outbound.bytes", "compressed", "true", "size", "large"));
+		double deflated = counted("websocket.outbound.deflated.bytes", "size", "large");
+		assertTrue(deflated > 0 && deflated < 10.0 * FRAME.length);
+		assertTrue(metrics.ratio() < 0.5, "repeated frames share the deflate window");
+	}
+
+	@Test
+	void unsampledConnectionOnlyCountsRawBytes() throws Exception {
+		WebSocketCompressionMetrics metrics = new WebSocketCompressionMetrics(registry, 64, 0.0);
+		WebSocketSession session = connect(metrics, true);
+		session.sendMessage(new TextMessage(FRAME));
+
+		assertEquals(FRAME.length, counted("websocket.outbound.bytes", "compressed", "true", "size", "large"));
+		assertEquals(0.0, counted("websocket.outbound.deflated.bytes", "size", "large"));
+		assertEquals(1.0, metrics.ratio());
+	}
+
+	@Test
+	void uncompressedConnectionIsTaggedAndSmallFramesAreSeparated() throws Exception {
+		WebSocketCompressionMetrics metrics = new WebSocketCompressionMetrics(registry, 1024, 1.0);
+		WebSocketSession session = connect(metrics, false);
+		session.sendMessage(new TextMessage(FRAME));
+
+		assertEquals(FRAME.length, counted("websocket.outbound.bytes", "compressed", "false", "size", "small"));
+		assertEquals(0.0, counted("websocket.outbound.deflated.bytes", "size", "small"));
+	}
+}
@@ -8,9 +8,14 @@ import javafx.stage.Stage;
 import javafx.application.Platform;
 import com.e2ee.chat.frontend.service.WebSocketService;
 import com.e2ee.chat.frontend.service.AuthService;
+import com.e2ee.chat.frontend.service.MessageOutbox;
+import com.e2ee.chat.frontend.service.PlaintextCache;
+import com.e2ee.chat.frontend.service.StartupOrchestrator;
+import com.e2ee.chat.frontend.service.TaskScheduler;
 import com.e2ee.chat.frontend.controller.*;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 public class E2EEChatFrontendApplication extends Application {
     private static final String LOGIN_FXML = "/com/e2ee/chat/frontend/login.fxml";
@@ -19,17 +24,32 @@ public class E2EEChatFrontendApplication extends Application {
     private static Stage primaryStage;
     private static AuthService authService;
     private static WebSocketService webSocketService;
+    private static PlaintextCache plaintextCache;
+    private static StartupOrchestrator startup;
     private static String userId;
     @Override
     public void start(Stage stage) throws Exception {
         primaryStage = stage;
+        startup = new StartupOrchestrator(TaskScheduler.shared());
         authService = new AuthService();
+        authService.setStartup(startup);
         webSocketService = new WebSocketService();
+        plaintextCache = new PlaintextCache();
+
+        // Connection setup overlaps with the login screen instead of delaying the login request
+        startup.track("http.warmup", authService.warmUpAsync());
 
         showLoginScreen();
+        startup.milestone("login screen shown");
 
         stage.setTitle("E2EE Chat");
         stage.setOnCloseRequest(event -> {
+            if (stage.getScene() != null && stage.getScene().getUserData() instanceof MainController controller) {
+                controller.flushSnapshot();
+            }
+            if (authService.getKeyStore() != null) {
+                authService.getKeyStore().flush();
+            }
             if (webSocketService.isConnected()) {
                 webSocketService.disconnect();
             }
@@ -61,38 +81,41 @@ public class E2EEChatFrontendApplication extends Application {
     }
 
     public static void showMainScreen(String username) {
+        // The connect and the profile fetch run while the main screen loads; subscriptions
+        // wait until MainController has installed its handlers, so no frame is lost
+        CompletableFuture<Void> handlersInstalled = new CompletableFuture<>();
         try {
+            startup.milestone("logged in");
             // Set authentication token from auth service to websocket service
             webSocketService.setAuthToken(authService.getAuthToken());
             userId = authService.getUserIdFromToken(authService.getAuthToken());
-            // Set chat list handler before connecting
-            webSocketService.setChatListHandler(chatList -> {
-                System.out.println("Chat list received: " + chatList);
-                Platform.runLater(() -> {
-                    MainController mainController = (MainController) primaryStage.getScene().getUserData();
-                    if (mainController != null) {
-                        mainController.updateChatList(chatList);
-                    }
-                });
-            });
-            
-            // Connect to WebSocket after successful login
+
+            // Messages left unacknowledged by the last session are resent once connected
+            webSocketService.setOutbox(new MessageOutbox(userId, authService.getKeyStore().getLocalDataKey(),
+                    TaskScheduler.shared()));
             if (!webSocketService.isConnected()) {
-                webSocketService.connect(username,userId);
+                webSocketService.subscribeWhen(handlersInstalled);
+                startup.phase("websocket.connect", () -> webSocketService.connect(username, userId));
             }
+            startup.track("profile.fetch", authService.getCurrentProfileAsync());
 
             FXMLLoader loader = new FXMLLoader(E2EEChatFrontendApplication.class.getResource(MAIN_FXML));
             Parent root = loader.load();
+            handlersInstalled.complete(null);
             Scene scene = new Scene(root, 800, 600);
             primaryStage.setScene(scene);
             primaryStage.setTitle(username);
             primaryStage.show();
+            startup.milestone("main screen shown");
 
             // Store the controller for later use
             MainController controller = loader.getController();
             primaryStage.getScene().setUserData(controller);
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            // Never leave the connect waiting, even if the main screen failed to load
+            handlersInstalled.complete(null);
         }
     }
 
@@ -104,6 +127,14 @@ public class E2EEChatFrontendApplication extends Application {
         return webSocketService;
     }
 
+    public static StartupOrchestrator getStartup() {
+        return startup;
+    }
+
+    public static PlaintextCache getPlaintextCache() {
+        return plaintextCache;
+    }
+
     public static Stage getPrimaryStage() {
         return primaryStage;
     }
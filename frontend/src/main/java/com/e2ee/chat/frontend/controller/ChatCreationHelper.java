@@ -1,6 +1,7 @@
 package com.e2ee.chat.frontend.controller;
 
 import com.e2ee.chat.frontend.model.UserProfile;
+import com.e2ee.chat.frontend.service.TaskScheduler;
 import com.e2ee.chat.frontend.service.WebSocketService;
 import javafx.application.Platform;
 import javafx.scene.control.Label;
@@ -45,28 +46,16 @@ public class ChatCreationHelper {
             statusLabel.setText("Creating chat with " + user.getUsername() + "...");
             
             // Force a refresh of the chat list after a delay
-            new Thread(() -> {
-                try {
-                    // Wait 1 second
-                    Thread.sleep(1000);
-                    
-                    // Request an updated chat list
-                    webSocketService.requestChatList();
-                    
-                    // Wait another 3 seconds
-                    Thread.sleep(3000);
-                    
-                    // Request again to be sure
-                    webSocketService.requestChatList();
-                    
-                    // Show success message
-                    Platform.runLater(() -> {
-                        statusLabel.setText("Chat with " + user.getUsername() + " ready");
-                    });
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }).start();
+            TaskScheduler scheduler = TaskScheduler.shared();
+            scheduler.scheduleLatest(WebSocketService.CHAT_LIST_REFRESH, webSocketService::requestChatList, 1000);
+            
+            // Request again to be sure, then show success message
+            scheduler.schedule(() -> {
+                webSocketService.requestChatList();
+                Platform.runLater(() -> {
+                    statusLabel.setText("Chat with " + user.getUsername() + " ready");
+                });
+            }, 4000);
         } catch (Exception e) {
             statusLabel.setText("Error creating chat: " + e.getMessage());
             e.printStackTrace();
@@ -0,0 +1,114 @@
+package com.e2ee.chat.frontend.controller;
+
+import com.e2ee.chat.frontend.model.Chat;
+import javafx.collections.ObservableList;
+import javafx.scene.control.SelectionModel;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the chat ListView's backing list sorted (most recently active first) and indexed
+ * by chat ID, and applies CHAT_LIST snapshots as a keyed diff.
+ *
+ * Chats already in the list are updated in place, so their identity, retained messages
+ * and selection survive a refresh; only rows that were inserted, removed, moved or whose
+ * visible fields changed are touched.
+ */
+public class ChatListModel {
+    static final Comparator<Chat> MOST_RECENT_FIRST = Comparator
+            .comparing(Chat::getUpdatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(Chat::getChatId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final ObservableList<Chat> chats;
+    private final SelectionModel<Chat> selection;
+    private final Map<String, Chat> byId = new HashMap<>();
+
+    public ChatListModel(ObservableList<Chat> chats, SelectionModel<Chat> selection) {
+        this.chats = chats;
+        this.selection = selection;
+    }
+
+    public Chat get(String chatId) {
+        return chatId != null ? byId.get(chatId) : null;
+    }
+
+    /**
+     * Apply a full chat list snapshot from the server
+     *
+     * @param snapshot Chats with a valid chat ID
+     * @return Chats that were not in the list before
+     */
+    public List<Chat> apply(List<Chat> snapshot) {
+        Set<String> present = new HashSet<>();
+        List<Chat> added = new ArrayList<>();
+        for (Chat incoming : snapshot) {
+            present.add(incoming.getChatId());
+            Chat existing = byId.get(incoming.getChatId());
+            if (existing == null) {
+                add(incoming);
+                added.add(incoming);
+            } else if (existing.updateFrom(incoming)) {
+                touched(existing);
+            }
+        }
+        if (byId.size() > present.size()) {
+            byId.keySet().retainAll(present);
+            chats.removeIf(chat -> !present.contains(chat.getChatId()));
+        }
+        return added;
+    }
+
+    /**
+     * Insert a chat at its sorted position
+     */
+    public void add(Chat chat) {
+        if (byId.putIfAbsent(chat.getChatId(), chat) != null) {
+            touched(byId.get(chat.getChatId()));
+            return;
+        }
+        chats.add(insertionPoint(chat), chat);
+    }
+
+    public void remove(Chat chat) {
+        if (byId.remove(chat.getChatId()) != null) {
+            chats.remove(chat);
+        }
+    }
+
+    /**
+     * A chat changed (new message, renamed, ...): move it to its new position if its
+     * activity time changed, otherwise just re-render its row
+     */
+    public void touched(Chat chat) {
+        int index = chats.indexOf(chat);
+        if (index < 0) {
+            return;
+        }
+        boolean inOrder = (index == 0 || MOST_RECENT_FIRST.compare(chats.get(index - 1), chat) <= 0)
+                && (index == chats.size() - 1 || MOST_RECENT_FIRST.compare(chat, chats.get(index + 1)) <= 0);
+        // Replacing or moving the selected row drops its selection; put it back
+        boolean selected = selection.getSelectedItem() == chat;
+        if (inOrder) {
+            chats.set(index, chat);
+        } else {
+            chats.remove(index);
+            chats.add(insertionPoint(chat), chat);
+        }
+        if (selected && selection.getSelectedItem() != chat) {
+            selection.select(chat);
+        }
+    }
+
+    private int insertionPoint(Chat chat) {
+        int index = Collections.binarySearch(chats, chat, MOST_RECENT_FIRST);
+        return index >= 0 ? index : -index - 1;
+    }
+}
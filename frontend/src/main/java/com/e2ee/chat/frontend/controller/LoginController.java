@@ -1,6 +1,7 @@
 package com.e2ee.chat.frontend.controller;
 
 import com.e2ee.chat.frontend.E2EEChatFrontendApplication;
+import com.e2ee.chat.frontend.crypto.ClientKeyStore;
 import com.e2ee.chat.frontend.service.AuthService;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -44,6 +45,14 @@ public class LoginController implements Initializable {
 
         // Initialize button state
         checkFields();
+
+        // Key generation / crypto warm-up does not need the password; do it while it is typed
+        prepareKeyStore();
+        usernameField.focusedProperty().addListener((observable, wasFocused, focused) -> {
+            if (!focused) {
+                prepareKeyStore();
+            }
+        });
     }
 
     @FXML
@@ -55,14 +64,21 @@ public class LoginController implements Initializable {
         loginButton.setDisable(true);
         loginButton.setText("Logging in...");
 
-        // Run login in a separate thread to avoid freezing the UI
-        new Thread(() -> {
-            boolean success = authService.login(username, password);
-
+        // Non-blocking login; no thread is parked while the request is in flight
+        authService.loginAsync(username, password).thenAccept(success -> {
             // Update UI on JavaFX thread
             javafx.application.Platform.runLater(() -> {
                 if (success) {
                     E2EEChatFrontendApplication.showMainScreen(username);
+                } else if (authService.getLoginError() != null) {
+                    Alert alert = new Alert(Alert.AlertType.ERROR);
+                    alert.setTitle("Login Failed");
+                    alert.setHeaderText("Local keystore could not be unlocked");
+                    alert.setContentText(authService.getLoginError());
+                    alert.showAndWait();
+
+                    loginButton.setDisable(false);
+                    loginButton.setText("Login");
                 } else {
                     Alert alert = new Alert(Alert.AlertType.ERROR);
                     alert.setTitle("Login Failed");
@@ -75,7 +91,7 @@ public class LoginController implements Initializable {
                     loginButton.setText("Login");
                 }
             });
-        }).start();
+        });
     }
 
     @FXML
@@ -84,6 +100,13 @@ public class LoginController implements Initializable {
         E2EEChatFrontendApplication.showRegistrationScreen();
     }
 
+    private void prepareKeyStore() {
+        String username = usernameField.getText().trim();
+        if (!username.isEmpty()) {
+            E2EEChatFrontendApplication.getStartup().phase("keystore.prepare", () -> ClientKeyStore.prepare(username));
+        }
+    }
+
     private void checkFields() {
         boolean fieldsValid = !usernameField.getText().trim().isEmpty() &&
                 !passwordField.getText().isEmpty();
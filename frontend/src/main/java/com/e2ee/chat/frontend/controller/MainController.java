@@ -5,8 +5,19 @@ import com.e2ee.chat.frontend.model.Chat;
 import com.e2ee.chat.frontend.model.ChatMessage;
 import com.e2ee.chat.frontend.model.UserProfile;
 import com.e2ee.chat.frontend.service.AuthService;
+import com.e2ee.chat.frontend.service.ChatSnapshotStore;
+import com.e2ee.chat.frontend.service.HistoryDecryptor;
+import com.e2ee.chat.frontend.service.PendingGroupMessages;
+import com.e2ee.chat.frontend.service.PlaintextCache;
+import com.e2ee.chat.frontend.service.ProfileCache;
+import com.e2ee.chat.frontend.service.TaskScheduler;
+import com.e2ee.chat.frontend.service.UserSearchEngine;
 import com.e2ee.chat.frontend.service.WebSocketService;
+import com.e2ee.chat.frontend.crypto.ClientKeyStore;
+import com.e2ee.chat.frontend.crypto.CryptoEngine;
 import com.e2ee.chat.frontend.crypto.CryptoUtils;
+import com.e2ee.chat.frontend.crypto.PublicKeyBundle;
+import com.e2ee.chat.frontend.crypto.SenderKeyStore;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -34,6 +45,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import javafx.scene.Scene;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
@@ -84,27 +96,75 @@ public class MainController implements Initializable {
     private WebSocketService webSocketService;
     
     private ObservableList<Chat> chats = FXCollections.observableArrayList();
+    // Sorted, ID-indexed view of 'chats'; all list edits go through it
+    private ChatListModel chatListModel;
     private ObservableList<ChatMessage> messages = FXCollections.observableArrayList();
+    // Only a sliding window of the current chat is in 'messages'
+    private final MessageWindow messageWindow = new MessageWindow(messages);
+    // Batches incoming-frame UI work into one pass per frame
+    private final UiDispatcher uiDispatcher = new UiDispatcher();
     private ObservableList<UserProfile> searchResults = FXCollections.observableArrayList();
     
     private Chat currentChat;
     
-    // Store AES keys for each chat
-    private Map<String, SecretKey> chatKeys = new HashMap<>();
+    // AES keys for each chat, persisted in the local keystore across restarts
+    private ClientKeyStore keyStore;
     
-    // Store user profiles for chat display
-    private Map<String, UserProfile> userProfiles = new HashMap<>();
+    // Sender-key chains for group chats
+    private SenderKeyStore senderKeyStore;
+    
+    // Decrypts history pages off the UI thread and caches plaintext by message ID
+    private static final int HISTORY_PAGE_SIZE = MessageWindow.PAGE_SIZE;
+    // Messages kept in memory per chat while it is not shown; older ones are re-fetched on demand
+    private static final int MAX_RETAINED_MESSAGES = HISTORY_PAGE_SIZE * 4;
+    private PlaintextCache plaintextCache;
+    private HistoryDecryptor historyDecryptor;
+    // Group messages shown with a placeholder until their sender's chain key arrives
+    private final PendingGroupMessages pendingGroupMessages = new PendingGroupMessages();
+    private final Set<String> historyRequested = new HashSet<>();
+    private final Set<String> olderHistoryRequested = new HashSet<>();
+    private final Set<String> historyExhausted = new HashSet<>();
+    // Warm start: chats and newest messages from the last session, caught up from a sync cursor
+    private ChatSnapshotStore snapshotStore;
+    private final Map<String, LocalDateTime> syncCursors = new HashMap<>();
+    private final Set<String> syncRequested = new HashSet<>();
+    
+    // Purpose tags for cancellable background tasks
+    private static final String USER_SEARCH = "userSearch";
+    private static final String STATUS_CLEAR = "statusClear";
+    // Debounced, cached user search shared by the search box and the group dialog
+    private UserSearchEngine userSearch;
+    
+    // The only source of other users' profiles: batched fetches with TTL / ETag revalidation
+    private ProfileCache profileCache;
+    // Presence from the latest online-user snapshot; profiles themselves live in profileCache
+    private final Set<String> onlineUserIds = new HashSet<>();
     
     // Store pending messages by clientTempId for deduplication
     private Map<String, ChatMessage> pendingMessages = new HashMap<>();
+    // Private chats whose key agreement is waiting for the peer's keys (FX thread only)
+    private final Map<String, CompletableFuture<SecretKey>> chatKeyRequests = new HashMap<>();
+    // Tail of the outgoing messages, each sent only after the one before it
+    private CompletableFuture<Void> outgoing = CompletableFuture.completedFuture(null);
     
     @Override
     public void initialize(URL location, ResourceBundle resources) {
+        // A logout stops the dispatcher; this session's handlers need it running
+        uiDispatcher.start();
         authService = E2EEChatFrontendApplication.getAuthService();
         webSocketService = E2EEChatFrontendApplication.getWebSocketService();
+        keyStore = authService.getKeyStore();
+        // Received group chains come back from the keystore, so group history stays readable
+        senderKeyStore = new SenderKeyStore(authService.getUserId(), keyStore.getSenderChains());
+        senderKeyStore.setChangeListener(() -> keyStore.putSenderChains(senderKeyStore.exportChains()));
+        plaintextCache = E2EEChatFrontendApplication.getPlaintextCache();
+        historyDecryptor = new HistoryDecryptor(plaintextCache);
+        userSearch = new UserSearchEngine(authService::searchUsersAsync, TaskScheduler.shared(), USER_SEARCH);
+        profileCache = new ProfileCache(authService);
         
         // Set up chat list
         chatListView.setItems(chats);
+        chatListModel = new ChatListModel(chats, chatListView.getSelectionModel());
         chatListView.setCellFactory(new Callback<ListView<Chat>, ListCell<Chat>>() {
             @Override
             public ListCell<Chat> call(ListView<Chat> param) {
@@ -120,11 +180,13 @@ public class MainController implements Initializable {
                 return new MessageListCell();
             }
         });
+        installHistoryScrollListener();
         
         // Handle chat selection
         chatListView.getSelectionModel().selectedItemProperty().addListener(
             (observable, oldValue, newValue) -> {
-                if (newValue != null) {
+                // Re-selecting the shown chat after a row moved must not reload it
+                if (newValue != null && newValue != currentChat) {
                     selectChat(newValue);
                 }
             }
@@ -134,6 +196,20 @@ public class MainController implements Initializable {
         webSocketService.setMessageHandler(this::handleChatMessage);
         webSocketService.setChatListHandler(this::updateChatList);
         webSocketService.setUserListHandler(this::updateUserList);
+        webSocketService.setHistoryHandler(this::handleChatHistory);
+        webSocketService.setUndeliveredHandler(this::handleUndelivered);
+        webSocketService.setHistoryFailureHandler(chatId -> uiDispatcher.submit(() -> historyRequestFailed(chatId)));
+        webSocketService.setReconnectHandler(() -> uiDispatcher.submit(this::historyAfterReconnect));
+        
+        // Show the last session's chats right away; CHAT_LIST reconciles them when it arrives
+        snapshotStore = new ChatSnapshotStore(authService.getUserId(), keyStore.getLocalDataKey(),
+            HISTORY_PAGE_SIZE, TaskScheduler.shared());
+        E2EEChatFrontendApplication.getStartup().phase("snapshot.load", snapshotStore::load)
+            .thenAccept(snapshot -> uiDispatcher.submit(() -> applySnapshot(snapshot)))
+            .exceptionally(e -> {
+                System.err.println("[SNAPSHOT] Warm start skipped: " + e.getMessage());
+                return null;
+            });
         
         // Enter key in message field should send message
         messageField.addEventHandler(KeyEvent.KEY_PRESSED, event -> {
@@ -166,6 +242,7 @@ public class MainController implements Initializable {
     }
     
     private void selectChat(Chat chat) {
+        Chat previousChat = currentChat != chat ? currentChat : null;
         currentChat = chat;
         
         System.out.println("\n========== SELECTING CHAT ==========");
@@ -174,17 +251,17 @@ public class MainController implements Initializable {
         System.out.println("Group Name: " + chat.getGroupName());
         System.out.println("Target User: " + chat.getTargetUserId());
         
-        messages.clear();
-        if (chat.getMessages() != null) { // Guard against null messages list
-            messages.addAll(chat.getMessages());
-            System.out.println("Loaded " + chat.getMessages().size() + " messages from chat to UI");
-        } else {
+        if (chat.getMessages() == null) { // Guard against null messages list
             System.out.println("Chat has no messages list, initializing empty");
             chat.setMessages(new ArrayList<>());
         }
-        
-        // Force refresh of the message list view
-        messageListView.refresh();
+        // Newest page only; older pages are loaded when scrolling up
+        messageWindow.show(chat.getMessages());
+        System.out.println("Showing " + messages.size() + " of " + chat.getMessages().size() + " retained messages");
+        // Only now is the chat we left off screen, so its retained messages can be trimmed
+        if (previousChat != null) {
+            trimRetainedMessages(previousChat);
+        }
         
         if (!messages.isEmpty()) {
             messageListView.scrollTo(messages.size() - 1);
@@ -211,6 +288,8 @@ public class MainController implements Initializable {
                 headerText = "Group Chat";
             }
             headerText = "👥 " + headerText + " (" + chat.getParticipants().size() + " members)";
+            // Member names and keys for the whole group in one request
+            prefetchProfiles(chat.getParticipants());
         } else {
             // For one-on-one chats, use username
             String displayName = chat.getTargetUsername(); // Primarily rely on this
@@ -218,10 +297,9 @@ public class MainController implements Initializable {
 
             // If chat.getTargetUsername() is still the ID, or null/empty/"null", make one last attempt to resolve.
             if (targetId != null && (displayName == null || displayName.isEmpty() || displayName.equalsIgnoreCase("null") || displayName.equals(targetId))) {
-                System.out.println("[SELECT_CHAT] Name for " + targetId + " is not optimal ('" + displayName + "'). Attempting fetch.");
-                fetchUserProfileIfNeeded(targetId); // This will update chat.setTargetUsername()
-                displayName = chat.getTargetUsername(); // Re-fetch from chat object, which should now be updated.
-                System.out.println("[SELECT_CHAT] After fetch, new displayName for " + targetId + ": '" + displayName + "'");
+                System.out.println("[SELECT_CHAT] Name for " + targetId + " is not optimal ('" + displayName + "'). Fetching in the background.");
+                // Updates chat.setTargetUsername() and the header once the profile is in
+                prefetchProfiles(List.of(targetId));
             }
             
             headerText = displayName;
@@ -242,13 +320,13 @@ public class MainController implements Initializable {
         // Update member status and profile picture
         updateChatHeaderUI(chat);
         
-        // Only attempt key exchange for one-on-one chats
-        if (!isGroupChat && !chatKeys.containsKey(chat.getChatId())) {
-            if (chat.getTargetPublicKey() != null && !chat.getTargetPublicKey().isEmpty()) {
-                sendKeyExchange(chat);
-            }
+        // Only attempt key agreement for one-on-one chats; the peer's keys are fetched in the background
+        if (!isGroupChat) {
+            chatKeyAsync(chat);
         }
         
+        requestLatestHistory(chat);
+        
         System.out.println("Chat selected successfully: " + headerText);
         System.out.println("========== CHAT SELECTION COMPLETE ==========\n");
     }
@@ -284,12 +362,10 @@ public class MainController implements Initializable {
         String query = searchField.getText().trim();
         
         if (!query.isEmpty()) {
-            // Search for users
-            new Thread(() -> {
-                UserProfile[] results = authService.searchUsers(query);
-                
+            // Search for users; a newer search cancels this one
+            userSearch.searchNow(query, results -> {
                 Platform.runLater(() -> {
-                    if (results != null && results.length > 0) {
+                    if (!results.isEmpty()) {
                         searchResults.clear();
                         searchResults.addAll(results);
                         
@@ -302,7 +378,7 @@ public class MainController implements Initializable {
                             .onFinishedProperty().set(e -> statusLabel.setText(""));
                     }
                 });
-            }).start();
+            });
         }
     }
     
@@ -316,6 +392,17 @@ public class MainController implements Initializable {
         // Logout
         authService.logout();
         
+        // Decrypted bodies must not outlive the session
+        System.out.println("[LOGOUT] Wiping " + plaintextCache);
+        plaintextCache.clear();
+        pendingGroupMessages.clear();
+        historyDecryptor.shutdown();
+        uiDispatcher.stop();
+        snapshotStore.flush();
+        TaskScheduler.shared().cancelAll();
+        E2EEChatFrontendApplication.getStartup().reset();
+        userSearch.clearCache();
+        
         // Return to login screen
         E2EEChatFrontendApplication.showLoginScreen();
     }
@@ -369,14 +456,7 @@ public class MainController implements Initializable {
                 statusLabel.setText("Profile updated successfully!");
                 
                 // Clear message after a delay
-                new Thread(() -> {
-                    try {
-                        Thread.sleep(3000);
-                        Platform.runLater(() -> statusLabel.setText(""));
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }).start();
+                TaskScheduler.shared().scheduleLatest(STATUS_CLEAR, () -> Platform.runLater(() -> statusLabel.setText("")), 3000);
             });
             
             // Show the dialog and wait for it to close
@@ -424,6 +504,7 @@ public class MainController implements Initializable {
             if (newVal.trim().length() > 1) {
                 searchUsers(newVal.trim(), userResults);
             } else {
+                userSearch.cancel();
                 userResults.getItems().clear();
             }
         });
@@ -513,6 +594,20 @@ public class MainController implements Initializable {
         });
     }
 
+    /**
+     * The outbox gave up on one of our messages (rejected by the server or never acknowledged)
+     */
+    private void handleUndelivered(String clientTempId) {
+        uiDispatcher.submit(() -> {
+            ChatMessage undelivered = pendingMessages.remove(clientTempId);
+            if (undelivered == null) {
+                return;
+            }
+            statusLabel.setText("A message could not be delivered: \"" + undelivered.getContent() + "\"");
+            TaskScheduler.shared().scheduleLatest(STATUS_CLEAR, () -> Platform.runLater(() -> statusLabel.setText("")), 5000);
+        });
+    }
+
     // Listen for GROUP_CHAT_CREATED events in your WebSocket message handler
     private void handleChatMessage(ChatMessage message) {
         System.out.println("\n========== MAIN CONTROLLER - HANDLING CHAT MESSAGE ==========");
@@ -528,7 +623,13 @@ public class MainController implements Initializable {
         System.out.println("Current thread: " + Thread.currentThread().getName());
         System.out.println("Is JavaFX Application Thread: " + Platform.isFxApplicationThread());
 
-        Platform.runLater(() -> {
+        uiDispatcher.submit(() -> {
+            // Key material is never shown as a chat message
+            if (message.getType() == ChatMessage.MessageType.KEY_EXCHANGE) {
+                processKeyExchange(message);
+                return;
+            }
+            
             // Check if this is our own message being echoed back (only applies to sender)
             String clientTempId = message.getClientTempId();
             boolean isOwnMessage = message.getSenderId().equals(authService.getUserId());
@@ -541,15 +642,15 @@ public class MainController implements Initializable {
                 // Update the server-assigned ID in the existing message
                 ChatMessage existingMessage = pendingMessages.get(clientTempId);
                 existingMessage.setId(message.getId());
+                // The stored timestamp, so the message can serve as a history cursor
+                if (message.getTimestamp() != null) {
+                    existingMessage.setTimestamp(message.getTimestamp());
+                }
+                // We already know the plaintext of our own message; history never has to decrypt it
+                plaintextCache.put(message.getId(), existingMessage.getContent());
                 
                 // Find the corresponding chat and update the message ID there
-                Chat targetChat = null;
-                for (Chat c : chats) {
-                    if (c.getChatId() != null && c.getChatId().equals(message.getChatId())) {
-                        targetChat = c;
-                        break;
-                    }
-                }
+                Chat targetChat = chatListModel.get(message.getChatId());
                 
                 if (targetChat != null) {
                     // Update the message ID in the chat's message list
@@ -568,17 +669,18 @@ public class MainController implements Initializable {
                         for (ChatMessage uiMsg : messages) {
                             if (clientTempId.equals(uiMsg.getClientTempId())) {
                                 uiMsg.setId(message.getId());
+                                // Re-render just this row to show any status updates
+                                messageWindow.updated(uiMsg);
                                 System.out.println("Updated message ID in UI");
                                 break;
                             }
                         }
-                        // Refresh UI to show any status updates
-                        messageListView.refresh();
                     }
                 }
                 
                 // Remove from pending messages as it's been acknowledged
                 pendingMessages.remove(clientTempId);
+                snapshotStore.recordMessages(message.getChatId(), List.of(existingMessage));
                 System.out.println("Removed message from pending messages. Remaining: " + pendingMessages.size());
                 
                 // Skip further processing since this message is already handled
@@ -593,13 +695,7 @@ public class MainController implements Initializable {
             }
 
             // Find the chat this message belongs to
-            Chat targetChat = null;
-            for (Chat c : chats) {
-                if (c.getChatId() != null && c.getChatId().equals(message.getChatId())) {
-                    targetChat = c;
-                    break;
-                }
-            }
+            Chat targetChat = chatListModel.get(message.getChatId());
             
             // If we didn't find the chat, create a new one
             if (targetChat == null) {
@@ -630,7 +726,7 @@ public class MainController implements Initializable {
                 targetChat.setOwnerId(authService.getUserId());
                 
                 // Add to our chats list
-                chats.add(targetChat);
+                chatListModel.add(targetChat);
                 
                 // Refresh the chat list to get complete information
                 scheduleChatRefreshWithDelay(1);
@@ -641,24 +737,29 @@ public class MainController implements Initializable {
                 // Set the chat type for proper handling
                 boolean isGroupChat = targetChat.getChatType() != null && "group".equalsIgnoreCase(targetChat.getChatType());
                 
+                // Group messages are sealed with the sender's chain key
+                if (message.getType() == ChatMessage.MessageType.ENCRYPTED_CHAT && isGroupChat) {
+                    message.setContent(decryptGroupMessage(message));
+                }
+                
                 // If encrypted and not a group chat, try to decrypt
                 if (message.getType() == ChatMessage.MessageType.ENCRYPTED_CHAT && !isGroupChat) {
-                    SecretKey key = chatKeys.get(message.getChatId());
+                    SecretKey key = keyStore.getChatKey(message.getChatId());
+                    String ciphertext = message.getContent();
                     if (key != null) {
-                        try {
-                            String decryptedContent = CryptoUtils.decryptMessage(
-                                message.getContent(),
-                                "",
-                                key
-                            );
-                            message.setContent(decryptedContent);
-                        } catch (Exception e) {
-                            message.setContent("[Encrypted message - cannot decrypt]");
-                            System.out.println("Failed to decrypt message: " + e.getMessage());
-                        }
+                        message.setContent(decryptPrivateMessage(message, ciphertext, key));
                     } else {
+                        // Decrypted once the peer's keys are in; they are fetched off the FX thread
                         message.setContent("[Encrypted message - key exchange required]");
-                        System.out.println("No encryption key available for chat: " + message.getChatId());
+                        Chat chat = targetChat;
+                        chatKeyAsync(chat).thenAccept(agreed -> {
+                            if (agreed != null) {
+                                message.setContent(decryptPrivateMessage(message, ciphertext, agreed));
+                                messageDecrypted(chat, message);
+                            } else {
+                                System.out.println("No encryption key available for chat: " + message.getChatId());
+                            }
+                        });
                     }
                 }
                 
@@ -725,6 +826,7 @@ public class MainController implements Initializable {
                     messageToUpdate.setTimestamp(message.getTimestamp());
                     // Don't update content in case it was encrypted/decrypted differently
                     System.out.println("Message updated in chat " + targetChat.getChatId());
+                    snapshotStore.recordMessages(targetChat.getChatId(), List.of(messageToUpdate));
                     
                     // If this is the current chat, also update the UI
                     if (currentChat != null && currentChat.getChatId().equals(targetChat.getChatId())) {
@@ -732,11 +834,11 @@ public class MainController implements Initializable {
                             if (message.getClientTempId().equals(uiMsg.getClientTempId())) {
                                 uiMsg.setId(message.getId());
                                 uiMsg.setTimestamp(message.getTimestamp());
+                                messageWindow.updated(uiMsg);
                                 System.out.println("Message updated in UI");
                                 break;
                             }
                         }
-                        messageListView.refresh();
                     }
                 } else if (isDuplicate) {
                     // Skip duplicate messages
@@ -747,6 +849,9 @@ public class MainController implements Initializable {
                     System.out.println("Message from: " + message.getSenderId() + " (is own message: " + isOwnMessage + ")");
                     System.out.println("Chat messages before add: " + targetChat.getMessages().size());
                     targetChat.addMessage(message);
+                    // Only this chat's row moves to the top
+                    chatListModel.touched(targetChat);
+                    snapshotStore.recordMessages(targetChat.getChatId(), List.of(message));
                     System.out.println("Chat messages after add: " + targetChat.getMessages().size());
                     
                     // Update display if this is the current chat
@@ -764,10 +869,9 @@ public class MainController implements Initializable {
                             }
                         }
                         
-                        if (!alreadyInUI) {
-                            messages.add(message);
-                            messageListView.scrollTo(messages.size() - 1);
-                            messageListView.refresh();
+                        if (!alreadyInUI && messageWindow.appended(message)) {
+                            // One scroll per frame, however many messages arrived in it
+                            uiDispatcher.coalesce("scrollToNewest", () -> messageListView.scrollTo(messages.size() - 1));
                             System.out.println("Added message to UI. New UI messages count: " + messages.size());
                         } else {
                             System.out.println("Message already exists in UI, skipping add");
@@ -775,6 +879,7 @@ public class MainController implements Initializable {
                     } else {
                         // This message is for a different chat than the one currently displayed
                         System.out.println("Message received for a non-current chat: " + targetChat.getChatId());
+                        trimRetainedMessages(targetChat);
                         if (currentChat != null) {
                             System.out.println("Current chat ID: " + currentChat.getChatId());
                         } else {
@@ -790,10 +895,7 @@ public class MainController implements Initializable {
             }
             
             // Handle special message types
-            if (message.getType() == ChatMessage.MessageType.KEY_EXCHANGE) {
-                // Handle key exchange message
-                processKeyExchange(message);
-            } else if (message.getType() != null && "CHAT_CREATED".equals(message.getType().toString())) {
+            if (message.getType() != null && "CHAT_CREATED".equals(message.getType().toString())) {
                 // Unified handling for both private and group chat creation events
                 System.out.println("Received CHAT_CREATED event, refreshing chat list");
                 refreshChatList();
@@ -804,7 +906,9 @@ public class MainController implements Initializable {
     }
     
     public void updateChatList(List<Chat> updatedChats) {
-        Platform.runLater(() -> {
+        // Each update is a full snapshot, so only the latest one per frame is applied
+        uiDispatcher.coalesce("chatList", () -> {
+            E2EEChatFrontendApplication.getStartup().milestone("first chat list shown");
             // Only keep chats with a valid chatId (fetched from backend)
             List<Chat> validChats = updatedChats.stream()
                 .filter(chat -> chat.getChatId() != null && !chat.getChatId().isEmpty())
@@ -812,18 +916,6 @@ public class MainController implements Initializable {
 
             System.out.println("Updating chat list with " + validChats.size() + " chats");
             
-            // Store current messages for all chats before updating
-            Map<String, List<ChatMessage>> existingMessages = new HashMap<>();
-            for (Chat chat : chats) {
-                if (chat.getChatId() != null && chat.getMessages() != null && !chat.getMessages().isEmpty()) {
-                    existingMessages.put(chat.getChatId(), new ArrayList<>(chat.getMessages()));
-                    System.out.println("Saved " + chat.getMessages().size() + " messages for chat " + chat.getChatId());
-                }
-            }
-            
-            // Save current chat ID if we have one selected
-            String currentChatId = currentChat != null ? currentChat.getChatId() : null;
-            
             // Additional logging to debug chat types and group names
             for (Chat chat : validChats) {
                 System.out.println("Chat ID: " + chat.getChatId() 
@@ -832,109 +924,50 @@ public class MainController implements Initializable {
                     + ", TargetUsername: " + chat.getTargetUsername());
             }
 
-            chats.clear();
-            chats.addAll(validChats);
+            // Known chats keep their instance (and retained messages); only server messages we lack are merged in
+            for (Chat incoming : validChats) {
+                Chat existing = chatListModel.get(incoming.getChatId());
+                if (existing != null && mergeServerMessages(existing, incoming.getMessages())
+                        && existing == currentChat) {
+                    messageWindow.merged(false);
+                }
+            }
+            List<Chat> added = chatListModel.apply(validChats);
+            System.out.println("Chat list diff: " + added.size() + " new, " + chats.size() + " total");
+            snapshotStore.recordChats(chats);
+            // A snapshot chat selected before the connection was up still needs its catch-up
+            if (currentChat != null) {
+                requestLatestHistory(currentChat);
+            }
 
-            // Restore messages that might have been lost in the update
             for (Chat chat : chats) {
-                if (existingMessages.containsKey(chat.getChatId())) {
-                    // Preserve messages from before the refresh
-                    List<ChatMessage> savedMessages = existingMessages.get(chat.getChatId());
-                    if (chat.getMessages() == null) {
-                        chat.setMessages(new ArrayList<>());
-                    }
-                    
-                    // If we have saved messages, ensure they're properly merged
-                    if (!savedMessages.isEmpty()) {
-                        System.out.println("Found " + savedMessages.size() + " saved messages for chat " + chat.getChatId());
-                        
-                        // If the chat has no messages from server, use our saved ones
-                        if (chat.getMessages().isEmpty()) {
-                            chat.setMessages(new ArrayList<>(savedMessages));
-                            System.out.println("Restored " + savedMessages.size() + " messages for chat " + chat.getChatId());
-                        } else {
-                            // Merge messages, avoiding duplicates
-                            System.out.println("Merging " + savedMessages.size() + " saved messages with " + 
-                                            chat.getMessages().size() + " existing messages for chat " + chat.getChatId());
-                            
-                            for (ChatMessage msg : savedMessages) {
-                                boolean exists = false;
-                                
-                                // First check for exact matches
-                                for (ChatMessage existingMsg : chat.getMessages()) {
-                                    if ((msg.getId() != null && msg.getId().equals(existingMsg.getId())) ||
-                                        (msg.getClientTempId() != null && msg.getClientTempId().equals(existingMsg.getClientTempId()))) {
-                                        exists = true;
-                                        break;
-                                    }
-                                }
-                                
-                                // Also check for content + timestamp matches (as a fallback)
-                                if (!exists && msg.getContent() != null && msg.getTimestamp() != null) {
-                                    for (ChatMessage existingMsg : chat.getMessages()) {
-                                        if (msg.getContent().equals(existingMsg.getContent()) && 
-                                            msg.getTimestamp().equals(existingMsg.getTimestamp()) &&
-                                            msg.getSenderId().equals(existingMsg.getSenderId())) {
-                                            exists = true;
-                                            break;
-                                        }
-                                    }
-                                }
-                                
-                                if (!exists) {
-                                    chat.getMessages().add(msg);
-                                    System.out.println("Added message to chat " + chat.getChatId() + ": " + msg.getContent());
-                                }
-                            }
-                            
-                            // Sort messages by timestamp
-                            chat.getMessages().sort(Comparator.comparing(ChatMessage::getTimestamp));
-                        }
-                    }
-                    
-                    // Update last message preview
-                    if (chat.getLastMessagePreview() == null || chat.getLastMessagePreview().isEmpty()) {
-                        List<ChatMessage> chatMessages = chat.getMessages();
-                        if (chatMessages != null && !chatMessages.isEmpty()) {
-                            ChatMessage lastMessage = chatMessages.get(chatMessages.size() - 1);
-                            chat.setLastMessagePreview(lastMessage.getContent());
-                        }
+                if (chat.getLastMessagePreview() == null || chat.getLastMessagePreview().isEmpty()) {
+                    List<ChatMessage> chatMessages = chat.getMessages();
+                    if (chatMessages != null && !chatMessages.isEmpty()) {
+                        chat.setLastMessagePreview(chatMessages.get(chatMessages.size() - 1).getContent());
                     }
                 }
             }
 
             // For each chat, ensure its targetUsername is properly set by fetching profile if needed
+            Set<String> unresolved = new HashSet<>();
             for (Chat chat : chats) { // Iterate over the 'chats' collection that was just updated
                 // Check if targetUsername is null, empty, or still the placeholder (targetUserId)
                 if (chat.getTargetUserId() != null && 
                     (chat.getTargetUsername() == null || 
                      chat.getTargetUsername().isEmpty() || 
                      chat.getTargetUsername().equals(chat.getTargetUserId()))) {
-                    fetchUserProfileIfNeeded(chat.getTargetUserId());
+                    unresolved.add(chat.getTargetUserId());
                 }
             }
+            // One batch request for all of them, off the UI thread
+            prefetchProfiles(unresolved);
             
-            // If we had a selected chat before, try to restore the selection
-            if (currentChatId != null) {
-                for (Chat chat : chats) {
-                    if (chat.getChatId().equals(currentChatId)) {
-                        chatListView.getSelectionModel().select(chat);
-                        currentChat = chat;
-                        
-                        // Update message display
-                        messages.clear();
-                        if (chat.getMessages() != null) {
-                            messages.addAll(chat.getMessages());
-                            if (!messages.isEmpty()) {
-                                messageListView.scrollTo(messages.size() - 1);
-                            }
-                        }
-                        break;
-                    }
-                }
+            // The selected chat was updated in place; it only needs re-selecting if it was dropped
+            if (currentChat != null && chatListModel.get(currentChat.getChatId()) == currentChat
+                    && chatListView.getSelectionModel().getSelectedItem() != currentChat) {
+                chatListView.getSelectionModel().select(currentChat);
             }
-            
-            chatListView.refresh();
 
             // If we have chats but none is selected, select the first one
             if (!chats.isEmpty() && chatListView.getSelectionModel().getSelectedItem() == null) {
@@ -948,14 +981,55 @@ public class MainController implements Initializable {
         });
     }
     
+    /**
+     * Merge messages from a chat list snapshot into a chat we already hold
+     *
+     * @return true if any message was added
+     */
+    private boolean mergeServerMessages(Chat chat, List<ChatMessage> serverMessages) {
+        if (serverMessages == null || serverMessages.isEmpty()) {
+            return false;
+        }
+        if (chat.getMessages() == null) {
+            chat.setMessages(new ArrayList<>());
+        }
+        Set<String> known = new HashSet<>();
+        for (ChatMessage existing : chat.getMessages()) {
+            if (existing.getId() != null) {
+                known.add("id:" + existing.getId());
+            }
+            if (existing.getClientTempId() != null) {
+                known.add("tmp:" + existing.getClientTempId());
+            }
+        }
+        boolean added = false;
+        for (ChatMessage message : serverMessages) {
+            boolean exists = (message.getId() != null && known.contains("id:" + message.getId()))
+                || (message.getClientTempId() != null && known.contains("tmp:" + message.getClientTempId()));
+            if (!exists) {
+                chat.getMessages().add(message);
+                added = true;
+            }
+        }
+        if (added) {
+            chat.getMessages().sort(Comparator.comparing(ChatMessage::getTimestamp,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        }
+        return added;
+    }
+    
     private void updateUserList(List<UserProfile> onlineUsers) {
-        // Update online status in our chat list
-        Platform.runLater(() -> {
-            // Store all received profiles in our userProfiles map for future reference
+        // Update online status in our chat list; like the chat list, only the latest snapshot matters
+        uiDispatcher.coalesce("userList", () -> {
+            onlineUserIds.clear();
             for (UserProfile profile : onlineUsers) {
                 // Only store if we have a valid profileId
                 if (profile.getProfileId() != null && !profile.getProfileId().isEmpty()) {
-                    userProfiles.put(profile.getProfileId(), profile);
+                    onlineUserIds.add(profile.getProfileId());
+                    // Seeds unknown users only; cached entries keep their ETag and revalidate normally
+                    if (profileCache.getCached(profile.getProfileId()) == null) {
+                        profileCache.put(profile);
+                    }
                 }
             }
             
@@ -989,41 +1063,68 @@ public class MainController implements Initializable {
         }
 
         System.out.println("[FETCH_PROFILE] Attempting to fetch user profile for ID: " + profileId);
-        UserProfile profile = authService.getUserProfileById(profileId); // Network call
+        UserProfile profile = profileCache.get(profileId); // Network call unless cached and fresh
 
         if (profile != null) {
-            System.out.println("[FETCH_PROFILE] Fetched profile for " + profileId + ": Username='" + profile.getUsername() + "', DisplayName='" + profile.getDisplayName() + "'");
-            userProfiles.put(profileId, profile); // Cache the fetched profile
+            applyFetchedProfile(profileId, profile);
+            // The list view will be refreshed by the caller (e.g., updateChatList or selectChat)
+            return true;
+        }
+        System.out.println("[FETCH_PROFILE] Failed to fetch profile for ID: " + profileId + ". UserProfile is null from authService.");
+        return false;
+    }
+    
+    /**
+     * Fetch the profiles that are unknown or past their TTL in one batch request, in the
+     * background; stale ones are revalidated by ETag, so changed names and keys are picked up
+     */
+    private void prefetchProfiles(Collection<String> profileIds) {
+        List<String> due = profileIds.stream()
+            .filter(id -> id != null && !id.isEmpty() && !profileCache.isFresh(id))
+            .distinct()
+            .toList();
+        if (due.isEmpty()) {
+            return;
+        }
+        TaskScheduler.shared().submit(() -> {
+            Map<String, UserProfile> fetched = profileCache.getAll(due);
+            uiDispatcher.submit(() -> fetched.forEach(this::applyFetchedProfile));
+        });
+    }
+    
+    /**
+     * Show a fetched profile's name on the chats that still display an ID
+     */
+    private void applyFetchedProfile(String profileId, UserProfile profile) {
+        System.out.println("[FETCH_PROFILE] Fetched profile for " + profileId + ": Username='" + profile.getUsername() + "', DisplayName='" + profile.getDisplayName() + "'");
 
-            String bestName = profile.getDisplayName();
-            if (bestName == null || bestName.isEmpty() || bestName.equalsIgnoreCase("null")) {
-                bestName = profile.getUsername();
-            }
-            // If still no good name, use profileId as the ultimate fallback.
-            if (bestName == null || bestName.isEmpty() || bestName.equalsIgnoreCase("null")) {
-                bestName = profileId;
-            }
-            System.out.println("[FETCH_PROFILE] Determined bestName for " + profileId + ": '" + bestName + "'");
+        String bestName = profile.getDisplayName();
+        if (bestName == null || bestName.isEmpty() || bestName.equalsIgnoreCase("null")) {
+            bestName = profile.getUsername();
+        }
+        // If still no good name, use profileId as the ultimate fallback.
+        if (bestName == null || bestName.isEmpty() || bestName.equalsIgnoreCase("null")) {
+            bestName = profileId;
+        }
+        System.out.println("[FETCH_PROFILE] Determined bestName for " + profileId + ": '" + bestName + "'");
 
-            boolean changed = false;
-            for (Chat chat : chats) {
-                if (chat.getTargetUserId() != null && chat.getTargetUserId().equals(profileId)) {
-                    if (!bestName.equals(chat.getTargetUsername())) {
-                        System.out.println("[FETCH_PROFILE] Updating chat ("+chat.getChatId()+") targetUsername for " + profileId + " from '" + chat.getTargetUsername() + "' to: '" + bestName + "'");
-                        chat.setTargetUsername(bestName);
-                        changed = true;
+        boolean changed = false;
+        for (Chat chat : chats) {
+            if (chat.getTargetUserId() != null && chat.getTargetUserId().equals(profileId)) {
+                if (!bestName.equals(chat.getTargetUsername())) {
+                    System.out.println("[FETCH_PROFILE] Updating chat ("+chat.getChatId()+") targetUsername for " + profileId + " from '" + chat.getTargetUsername() + "' to: '" + bestName + "'");
+                    chat.setTargetUsername(bestName);
+                    changed = true;
+                    if (chat == currentChat) {
+                        currentChatLabel.setText(bestName);
                     }
                 }
             }
-            // If changes were made, refresh the chat list view
-            if (changed) {
-                Platform.runLater(() -> chatListView.refresh());
-            }
-            // The list view will be refreshed by the caller (e.g., updateChatList or selectChat)
-            return true;
         }
-        System.out.println("[FETCH_PROFILE] Failed to fetch profile for ID: " + profileId + ". UserProfile is null from authService.");
-        return false;
+        // If changes were made, refresh the chat list view
+        if (changed) {
+            uiDispatcher.coalesce("chatListRefresh", () -> chatListView.refresh());
+        }
     }
     
     private void sendMessage(String message) {
@@ -1056,27 +1157,43 @@ public class MainController implements Initializable {
         boolean isGroupChat = currentChat.getChatType() != null && "group".equalsIgnoreCase(currentChat.getChatType());
         String clientTempId;
         
-        // Only encrypt for private chats with a shared key
-        if (!isGroupChat && chatKeys.containsKey(currentChat.getChatId())) {
-            SecretKey key = chatKeys.get(currentChat.getChatId());
-            // Encrypt the message for private chats with established keys
-            CryptoUtils.EncryptionResult encResult = CryptoUtils.encryptMessage(message, key);
-            
-            // Send encrypted message
-            clientTempId = webSocketService.sendEncryptedMessage(
-                currentChat.getChatId(),  // Always use chatId directly
-                encResult.getEncryptedData(),
-                "",  // No need to send encrypted key for each message
-                encResult.getIv()
-            );
+        if (isGroupChat) {
+            // Group chats: make sure every member holds our chain key, then one AES-GCM encryption.
+            // The distribution captures the chain before encrypt advances it, so it covers this message.
+            String groupId = currentChat.getChatId();
+            CompletableFuture<Void> distributed = distributeSenderKey(currentChat);
+            String envelope = senderKeyStore.encrypt(groupId, message);
+            String tempId = java.util.UUID.randomUUID().toString();
+            // Sent after any distribution it depends on, so members never see it before the key
+            sendInOrder(distributed, () -> webSocketService.sendEncryptedMessage(
+                groupId,
+                envelope,
+                "",  // Chain key is distributed separately, once per member
+                "",  // IV travels inside the sender-key envelope
+                tempId
+            ));
+            clientTempId = tempId;
         } else {
-            // For group chats or private chats without keys, send plain message
-            clientTempId = webSocketService.sendMessage(currentChat.getChatId(), message);
-            
-            // Only try to initiate key exchange for private chats
-            if (!isGroupChat && currentChat.getTargetPublicKey() != null && !currentChat.getTargetPublicKey().isEmpty()) {
-                sendKeyExchange(currentChat);
-            }
+            // Private chats: the shared key, agreed in the background if this is the first message
+            String chatId = currentChat.getChatId();
+            String tempId = java.util.UUID.randomUUID().toString();
+            CompletableFuture<SecretKey> chatKey = chatKeyAsync(currentChat);
+            sendInOrder(chatKey, () -> {
+                SecretKey key = chatKey.getNow(null);
+                if (key != null) {
+                    webSocketService.sendEncryptedMessage(
+                        chatId,
+                        CryptoEngine.encryptText(message, key),
+                        "",  // No need to send encrypted key for each message
+                        "",  // Nonce is part of the sealed content
+                        tempId
+                    );
+                } else {
+                    // Peer has not published any key yet, send plain message
+                    webSocketService.sendMessage(chatId, message, tempId);
+                }
+            });
+            clientTempId = tempId;
         }
         
         // If clientTempId is null, generate a new one (should not happen if WebSocket is connected)
@@ -1086,8 +1203,16 @@ public class MainController implements Initializable {
         
         // Add to local display (showing unencrypted version)
         ChatMessage localMessage = new ChatMessage();
-        SecretKey key = chatKeys.get(currentChat.getChatId()); // Retrieve the key for the current chat
-        localMessage.setType(key != null ? ChatMessage.MessageType.ENCRYPTED_CHAT : ChatMessage.MessageType.MESSAGE);
+        SecretKey key = keyStore.getChatKey(currentChat.getChatId()); // Retrieve the key for the current chat
+        localMessage.setType(key != null || isGroupChat ? ChatMessage.MessageType.ENCRYPTED_CHAT : ChatMessage.MessageType.MESSAGE);
+        if (key == null && !isGroupChat) {
+            // Encrypted after all if the key agreement still pending above succeeds
+            chatKeyAsync(currentChat).thenAccept(agreed -> {
+                if (agreed != null) {
+                    localMessage.setType(ChatMessage.MessageType.ENCRYPTED_CHAT);
+                }
+            });
+        }
         localMessage.setSenderId(authService.getUserId());
         localMessage.setContent(message);  // Show the unencrypted version locally
         localMessage.setTimestamp(LocalDateTime.now());
@@ -1112,12 +1237,14 @@ public class MainController implements Initializable {
         
         // Update the last message preview
         currentChat.setLastMessagePreview(message);
+        chatListModel.touched(currentChat);
                 
-        // Add to the UI messages list
-        messages.add(localMessage);
+        // Add to the UI messages list, jumping back to the newest page if scrolled up
+        if (!messageWindow.appended(localMessage)) {
+            messageWindow.show(currentChat.getMessages());
+        }
         System.out.println("Added message to UI messages list. Total UI messages: " + messages.size());
         messageListView.scrollTo(messages.size() - 1);
-        messageListView.refresh(); // Ensure the ListView updates
         System.out.println("Scrolled message list to position: " + (messages.size() - 1));
 
         // For group chats, we need to refresh the chat list after sending a message
@@ -1132,16 +1259,129 @@ public class MainController implements Initializable {
         System.out.println("========== SEND MESSAGE COMPLETE ==========\n");
     }
     
-    private void sendKeyExchange(Chat chat) {
+    /**
+     * The AES key of a private chat. With X25519 on both sides the key is derived locally
+     * (ECDH + HKDF over the chat ID) and no key-exchange message is needed; legacy peers that
+     * only publish RSA get a wrapped random key instead. If the key is not known yet, the
+     * peer's keys are fetched on the worker pool and the agreement finishes on the FX thread.
+     * Called on the FX thread only.
+     *
+     * @return Completes (on the FX thread) with the key, or null if the peer has no usable key
+     */
+    private CompletableFuture<SecretKey> chatKeyAsync(Chat chat) {
+        if (chat == null || chat.getChatId() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String chatId = chat.getChatId();
+        SecretKey known = keyStore.getChatKey(chatId);
+        if (known != null) {
+            return CompletableFuture.completedFuture(known);
+        }
+        CompletableFuture<SecretKey> inFlight = chatKeyRequests.get(chatId);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        CompletableFuture<SecretKey> agreed = new CompletableFuture<>();
+        chatKeyRequests.put(chatId, agreed);
+        String peerId = peerIdOf(chat);
+        TaskScheduler.shared().supply(() -> peerKeys(peerId))
+            .whenComplete((peerKeys, error) -> uiDispatcher.submit(() -> {
+                chatKeyRequests.remove(chatId, agreed);
+                agreed.complete(error == null ? agreeChatKey(chat, peerKeys) : null);
+            }));
+        return agreed;
+    }
+    
+    private SecretKey agreeChatKey(Chat chat, PublicKeyBundle peerKeys) {
+        if (keyStore.hasChatKey(chat.getChatId()) || peerKeys == null) {
+            return keyStore.getChatKey(chat.getChatId());
+        }
+        try {
+            SecretKey derived = authService.getIdentityKeys().deriveChatKey(peerKeys, chat.getChatId());
+            if (derived != null) {
+                keyStore.putChatKey(chat.getChatId(), derived);
+                return derived;
+            }
+        } catch (Exception e) {
+            System.err.println("[KEY_AGREEMENT] X25519 derivation failed for chat " + chat.getChatId() + ": " + e.getMessage());
+        }
+        if (peerKeys.getRsa() != null) {
+            sendKeyExchange(chat, peerKeys.getRsa());
+        }
+        return keyStore.getChatKey(chat.getChatId());
+    }
+    
+    /**
+     * A message shown with a placeholder was decrypted later: refresh its row, the chat
+     * preview if it is the newest message, and the snapshot
+     */
+    private void messageDecrypted(Chat chat, ChatMessage message) {
+        messageWindow.updated(message);
+        List<ChatMessage> retained = chat.getMessages();
+        if (retained != null && !retained.isEmpty() && retained.get(retained.size() - 1) == message) {
+            chat.setLastMessagePreview(message.getContent());
+            chatListModel.touched(chat);
+        }
+        snapshotStore.recordMessages(chat.getChatId(), List.of(message));
+    }
+    
+    private String decryptPrivateMessage(ChatMessage message, String ciphertext, SecretKey key) {
+        try {
+            // Nonce travels in front of the ciphertext
+            String decryptedContent = CryptoEngine.decryptText(ciphertext, key);
+            plaintextCache.put(message.getId(), decryptedContent);
+            return decryptedContent;
+        } catch (Exception e) {
+            System.out.println("Failed to decrypt message: " + e.getMessage());
+            return "[Encrypted message - cannot decrypt]";
+        }
+    }
+    
+    private String peerIdOf(Chat chat) {
+        if (chat.getTargetUserId() != null && !chat.getTargetUserId().isEmpty()) {
+            return chat.getTargetUserId();
+        }
+        if (chat.getParticipants() != null) {
+            for (String participant : chat.getParticipants()) {
+                if (participant != null && !participant.equals(authService.getUserId())) {
+                    return participant;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Published keys of a user; the profile is fetched if unknown and revalidated once past
+     * its TTL, so a rotated key is used from then on. Blocks in those two cases, so it is
+     * only called on worker threads.
+     */
+    private PublicKeyBundle peerKeys(String profileId) {
+        if (profileId == null) {
+            return null;
+        }
+        return keysOf(profileId, profileCache.get(profileId));
+    }
+    
+    private static PublicKeyBundle keysOf(String profileId, UserProfile profile) {
+        if (profile == null || profile.getPublicKey() == null || profile.getPublicKey().isEmpty()) {
+            return null;
+        }
+        try {
+            return PublicKeyBundle.parse(profile.getPublicKey());
+        } catch (Exception e) {
+            System.err.println("[KEY_AGREEMENT] Invalid public key for " + profileId + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private void sendKeyExchange(Chat chat, PublicKey targetPublicKey) {
         try {
             // Generate a new AES key for this chat
             SecretKey aesKey = CryptoUtils.generateAESKey();
             
             // Store the key
-            chatKeys.put(chat.getChatId(), aesKey);
-            
-            // Get target user's public key
-            PublicKey targetPublicKey = CryptoUtils.decodePublicKey(chat.getTargetPublicKey());
+            keyStore.putChatKey(chat.getChatId(), aesKey);
             
             // Encrypt the AES key with target's public key
             String encryptedKey = CryptoUtils.encryptAESKey(aesKey, targetPublicKey);
@@ -1159,19 +1399,447 @@ public class MainController implements Initializable {
         }
     }
     
+    /**
+     * Send our group chain key to every member that does not hold it yet.
+     * Runs once per member (and again after a member leaves and the chain rotates).
+     * The chain state is captured right away, at the iteration the caller's next
+     * {@link SenderKeyStore#encrypt} will use; the members' keys are fetched and the
+     * distributions wrapped and sent in the background.
+     *
+     * @return Completes once the distributions are sent; already complete if nobody needed one
+     */
+    private CompletableFuture<Void> distributeSenderKey(Chat group) {
+        List<String> participants = group.getParticipants();
+        if (participants == null || participants.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String groupId = group.getChatId();
+        SenderKeyStore.PendingDistribution pending = senderKeyStore.prepareDistribution(groupId, participants);
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return TaskScheduler.shared().supply(() -> {
+            // All members' keys in one round-trip instead of one request each
+            Map<String, UserProfile> profiles = profileCache.getAll(pending.getMembers());
+            for (String memberId : pending.getMembers()) {
+                PublicKeyBundle memberKeys = keysOf(memberId, profiles.get(memberId));
+                if (memberKeys == null) {
+                    System.err.println("[SENDER_KEY] No public key for member " + memberId + ", will retry on next send");
+                    senderKeyStore.resetDistribution(groupId, memberId);
+                    continue;
+                }
+                try {
+                    webSocketService.sendSenderKey(groupId, memberId,
+                        pending.wrapFor(memberId, authService.getIdentityKeys(), memberKeys));
+                } catch (Exception e) {
+                    System.err.println("[SENDER_KEY] Failed to distribute key to " + memberId + ": " + e.getMessage());
+                    senderKeyStore.resetDistribution(groupId, memberId);
+                }
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Send in the order the user typed: after every earlier message and after whatever this
+     * one depends on (its key distribution). Called on the FX thread only.
+     */
+    private void sendInOrder(CompletableFuture<?> ready, Runnable send) {
+        outgoing = CompletableFuture.allOf(outgoing, ready)
+            .handle((ignored, error) -> null)
+            .thenRun(send);
+    }
+    
+    private String decryptGroupMessage(ChatMessage message) {
+        if (!SenderKeyStore.isGroupMessage(message.getContent())) {
+            return message.getContent();
+        }
+        try {
+            String plaintext = senderKeyStore.decrypt(message.getChatId(), message.getSenderId(), message.getContent());
+            plaintextCache.put(message.getId(), plaintext);
+            return plaintext;
+        } catch (SenderKeyStore.MissingSenderKeyException e) {
+            awaitSenderKey(e, message, message.getContent());
+            return "[Encrypted message - waiting for group key]";
+        } catch (Exception e) {
+            System.out.println("Failed to decrypt group message: " + e.getMessage());
+            return "[Encrypted message - cannot decrypt]";
+        }
+    }
+    
+    /**
+     * Keep the ciphertext of a message whose chain is missing, so it is decrypted once the
+     * chain arrives, and ask the sender for it. Also called on history worker threads.
+     */
+    private void awaitSenderKey(SenderKeyStore.MissingSenderKeyException missing, ChatMessage message, String ciphertext) {
+        pendingGroupMessages.add(missing.getGroupId(), missing.getSenderId(), missing.getKeyId(), message, ciphertext);
+        requestSenderKey(missing);
+    }
+    
+    /**
+     * Ask the sender to (re)send their chain key, e.g. we were offline when it was distributed.
+     * Sent once per chain, however many of its messages fail.
+     */
+    private void requestSenderKey(SenderKeyStore.MissingSenderKeyException missing) {
+        if (senderKeyStore.markRequested(missing)) {
+            webSocketService.sendSenderKey(missing.getGroupId(), missing.getSenderId(),
+                SenderKeyStore.keyRequest(missing.getGroupId()));
+        }
+    }
+    
+    /**
+     * A chain has been installed: decrypt the messages that were waiting for it (on the
+     * calling worker) and refresh their rows on the FX thread
+     */
+    private void decryptPendingGroupMessages(String groupId, String senderId, String keyId) {
+        List<PendingGroupMessages.Pending> waiting = pendingGroupMessages.take(groupId, senderId, keyId);
+        if (waiting.isEmpty()) {
+            return;
+        }
+        Map<ChatMessage, String> decrypted = new LinkedHashMap<>();
+        for (PendingGroupMessages.Pending pending : waiting) {
+            ChatMessage message = pending.getMessage();
+            try {
+                String plaintext = senderKeyStore.decrypt(groupId, senderId, pending.getCiphertext());
+                plaintextCache.put(message.getId(), plaintext);
+                decrypted.put(message, plaintext);
+            } catch (Exception e) {
+                System.out.println("[SENDER_KEY] Failed to decrypt waiting message " + message.getId() + ": " + e.getMessage());
+                decrypted.put(message, HistoryDecryptor.UNREADABLE_PLACEHOLDER);
+            }
+        }
+        System.out.println("[SENDER_KEY] Decrypted " + decrypted.size() + " messages waiting for " + senderId + "'s key in group " + groupId);
+        uiDispatcher.submit(() -> {
+            Chat chat = chatListModel.get(groupId);
+            decrypted.forEach((message, content) -> {
+                message.setContent(content);
+                if (chat != null) {
+                    messageDecrypted(chat, message);
+                }
+            });
+        });
+    }
+    
+    /**
+     * Called on the WebSocket thread with one history page. The page is decrypted on the
+     * worker pool and then merged into the chat with a single UI update.
+     */
+    private void handleChatHistory(String chatId, List<ChatMessage> page) {
+        historyDecryptor.decryptPage(page, this::decryptHistoryMessage)
+            .thenAccept(decrypted -> uiDispatcher.submit(() -> mergeHistory(chatId, decrypted)))
+            .exceptionally(e -> {
+                System.err.println("[HISTORY] Failed to decrypt history for chat " + chatId + ": " + e.getMessage());
+                return null;
+            });
+    }
+    
+    /**
+     * Runs on a worker thread, so it only touches thread-safe key stores
+     */
+    private String decryptHistoryMessage(ChatMessage message) {
+        String content = message.getContent();
+        if (SenderKeyStore.isGroupMessage(content)) {
+            try {
+                return senderKeyStore.decrypt(message.getChatId(), message.getSenderId(), content);
+            } catch (SenderKeyStore.MissingSenderKeyException e) {
+                awaitSenderKey(e, message, content);
+                throw e;
+            }
+        }
+        SecretKey key = keyStore.getChatKey(message.getChatId());
+        if (key == null) {
+            throw new IllegalStateException("No key for chat " + message.getChatId());
+        }
+        return CryptoEngine.decryptText(content, key);
+    }
+    
+    private void mergeHistory(String chatId, List<ChatMessage> page) {
+        boolean loadingOlder = olderHistoryRequested.remove(chatId);
+        boolean catchingUp = syncRequested.remove(chatId);
+        if (catchingUp) {
+            syncCursors.remove(chatId);
+        }
+        // A short catch-up page only means little was missed, not that the history ended
+        if (page.size() < HISTORY_PAGE_SIZE && !catchingUp) {
+            historyExhausted.add(chatId);
+        }
+        Chat chat = chatListModel.get(chatId);
+        if (chat == null) {
+            return;
+        }
+        if (chat.getMessages() == null) {
+            chat.setMessages(new ArrayList<>());
+        }
+        
+        Set<String> knownIds = new HashSet<>();
+        for (ChatMessage existing : chat.getMessages()) {
+            if (existing.getId() != null) {
+                knownIds.add(existing.getId());
+            }
+        }
+        List<ChatMessage> added = new ArrayList<>();
+        for (ChatMessage message : page) {
+            if (message.getId() == null || knownIds.add(message.getId())) {
+                added.add(message);
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        // More was missed than one page holds: the snapshot messages are no longer contiguous
+        // with the catch-up page, and paging back from the oldest retained message would skip the hole
+        boolean gap = catchingUp && page.size() >= HISTORY_PAGE_SIZE;
+        if (gap) {
+            LocalDateTime oldestFetched = page.stream().map(ChatMessage::getTimestamp)
+                .filter(Objects::nonNull).min(Comparator.naturalOrder()).orElse(null);
+            if (oldestFetched != null) {
+                chat.getMessages().removeIf(m -> m.getTimestamp() != null && m.getTimestamp().isBefore(oldestFetched));
+            }
+        }
+        chat.getMessages().addAll(added);
+        chat.getMessages().sort(Comparator.comparing(ChatMessage::getTimestamp,
+            Comparator.nullsFirst(Comparator.naturalOrder())));
+        // Preview comes from the (cached) plaintext, never the ciphertext
+        ChatMessage newest = chat.getMessages().get(chat.getMessages().size() - 1);
+        chat.setLastMessagePreview(newest.getContent());
+        uiDispatcher.coalesce("chatListRefresh", () -> chatListView.refresh());
+        System.out.println("[HISTORY] Merged " + added.size() + " history messages into chat " + chatId + ", " + plaintextCache);
+        snapshotStore.recordMessages(chatId, added);
+        
+        // One batched update instead of one per message
+        if (currentChat != null && chatId.equals(currentChat.getChatId())) {
+            if (gap) {
+                messageWindow.show(chat.getMessages());
+                messageListView.scrollTo(messages.size() - 1);
+            } else if (loadingOlder) {
+                // Keep the message that was at the top in place while the older page appears above it
+                messageListView.scrollTo(messageWindow.merged(true));
+            } else if (messageWindow.isAtNewest()) {
+                messageWindow.show(chat.getMessages());
+                messageListView.scrollTo(messages.size() - 1);
+            } else {
+                messageWindow.merged(false);
+            }
+        } else {
+            trimRetainedMessages(chat);
+        }
+    }
+    
+    /**
+     * Fetch the newest history of a chat once per session: a full page, or only what was
+     * missed since the snapshot for chats restored from it. Waits for the connection.
+     */
+    private void requestLatestHistory(Chat chat) {
+        String chatId = chat.getChatId();
+        if (chatId == null || !webSocketService.isConnected() || !historyRequested.add(chatId)) {
+            return;
+        }
+        // The cursor is kept until its page arrives, so a failed request can be repeated
+        LocalDateTime cursor = syncCursors.get(chatId);
+        if (cursor != null) {
+            syncRequested.add(chatId);
+            webSocketService.requestChatHistorySince(chatId, cursor, HISTORY_PAGE_SIZE);
+        } else {
+            webSocketService.requestChatHistory(chatId, 0, HISTORY_PAGE_SIZE);
+        }
+    }
+    
+    /**
+     * A history request was not sent or the server refused it: forget it, so the chat is
+     * requested again the next time it is shown
+     */
+    private void historyRequestFailed(String chatId) {
+        historyRequested.remove(chatId);
+        olderHistoryRequested.remove(chatId);
+        syncRequested.remove(chatId);
+    }
+    
+    /**
+     * Messages may have been missed while the connection was down: every chat holding
+     * messages catches up from its newest stored message when it is next shown, and the
+     * open chat right away
+     */
+    private void historyAfterReconnect() {
+        historyRequested.clear();
+        olderHistoryRequested.clear();
+        syncRequested.clear();
+        for (Chat chat : chats) {
+            LocalDateTime newest = newestStoredTimestamp(chat);
+            if (newest != null) {
+                syncCursors.put(chat.getChatId(), newest);
+            }
+        }
+        if (currentChat != null) {
+            requestLatestHistory(currentChat);
+        }
+    }
+    
+    /**
+     * Show the chats restored from the local snapshot. Chats the server already sent keep
+     * their server state and only take over the snapshot messages if they have none.
+     */
+    private void applySnapshot(List<Chat> snapshot) {
+        for (Chat restored : snapshot) {
+            Chat chat = chatListModel.get(restored.getChatId());
+            if (chat == null) {
+                chatListModel.add(restored);
+                chat = restored;
+            } else if (chat.getMessages() == null || chat.getMessages().isEmpty()) {
+                chat.setMessages(restored.getMessages());
+                if (chat == currentChat) {
+                    messageWindow.show(chat.getMessages());
+                }
+            } else {
+                continue;
+            }
+            for (ChatMessage message : restored.getMessages()) {
+                plaintextCache.put(message.getId(), message.getContent());
+            }
+            LocalDateTime cursor = ChatSnapshotStore.syncCursor(restored);
+            if (cursor != null && !historyRequested.contains(chat.getChatId())) {
+                syncCursors.put(chat.getChatId(), cursor);
+            }
+        }
+        E2EEChatFrontendApplication.getStartup().milestone("snapshot chat list shown");
+    }
+    
+    /**
+     * Write pending snapshot changes now (on exit)
+     */
+    public void flushSnapshot() {
+        if (snapshotStore != null) {
+            snapshotStore.flush();
+        }
+    }
+    
+    /**
+     * Slide the message window when the list is scrolled to either end
+     */
+    private void installHistoryScrollListener() {
+        messageListView.skinProperty().addListener((obs, oldSkin, newSkin) -> Platform.runLater(() -> {
+            for (javafx.scene.Node node : messageListView.lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar bar && bar.getOrientation() == javafx.geometry.Orientation.VERTICAL) {
+                    bar.valueProperty().addListener((o, oldValue, newValue) -> {
+                        if (newValue.doubleValue() <= bar.getMin() && oldValue.doubleValue() > bar.getMin()) {
+                            loadOlderMessages();
+                        } else if (newValue.doubleValue() >= bar.getMax() && oldValue.doubleValue() < bar.getMax()) {
+                            loadNewerMessages();
+                        }
+                    });
+                }
+            }
+        }));
+    }
+    
+    private void loadOlderMessages() {
+        if (currentChat == null || currentChat.getChatId() == null) {
+            return;
+        }
+        int added = messageWindow.showOlder();
+        if (added > 0) {
+            messageListView.scrollTo(added);
+            return;
+        }
+        // Nothing older in memory: fetch the page before the oldest message the server stored
+        String chatId = currentChat.getChatId();
+        ChatMessage oldest = oldestStoredMessage(currentChat);
+        if (!historyExhausted.contains(chatId) && olderHistoryRequested.add(chatId)) {
+            if (oldest != null) {
+                webSocketService.requestChatHistoryBefore(chatId, oldest.getTimestamp(), oldest.getId(), HISTORY_PAGE_SIZE);
+            } else {
+                webSocketService.requestChatHistory(chatId, 0, HISTORY_PAGE_SIZE);
+            }
+        }
+    }
+
+    /**
+     * The oldest retained message with a server ID and timestamp; pending and local messages
+     * are not in the server's history and cannot serve as a cursor
+     */
+    private ChatMessage oldestStoredMessage(Chat chat) {
+        ChatMessage oldest = null;
+        for (ChatMessage message : chat.getMessages()) {
+            if (isStored(message) && (oldest == null || message.getTimestamp().isBefore(oldest.getTimestamp()))) {
+                oldest = message;
+            }
+        }
+        return oldest;
+    }
+    
+    private LocalDateTime newestStoredTimestamp(Chat chat) {
+        LocalDateTime newest = null;
+        if (chat.getMessages() != null) {
+            for (ChatMessage message : chat.getMessages()) {
+                if (isStored(message) && (newest == null || message.getTimestamp().isAfter(newest))) {
+                    newest = message.getTimestamp();
+                }
+            }
+        }
+        return newest;
+    }
+    
+    private boolean isStored(ChatMessage message) {
+        return message.getId() != null && message.getTimestamp() != null
+            && (message.getClientTempId() == null || !pendingMessages.containsKey(message.getClientTempId()));
+    }
+    
+    private void loadNewerMessages() {
+        int added = messageWindow.showNewer();
+        if (added > 0) {
+            messageListView.scrollTo(messages.size() - added - 1);
+        }
+    }
+    
+    /**
+     * Drop the oldest messages of a chat that is not on screen; they are re-fetched
+     * (and served from the plaintext cache) if the user scrolls back to them.
+     */
+    private void trimRetainedMessages(Chat chat) {
+        List<ChatMessage> retained = chat.getMessages();
+        if (retained == null || retained.size() <= MAX_RETAINED_MESSAGES || messageWindow.isShowing(retained)) {
+            return;
+        }
+        retained.subList(0, retained.size() - MAX_RETAINED_MESSAGES).clear();
+        historyExhausted.remove(chat.getChatId());
+    }
+    
     private void processKeyExchange(ChatMessage message) {
+        String content = message.getContent();
+        if (SenderKeyStore.isDistribution(content)) {
+            // The sender's keys may have to be fetched first, so the key is installed on a worker
+            String senderId = message.getSenderId();
+            TaskScheduler.shared().supply(() -> senderKeyStore.processDistribution(senderId, content,
+                    authService.getIdentityKeys(), peerKeys(senderId)))
+                .whenComplete((groupId, error) -> {
+                    if (error != null) {
+                        System.err.println("[SENDER_KEY] Failed to install key from " + senderId + ": " + error.getMessage());
+                        uiDispatcher.submit(() -> statusLabel.setText("Error processing group key"));
+                    } else {
+                        decryptPendingGroupMessages(groupId, senderId, SenderKeyStore.distributedKeyId(content));
+                    }
+                });
+            return;
+        }
+        if (SenderKeyStore.isKeyRequest(content)) {
+            String groupId = SenderKeyStore.requestedGroup(content);
+            senderKeyStore.resetDistribution(groupId, message.getSenderId());
+            for (Chat chat : chats) {
+                if (groupId.equals(chat.getChatId())) {
+                    distributeSenderKey(chat);
+                    break;
+                }
+            }
+            return;
+        }
         try {
             // Extract encrypted AES key from message
-            String encryptedKeyBase64 = message.getContent();
+            String encryptedKeyBase64 = content;
             
-            // Decrypt using our private key
-            SecretKey aesKey = CryptoUtils.decryptAESKey(
-                encryptedKeyBase64, 
-                authService.getKeyPair().getPrivate()
-            );
+            // Legacy RSA-wrapped chat key from a peer without X25519
+            SecretKey aesKey = authService.getIdentityKeys().unwrapKey(encryptedKeyBase64, null, message.getChatId());
             
             // Store for this chat
-            chatKeys.put(message.getChatId(), aesKey);
+            keyStore.putChatKey(message.getChatId(), aesKey);
             
             statusLabel.setText("Received secure key from " + message.getSenderId());
             // Clear message after delay
@@ -1245,7 +1913,7 @@ public class MainController implements Initializable {
         }
         
         // Store the user profile for future reference
-        userProfiles.put(user.getProfileId(), user);
+        profileCache.put(user);
         
         // Check if chat already exists
         Chat existingChat = chats.stream()
@@ -1326,11 +1994,11 @@ public class MainController implements Initializable {
             return;
         }
         
-        UserProfile profile = userProfiles.get(userId);
+        UserProfile profile = profileCache.getCached(userId);
         if (profile == null) {
             // Try to fetch profile if not available
             fetchUserProfileIfNeeded(userId);
-            profile = userProfiles.get(userId);
+            profile = profileCache.getCached(userId);
             
             if (profile == null) {
                 statusLabel.setText("Could not retrieve user information");
@@ -1399,7 +2067,7 @@ public class MainController implements Initializable {
         nameLabel.setStyle("-fx-text-fill: white; -fx-font-size: 18px; -fx-font-weight: bold;");
         
         // Online status
-        Label onlineLabel = new Label(profile.isOnline() ? "Online" : "Last seen recently");
+        Label onlineLabel = new Label(onlineUserIds.contains(userId) ? "Online" : "Last seen recently");
         onlineLabel.setStyle("-fx-text-fill: rgba(255,255,255,0.9); -fx-font-size: 13px;");
         
         headerBox.getChildren().addAll(profilePic, nameLabel, onlineLabel);
@@ -1478,7 +2146,7 @@ public class MainController implements Initializable {
         if (result.isPresent() && result.get() == ButtonType.OK) {
             // Clear messages
             chat.getMessages().clear();
-            messages.clear();
+            messageWindow.clear();
             chat.setLastMessagePreview("");
             
             // Update UI
@@ -1499,12 +2167,12 @@ public class MainController implements Initializable {
         Optional<ButtonType> result = alert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
             // Remove chat from list
-            chats.remove(chat);
+            chatListModel.remove(chat);
             
             // Clear current selection if this was the selected chat
             if (currentChat != null && currentChat.getChatId().equals(chat.getChatId())) {
                 currentChat = null;
-                messages.clear();
+                messageWindow.clear();
                 currentChatLabel.setText("No chat selected");
                 memberStatusLabel.setText("No members");
                 messageField.setDisable(true);
@@ -1564,13 +2232,12 @@ public class MainController implements Initializable {
     }
     
     // Helper method to schedule a chat list refresh with a delay
+    // Pending refreshes share one slot, so messages for many unknown chats trigger a single request
     private void scheduleChatRefreshWithDelay(int delaySeconds) {
-        javafx.animation.PauseTransition pause = new javafx.animation.PauseTransition(javafx.util.Duration.seconds(delaySeconds));
-        pause.setOnFinished(e -> {
+        TaskScheduler.shared().scheduleLatest(WebSocketService.CHAT_LIST_REFRESH, () -> {
             System.out.println("Refreshing chat list after " + delaySeconds + " seconds delay");
             refreshChatList();
-        });
-        pause.play();
+        }, delaySeconds * 1000L);
     }
     
     // Custom cell for chat list
@@ -1682,8 +2349,8 @@ public class MainController implements Initializable {
                         (targetId != null && displayName.equals(targetId))) {
                         
                         // Try to get from cached user profiles first
-                        if (targetId != null && userProfiles.containsKey(targetId)) {
-                            UserProfile profile = userProfiles.get(targetId);
+                        UserProfile profile = profileCache.getCached(targetId);
+                        if (profile != null) {
                             if (profile.getDisplayName() != null && !profile.getDisplayName().isEmpty()) {
                                 displayName = profile.getDisplayName();
                             } else if (profile.getUsername() != null && !profile.getUsername().isEmpty()) {
@@ -1698,10 +2365,9 @@ public class MainController implements Initializable {
                             displayName = (targetId != null && !targetId.isEmpty()) ? targetId : "Unknown User";
                             
                             // Trigger async profile fetch to improve future display
+                            // Cells re-render often; one fetch per profile at a time
                             if (targetId != null && !targetId.isEmpty()) {
-                                new Thread(() -> {
-                                    fetchUserProfileIfNeeded(targetId);
-                                }).start();
+                                TaskScheduler.shared().submitIfIdle("profile:" + targetId, () -> fetchUserProfileIfNeeded(targetId));
                             }
                         }
                     }
@@ -1864,7 +2530,7 @@ public class MainController implements Initializable {
                     
                     // Add sender name for group chats
                     if (currentChat != null && "group".equalsIgnoreCase(currentChat.getChatType())) {
-                        UserProfile sender = userProfiles.get(item.getSenderId());
+                        UserProfile sender = profileCache.getCached(item.getSenderId());
                         String senderName = "Unknown";
                         
                         if (sender != null) {
@@ -1897,14 +2563,14 @@ public class MainController implements Initializable {
      * @param userResults The ListView to update with found usernames.
      */
     private void searchUsers(String query, ListView<String> userResults) {
-        new Thread(() -> {
-            UserProfile[] results = authService.searchUsers(query);
+        // Debounced; each keystroke supersedes the previous query
+        userSearch.search(query, results -> {
             Platform.runLater(() -> {
                 userResults.getItems().clear();
                 // Clear the stored user profiles map for this search
                 searchResults.clear();
                 
-                if (results != null && results.length > 0) {
+                if (!results.isEmpty()) {
                     for (UserProfile user : results) {
                         // Avoid showing current user
                         if (!user.getUsername().equals(authService.getCurrentUsername())) {
@@ -1922,7 +2588,7 @@ public class MainController implements Initializable {
                     }
                 }
             });
-        }).start();
+        });
     }
     
     /**
@@ -1952,8 +2618,7 @@ public class MainController implements Initializable {
             
             if (chat.getParticipants() != null) {
                 for (String memberId : chat.getParticipants()) {
-                    UserProfile profile = userProfiles.get(memberId);
-                    if (profile != null && profile.isOnline()) {
+                    if (onlineUserIds.contains(memberId)) {
                         onlineMembers++;
                     }
                 }
@@ -1969,7 +2634,7 @@ public class MainController implements Initializable {
         } else {
             // Individual chat - get the other user's profile
             String targetUserId = chat.getTargetUserId();
-            UserProfile targetProfile = userProfiles.get(targetUserId);
+            UserProfile targetProfile = profileCache.getCached(targetUserId);
             
             // Default values
             String displayName = chat.getTargetUsername();
@@ -2001,9 +2666,8 @@ public class MainController implements Initializable {
             );
             
             // Update online status
-            boolean isOnline = false;
+            boolean isOnline = onlineUserIds.contains(targetUserId);
             if (targetProfile != null) {
-                isOnline = targetProfile.isOnline();
                 if (targetProfile.getAvatarUrl() != null && !targetProfile.getAvatarUrl().isEmpty()) {
                     // TODO: Load avatar image if available
                     // For now we're just using initials
@@ -2046,7 +2710,7 @@ public class MainController implements Initializable {
         ObservableList<HBox> participantItems = FXCollections.observableArrayList();
 
         for (String participantId : chat.getParticipants()) {
-            UserProfile profile = userProfiles.get(participantId);
+            UserProfile profile = profileCache.getCached(participantId);
             if (profile != null) {
                 String displayName = profile.getDisplayName();
                 if (displayName == null || displayName.isEmpty()) {
@@ -2059,7 +2723,7 @@ public class MainController implements Initializable {
                 final String finalDisplayName = displayName;
                 HBox participantRow = createAdminParticipantRow(
                     displayName,
-                    profile.isOnline(),
+                    onlineUserIds.contains(participantId),
                     isCurrentUser,
                     chat.isAdmin(participantId),
                     e -> handlePromoteToAdmin(chat, participantId, finalDisplayName),
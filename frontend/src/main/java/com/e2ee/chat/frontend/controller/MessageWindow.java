@@ -0,0 +1,160 @@
+package com.e2ee.chat.frontend.controller;
+
+import com.e2ee.chat.frontend.model.ChatMessage;
+import javafx.collections.ObservableList;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sliding window over the current chat's messages that backs the message ListView.
+ *
+ * Only a few pages around the viewport are in the observable list; scrolling to either
+ * edge slides the window by one page and drops the page furthest away. All changes are
+ * applied as incremental list edits so the ListView only lays out the affected rows.
+ */
+public class MessageWindow {
+    public static final int PAGE_SIZE = 50;
+    private static final int MAX_WINDOW = PAGE_SIZE * 4;
+
+    private final ObservableList<ChatMessage> visible;
+
+    // The chat's retained messages, oldest first; visible is source[start, start + visible.size())
+    private List<ChatMessage> source = Collections.emptyList();
+    private int start;
+
+    public MessageWindow(ObservableList<ChatMessage> visible) {
+        this.visible = visible;
+    }
+
+    /**
+     * Show the newest page of a chat
+     */
+    public void show(List<ChatMessage> chatMessages) {
+        source = chatMessages != null ? chatMessages : Collections.emptyList();
+        start = Math.max(0, source.size() - PAGE_SIZE);
+        visible.setAll(source.subList(start, source.size()));
+    }
+
+    public void clear() {
+        source = Collections.emptyList();
+        start = 0;
+        visible.clear();
+    }
+
+    public boolean isShowing(List<ChatMessage> chatMessages) {
+        return source == chatMessages;
+    }
+
+    /**
+     * @return true if the window ends at the newest retained message
+     */
+    public boolean isAtNewest() {
+        return start + visible.size() >= source.size();
+    }
+
+    /**
+     * A message was just appended to the shown chat. It is only added to the window if the
+     * window was following the newest messages; otherwise it appears when scrolling down.
+     *
+     * @return true if the message was added to the window
+     */
+    public boolean appended(ChatMessage message) {
+        if (start + visible.size() != source.size() - 1) {
+            return false;
+        }
+        visible.add(message);
+        int excess = visible.size() - MAX_WINDOW;
+        if (excess > 0) {
+            visible.remove(0, excess);
+            start += excess;
+        }
+        return true;
+    }
+
+    /**
+     * A message in the window changed (e.g. got its server ID); re-render only its row
+     */
+    public void updated(ChatMessage message) {
+        int index = visible.indexOf(message);
+        if (index >= 0) {
+            visible.set(index, message);
+        }
+    }
+
+    /**
+     * Slide the window one page towards older messages
+     *
+     * @return Number of messages added at the top (0 if none are retained locally)
+     */
+    public int showOlder() {
+        if (start == 0) {
+            return 0;
+        }
+        int newStart = Math.max(0, start - PAGE_SIZE);
+        int added = start - newStart;
+        visible.addAll(0, source.subList(newStart, start));
+        start = newStart;
+        int excess = visible.size() - MAX_WINDOW;
+        if (excess > 0) {
+            visible.remove(visible.size() - excess, visible.size());
+        }
+        return added;
+    }
+
+    /**
+     * Slide the window one page towards newer messages
+     *
+     * @return Number of messages added at the bottom
+     */
+    public int showNewer() {
+        int end = start + visible.size();
+        if (end >= source.size()) {
+            return 0;
+        }
+        int newEnd = Math.min(source.size(), end + PAGE_SIZE);
+        visible.addAll(source.subList(end, newEnd));
+        int excess = visible.size() - MAX_WINDOW;
+        if (excess > 0) {
+            visible.remove(0, excess);
+            start += excess;
+        }
+        return newEnd - end;
+    }
+
+    /**
+     * Messages were merged into the shown chat (a history page arrived). The window is
+     * rebuilt around its first visible message, extended by one page upwards if the
+     * page was requested by scrolling to the top.
+     *
+     * @return Number of messages now shown above the previous first visible message
+     */
+    public int merged(boolean extendOlder) {
+        if (visible.isEmpty()) {
+            show(source);
+            return 0;
+        }
+        int anchor = indexOfIdentity(visible.get(0));
+        if (anchor < 0) {
+            show(source);
+            return 0;
+        }
+        int newStart = extendOlder ? Math.max(0, anchor - PAGE_SIZE) : anchor;
+        int newEnd = Math.min(source.size(), Math.max(anchor + visible.size(), newStart + PAGE_SIZE));
+        if (newEnd - newStart > MAX_WINDOW) {
+            newEnd = newStart + MAX_WINDOW;
+        }
+        start = newStart;
+        visible.setAll(source.subList(newStart, newEnd));
+        return anchor - newStart;
+    }
+
+    private int indexOfIdentity(ChatMessage message) {
+        for (int i = 0; i < source.size(); i++) {
+            if (source.get(i) == message) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -2,6 +2,7 @@ package com.e2ee.chat.frontend.controller;
 
 import com.e2ee.chat.frontend.model.UserProfile;
 import com.e2ee.chat.frontend.service.AuthService;
+import com.e2ee.chat.frontend.service.TaskScheduler;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
@@ -97,19 +98,12 @@ public class ProfileEditorController {
                     statusLabel.getStyleClass().remove("error-label");
                     
                     // Wait a moment, then close dialog
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(1000);
-                            Platform.runLater(() -> {
-                                if (onSaveCallback != null) {
-                                    onSaveCallback.run();
-                                }
-                                dialogStage.close();
-                            });
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
+                    TaskScheduler.shared().schedule(() -> Platform.runLater(() -> {
+                        if (onSaveCallback != null) {
+                            onSaveCallback.run();
                         }
-                    }).start();
+                        dialogStage.close();
+                    }), 1000);
                 });
             }, error -> {
                 Platform.runLater(() -> {
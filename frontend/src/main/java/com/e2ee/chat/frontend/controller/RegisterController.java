@@ -2,7 +2,6 @@ package com.e2ee.chat.frontend.controller;
 
 import com.e2ee.chat.frontend.E2EEChatFrontendApplication;
 import com.e2ee.chat.frontend.service.AuthService;
-import com.e2ee.chat.frontend.crypto.CryptoUtils;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -10,8 +9,6 @@ import javafx.scene.control.*;
 import javafx.util.Duration;
 
 import java.net.URL;
-import java.security.KeyPair;
-import java.util.Base64;
 import java.util.ResourceBundle;
 
 public class RegisterController implements Initializable {
@@ -38,15 +35,11 @@ public class RegisterController implements Initializable {
     private Label statusLabel;
     
     private AuthService authService;
-    private KeyPair keyPair;
     
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         authService = E2EEChatFrontendApplication.getAuthService();
         
-        // Generate RSA key pair for E2EE
-        keyPair = CryptoUtils.generateKeyPair();
-        
         // Add listeners to validate form fields
         usernameField.textProperty().addListener((observable, oldValue, newValue) -> checkFields());
         passwordField.textProperty().addListener((observable, oldValue, newValue) -> checkFields());
@@ -77,33 +70,34 @@ public class RegisterController implements Initializable {
         registerButton.setDisable(true);
         registerButton.setText("Registering...");
         
-        // Convert public key to Base64 for storage
-        String publicKeyBase64 = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
-        
-        // Run registration in a separate thread to avoid freezing the UI
-        new Thread(() -> {
-            boolean success = authService.register(username, password, email);
+        // Register, then log in automatically; neither call blocks a thread while in flight
+        authService.registerAsync(username, password, email).thenAccept(success -> {
+            if (success) {
+                javafx.application.Platform.runLater(() -> showSuccess("Registration successful! Logging in..."));
+                authService.loginAsync(username, password).thenAccept(loggedIn -> javafx.application.Platform.runLater(() -> {
+                    // Short delay before switching to main screen
+                    javafx.animation.PauseTransition pause = new javafx.animation.PauseTransition(Duration.seconds(1.5));
+                    pause.setOnFinished(event2 -> {
+                        if (loggedIn) {
+                            E2EEChatFrontendApplication.showMainScreen(username);
+                        } else {
+                            E2EEChatFrontendApplication.showLoginScreen();
+                        }
+                    });
+                    pause.play();
+                }));
+                return;
+            }
             
             // Update UI on JavaFX thread
             javafx.application.Platform.runLater(() -> {
-                if (success) {
-                    showSuccess("Registration successful! Logging in...");
-                    
-                    // Automatically log in after registration
-                    authService.login(username, password);
-                    
-                    // Short delay before switching to main screen
-                    new javafx.animation.PauseTransition(Duration.seconds(1.5)).onFinishedProperty()
-                        .set(event2 -> E2EEChatFrontendApplication.showMainScreen(username));
-                } else {
-                    showError("Registration failed. Username may be taken.");
-                    
-                    // Reset the button
-                    registerButton.setDisable(false);
-                    registerButton.setText("Register");
-                }
+                showError("Registration failed. Username may be taken.");
+                
+                // Reset the button
+                registerButton.setDisable(false);
+                registerButton.setText("Register");
             });
-        }).start();
+        });
     }
     
     @FXML
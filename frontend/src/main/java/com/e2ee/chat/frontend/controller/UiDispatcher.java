@@ -0,0 +1,148 @@
+package com.e2ee.chat.frontend.controller;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Frame-coalescing replacement for per-event {@code Platform.runLater} calls.
+ *
+ * Work submitted from any thread is queued and drained on the next JavaFX pulse by an
+ * {@link AnimationTimer}, within a per-frame time budget so a burst (offline replay, a busy
+ * group) spreads over several frames instead of freezing the UI. Keyed tasks are coalesced:
+ * only the latest task per key runs, in the queue position of the first submission that is
+ * still pending - this is where snapshot updates and list refreshes go. Everything runs in
+ * arrival order, so a chat-list snapshot is applied before the messages queued after it.
+ * The timer stops itself when idle.
+ */
+public class UiDispatcher {
+    // Leave roughly half of a 60 fps frame for layout and rendering
+    private static final long FRAME_BUDGET_NANOS = 8_000_000L;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Pending coalesced tasks by key; each also sits in the task queue as a Slot
+    private final Map<String, Slot> coalesced = new HashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopped;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            drain();
+        }
+    };
+
+    /**
+     * Queue entry of a coalesced key; runs whichever task was submitted for the key last
+     */
+    private final class Slot implements Runnable {
+        private final String key;
+        private Runnable task;
+
+        Slot(String key, Runnable task) {
+            this.key = key;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            Runnable latest;
+            synchronized (coalesced) {
+                coalesced.remove(key, this);
+                latest = task;
+            }
+            latest.run();
+        }
+    }
+
+    /**
+     * Accept work again after {@link #stop} (a controller that is shown again)
+     */
+    public void start() {
+        stopped = false;
+    }
+
+    /**
+     * Run a task on the FX thread during the next frame, in submission order
+     */
+    public void submit(Runnable task) {
+        if (stopped) {
+            return;
+        }
+        tasks.add(task);
+        wake();
+    }
+
+    /**
+     * Run a task on the FX thread during the next frame; a later task with the same key
+     * replaces it if it has not run yet, keeping its place in the queue
+     */
+    public void coalesce(String key, Runnable task) {
+        if (stopped) {
+            return;
+        }
+        synchronized (coalesced) {
+            Slot slot = coalesced.get(key);
+            if (slot != null) {
+                slot.task = task;
+                return;
+            }
+            slot = new Slot(key, task);
+            coalesced.put(key, slot);
+            tasks.add(slot);
+        }
+        wake();
+    }
+
+    /**
+     * Drop all pending work and stop the timer (on logout)
+     */
+    public void stop() {
+        stopped = true;
+        tasks.clear();
+        synchronized (coalesced) {
+            coalesced.clear();
+        }
+        if (running.compareAndSet(true, false)) {
+            Platform.runLater(timer::stop);
+        }
+    }
+
+    private void wake() {
+        // One runLater per idle -> busy transition instead of one per event
+        if (running.compareAndSet(false, true)) {
+            Platform.runLater(timer::start);
+        }
+    }
+
+    private void drain() {
+        long deadline = System.nanoTime() + FRAME_BUDGET_NANOS;
+        Runnable task;
+        while (System.nanoTime() < deadline && (task = tasks.poll()) != null) {
+            runSafely(task);
+        }
+
+        if (tasks.isEmpty()) {
+            timer.stop();
+            running.set(false);
+            // Work submitted between the isEmpty check and the flag reset would otherwise wait
+            if (!tasks.isEmpty() && !stopped && running.compareAndSet(false, true)) {
+                timer.start();
+            }
+        }
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            System.out.println("[UI] Dispatched task failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.e2ee.chat.frontend.crypto;
+
+import com.e2ee.chat.frontend.service.TaskScheduler;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Password-protected on-disk store for the identity key pairs, per-chat AES keys and the
+ * group sender-key chains.
+ *
+ * The file is sealed with AES-GCM under a PBKDF2 key derived from the login password:
+ * {@code magic | salt(16) | iv(12) | ciphertext}. The plaintext is a properties document.
+ * The derived key is kept in memory after unlock, so later writes skip the KDF. A file that
+ * exists but cannot be opened is never replaced: it holds the only copy of those keys.
+ */
+public class ClientKeyStore {
+    private static final byte[] MAGIC = "E2EEKS1".getBytes(StandardCharsets.US_ASCII);
+    private static final String KDF_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int KDF_ITERATIONS = 210_000;
+    private static final int SALT_LENGTH = 16;
+
+    private static final String RSA_PRIVATE = "identity.rsa.private";
+    private static final String RSA_PUBLIC = "identity.rsa.public";
+    private static final String X25519_PRIVATE = "identity.x25519.private";
+    private static final String X25519_PUBLIC = "identity.x25519.public";
+    private static final String CHAT_KEY_PREFIX = "chat.";
+    private static final String SENDER_CHAIN_PREFIX = "sender.";
+    private static final String LOCAL_DATA_KEY = "local.data";
+
+    private static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".e2ee-chat");
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    // Key changes arriving in a burst (chat list, group key distributions) share one write
+    private static final long SAVE_DELAY_MILLIS = 100;
+    // Identity keys generated by prepare() for users without a keystore file, by file
+    private static final Map<Path, IdentityKeys> PREPARED_IDENTITIES = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final byte[] salt;
+    private final SecretKey fileKey;
+    private final IdentityKeys identityKeys;
+    private final Map<String, SecretKey> chatKeys = new ConcurrentHashMap<>();
+    private final Map<String, String> senderChains = new ConcurrentHashMap<>();
+    private final boolean created;
+    private final String savePurpose;
+    private SecretKey localDataKey;
+
+    private ClientKeyStore(Path file, byte[] salt, SecretKey fileKey, IdentityKeys identityKeys, boolean created) {
+        this.file = file;
+        this.salt = salt;
+        this.fileKey = fileKey;
+        this.identityKeys = identityKeys;
+        this.created = created;
+        this.savePurpose = "keystoreSave:" + file;
+    }
+
+    /**
+     * Open the keystore of a user, creating it with fresh identity keys on first login
+     *
+     * @param username The logged-in user (one file per user)
+     * @param password The login password protecting the file
+     * @return The unlocked keystore
+     */
+    public static ClientKeyStore unlock(String username, char[] password) {
+        ClientKeyStore store = open(username, password);
+        if (store.isNewlyCreated()) {
+            store.save();
+        }
+        return store;
+    }
+
+    /**
+     * Like {@link #unlock} but without writing anything: a newly created store stays in
+     * memory until {@link #save()}. Safe to run before the password has been verified by
+     * the server, e.g. in parallel with the login request.
+     *
+     * @throws UnreadableKeyStoreException if the user's file exists but cannot be opened
+     *         (wrong or changed password, corruption); the file is left untouched
+     */
+    public static ClientKeyStore open(String username, char[] password) {
+        Path file = fileOf(username);
+        if (Files.exists(file)) {
+            try {
+                return load(file, password);
+            } catch (Exception e) {
+                System.err.println("[KEYSTORE] Could not open " + file + ": " + e.getMessage());
+                throw new UnreadableKeyStoreException(file, e);
+            }
+        }
+        IdentityKeys identityKeys = PREPARED_IDENTITIES.remove(file);
+        if (identityKeys == null) {
+            identityKeys = IdentityKeys.generate();
+        }
+        byte[] salt = new byte[SALT_LENGTH];
+        SECURE_RANDOM.nextBytes(salt);
+        return new ClientKeyStore(file, salt, deriveFileKey(password, salt), identityKeys, true);
+    }
+
+    /**
+     * Do the password-independent part of {@link #unlock} ahead of time (while the password
+     * is being typed): load the JCA providers and, if this user has no keystore on this
+     * device yet, generate the identity keys that the first unlock will use.
+     */
+    public static void prepare(String username) {
+        try {
+            SecretKeyFactory.getInstance(KDF_ALGORITHM);
+            Cipher.getInstance("AES/GCM/NoPadding");
+            KeyFactory.getInstance("RSA");
+            KeyFactory.getInstance("X25519");
+        } catch (Exception e) {
+            System.err.println("[KEYSTORE] Crypto provider warm-up failed: " + e.getMessage());
+        }
+        Path file = fileOf(username);
+        if (!Files.exists(file) && !PREPARED_IDENTITIES.containsKey(file)) {
+            PREPARED_IDENTITIES.putIfAbsent(file, IdentityKeys.generate());
+        }
+    }
+
+    private static Path fileOf(String username) {
+        return DEFAULT_DIRECTORY.resolve("keys-" + username.replaceAll("[^A-Za-z0-9._-]", "_") + ".bin");
+    }
+
+    private static ClientKeyStore load(Path file, char[] password) throws Exception {
+        byte[] data = Files.readAllBytes(file);
+        if (data.length < MAGIC.length + SALT_LENGTH
+                || !Arrays.equals(Arrays.copyOf(data, MAGIC.length), MAGIC)) {
+            throw new IOException("Not a keystore file");
+        }
+        byte[] salt = Arrays.copyOfRange(data, MAGIC.length, MAGIC.length + SALT_LENGTH);
+        SecretKey fileKey = deriveFileKey(password, salt);
+
+        int sealedOffset = MAGIC.length + SALT_LENGTH;
+        byte[] plaintext = CryptoEngine.open(fileKey, data, sealedOffset, data.length - sealedOffset, MAGIC);
+
+        Properties entries = new Properties();
+        entries.load(new ByteArrayInputStream(plaintext));
+        Arrays.fill(plaintext, (byte) 0);
+
+        IdentityKeys identityKeys = new IdentityKeys(
+                new KeyPair(decodePublic("RSA", entries.getProperty(RSA_PUBLIC)),
+                        decodePrivate("RSA", entries.getProperty(RSA_PRIVATE))),
+                new KeyPair(decodePublic("X25519", entries.getProperty(X25519_PUBLIC)),
+                        decodePrivate("X25519", entries.getProperty(X25519_PRIVATE))));
+        ClientKeyStore store = new ClientKeyStore(file, salt, fileKey, identityKeys, false);
+        if (entries.getProperty(LOCAL_DATA_KEY) != null) {
+            store.localDataKey = new SecretKeySpec(Base64.getDecoder().decode(entries.getProperty(LOCAL_DATA_KEY)), "AES");
+        }
+        for (String name : entries.stringPropertyNames()) {
+            if (name.startsWith(CHAT_KEY_PREFIX)) {
+                byte[] key = Base64.getDecoder().decode(entries.getProperty(name));
+                store.chatKeys.put(name.substring(CHAT_KEY_PREFIX.length()), new SecretKeySpec(key, "AES"));
+            } else if (name.startsWith(SENDER_CHAIN_PREFIX)) {
+                store.senderChains.put(name.substring(SENDER_CHAIN_PREFIX.length()), entries.getProperty(name));
+            }
+        }
+        return store;
+    }
+
+    public IdentityKeys getIdentityKeys() {
+        return identityKeys;
+    }
+
+    /**
+     * @return true if the identity keys were generated by this unlock (and must be published)
+     */
+    public boolean isNewlyCreated() {
+        return created;
+    }
+
+    public SecretKey getChatKey(String chatId) {
+        return chatId != null ? chatKeys.get(chatId) : null;
+    }
+
+    public boolean hasChatKey(String chatId) {
+        return chatId != null && chatKeys.containsKey(chatId);
+    }
+
+    /**
+     * Remember a chat key and persist it, so the chat needs no new key exchange after a restart.
+     * The file is written shortly afterwards in the background.
+     */
+    public void putChatKey(String chatId, SecretKey key) {
+        SecretKey previous = chatKeys.put(chatId, key);
+        if (previous == null || !Arrays.equals(previous.getEncoded(), key.getEncoded())) {
+            saveLater();
+        }
+    }
+
+    /**
+     * @return The persisted group sender-key chains, by chain
+     */
+    public Map<String, String> getSenderChains() {
+        return new HashMap<>(senderChains);
+    }
+
+    /**
+     * Replace the persisted group sender-key chains; written shortly afterwards in the background
+     */
+    public void putSenderChains(Map<String, String> chains) {
+        if (!senderChains.equals(chains)) {
+            senderChains.keySet().retainAll(chains.keySet());
+            senderChains.putAll(chains);
+            saveLater();
+        }
+    }
+
+    /**
+     * AES key for other data this client keeps on disk (the chat snapshot), so it is as well
+     * protected as the keys themselves. Created on first use and written with the next
+     * debounced save, so the caller (the UI thread at startup) does not wait for the file.
+     */
+    public synchronized SecretKey getLocalDataKey() {
+        if (localDataKey == null) {
+            byte[] key = new byte[32];
+            SECURE_RANDOM.nextBytes(key);
+            localDataKey = new SecretKeySpec(key, "AES");
+            saveLater();
+        }
+        return localDataKey;
+    }
+
+    /**
+     * Write pending changes now (on logout or exit)
+     */
+    public void flush() {
+        TaskScheduler.shared().cancel(savePurpose);
+        save();
+    }
+
+    private void saveLater() {
+        TaskScheduler.shared().scheduleLatest(savePurpose, this::save, SAVE_DELAY_MILLIS);
+    }
+
+    /**
+     * Seal and write the store; the file is replaced atomically so a crash never leaves it half written
+     */
+    public synchronized void save() {
+        Properties entries = new Properties();
+        Base64.Encoder encoder = Base64.getEncoder();
+        entries.setProperty(RSA_PUBLIC, encoder.encodeToString(identityKeys.getRsaKeyPair().getPublic().getEncoded()));
+        entries.setProperty(RSA_PRIVATE, encoder.encodeToString(identityKeys.getRsaKeyPair().getPrivate().getEncoded()));
+        entries.setProperty(X25519_PUBLIC, encoder.encodeToString(identityKeys.getX25519KeyPair().getPublic().getEncoded()));
+        entries.setProperty(X25519_PRIVATE, encoder.encodeToString(identityKeys.getX25519KeyPair().getPrivate().getEncoded()));
+        chatKeys.forEach((chatId, key) -> entries.setProperty(CHAT_KEY_PREFIX + chatId, encoder.encodeToString(key.getEncoded())));
+        senderChains.forEach((chain, state) -> entries.setProperty(SENDER_CHAIN_PREFIX + chain, state));
+        if (localDataKey != null) {
+            entries.setProperty(LOCAL_DATA_KEY, encoder.encodeToString(localDataKey.getEncoded()));
+        }
+
+        try {
+            ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+            entries.store(plaintext, null);
+
+            byte[] ciphertext = CryptoEngine.seal(fileKey, plaintext.toByteArray(), MAGIC);
+
+            byte[] sealed = ByteBuffer.allocate(MAGIC.length + SALT_LENGTH + ciphertext.length)
+                    .put(MAGIC).put(salt).put(ciphertext).array();
+
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, sealed);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            // Keys still work for this session; they just have to be re-exchanged after a restart
+            System.err.println("[KEYSTORE] Failed to save keystore " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static SecretKey deriveFileKey(char[] password, byte[] salt) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, KDF_ITERATIONS, 256);
+        try {
+            byte[] key = SecretKeyFactory.getInstance(KDF_ALGORITHM).generateSecret(spec).getEncoded();
+            return new SecretKeySpec(key, "AES");
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to derive keystore key", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static PublicKey decodePublic(String algorithm, String base64) throws Exception {
+        return KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(base64)));
+    }
+
+    private static PrivateKey decodePrivate(String algorithm, String base64) throws Exception {
+        return KeyFactory.getInstance(algorithm).generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(base64)));
+    }
+
+    /**
+     * Thrown when this user's keystore file exists but cannot be decrypted or parsed. Creating
+     * new identity keys here would overwrite the only copy of the old ones, so the unlock fails.
+     */
+    public static class UnreadableKeyStoreException extends RuntimeException {
+        private final Path file;
+
+        public UnreadableKeyStoreException(Path file, Throwable cause) {
+            super("Keystore " + file + " could not be opened", cause);
+            this.file = file;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+    }
+}
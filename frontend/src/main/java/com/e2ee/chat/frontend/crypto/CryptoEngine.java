@@ -0,0 +1,183 @@
+package com.e2ee.chat.frontend.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocation-light AES-GCM for the message hot path.
+ *
+ * Cipher instances are cached per thread and re-initialised for every operation, randomness
+ * comes from one shared SecureRandom, and nonces are built from a random 32-bit prefix and a
+ * 64-bit counter that starts at a random value, so they never repeat within a process and
+ * collisions between processes sharing a key are negligible.
+ *
+ * Sealed format: {@code nonce(12) | ciphertext | tag(16)}. The nonce travels with the data,
+ * so there is no separate IV field to lose on the way.
+ */
+public final class CryptoEngine {
+    public static final int NONCE_LENGTH = 12;
+    public static final int TAG_LENGTH = 16;
+
+    private static final String AES_ALGORITHM = "AES/GCM/NoPadding";
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    private static final int NONCE_PREFIX = SECURE_RANDOM.nextInt();
+    private static final AtomicLong NONCE_COUNTER = new AtomicLong(SECURE_RANDOM.nextLong());
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(AES_ALGORITHM);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new IllegalStateException("AES-GCM not available", e);
+        }
+    });
+
+    private CryptoEngine() {
+    }
+
+    public static SecureRandom secureRandom() {
+        return SECURE_RANDOM;
+    }
+
+    /**
+     * Number of bytes {@link #seal} produces for a plaintext of the given length
+     */
+    public static int sealedLength(int plaintextLength) {
+        return NONCE_LENGTH + plaintextLength + TAG_LENGTH;
+    }
+
+    /**
+     * Write the next unique nonce into the buffer
+     */
+    public static void nextNonce(byte[] buffer, int offset) {
+        long counter = NONCE_COUNTER.getAndIncrement();
+        ByteBuffer.wrap(buffer, offset, NONCE_LENGTH).putInt(NONCE_PREFIX).putLong(counter);
+    }
+
+    /**
+     * Encrypt into a single array holding nonce and ciphertext
+     *
+     * @param key The AES key
+     * @param plaintext Data to encrypt
+     * @param aad Associated data bound to the ciphertext (may be null)
+     * @return nonce | ciphertext | tag
+     */
+    public static byte[] seal(SecretKey key, byte[] plaintext, byte[] aad) {
+        byte[] sealed = new byte[sealedLength(plaintext.length)];
+        nextNonce(sealed, 0);
+        try {
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, sealed, 0, NONCE_LENGTH));
+            if (aad != null) {
+                cipher.updateAAD(aad);
+            }
+            cipher.doFinal(plaintext, 0, plaintext.length, sealed, NONCE_LENGTH);
+            return sealed;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to encrypt", e);
+        }
+    }
+
+    /**
+     * Encrypt straight into an output buffer, e.g. a binary frame being assembled
+     *
+     * @param key The AES key
+     * @param plaintext Remaining bytes are encrypted and consumed
+     * @param out Receives nonce | ciphertext | tag; needs {@link #sealedLength} bytes remaining
+     * @param aad Associated data (may be null)
+     */
+    public static void seal(SecretKey key, ByteBuffer plaintext, ByteBuffer out, byte[] aad) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        nextNonce(nonce, 0);
+        try {
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+            if (aad != null) {
+                cipher.updateAAD(aad);
+            }
+            out.put(nonce);
+            cipher.doFinal(plaintext, out);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to encrypt", e);
+        }
+    }
+
+    /**
+     * Decrypt a sealed range of an array
+     *
+     * @param key The AES key
+     * @param sealed Array holding nonce | ciphertext | tag
+     * @param offset Start of the sealed data
+     * @param length Length of the sealed data
+     * @param aad Associated data used when sealing (may be null)
+     * @return The plaintext
+     */
+    public static byte[] open(SecretKey key, byte[] sealed, int offset, int length, byte[] aad) {
+        if (length < NONCE_LENGTH + TAG_LENGTH) {
+            throw new IllegalArgumentException("Sealed data too short");
+        }
+        try {
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, sealed, offset, NONCE_LENGTH));
+            if (aad != null) {
+                cipher.updateAAD(aad);
+            }
+            return cipher.doFinal(sealed, offset + NONCE_LENGTH, length - NONCE_LENGTH);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to decrypt", e);
+        }
+    }
+
+    public static byte[] open(SecretKey key, byte[] sealed, byte[] aad) {
+        return open(key, sealed, 0, sealed.length, aad);
+    }
+
+    /**
+     * Decrypt from a buffer (e.g. a received binary frame) into an output buffer
+     *
+     * @param key The AES key
+     * @param sealed Remaining bytes are nonce | ciphertext | tag and are consumed
+     * @param out Receives the plaintext
+     * @param aad Associated data (may be null)
+     */
+    public static void open(SecretKey key, ByteBuffer sealed, ByteBuffer out, byte[] aad) {
+        if (sealed.remaining() < NONCE_LENGTH + TAG_LENGTH) {
+            throw new IllegalArgumentException("Sealed data too short");
+        }
+        byte[] nonce = new byte[NONCE_LENGTH];
+        sealed.get(nonce);
+        try {
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+            if (aad != null) {
+                cipher.updateAAD(aad);
+            }
+            cipher.doFinal(sealed, out);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to decrypt", e);
+        }
+    }
+
+    /**
+     * Encrypt a text message for the JSON/STOMP transport
+     *
+     * @return Base64 of nonce | ciphertext | tag
+     */
+    public static String encryptText(String plaintext, SecretKey key) {
+        return Base64.getEncoder().encodeToString(seal(key, plaintext.getBytes(StandardCharsets.UTF_8), null));
+    }
+
+    /**
+     * Decrypt a text message produced by {@link #encryptText}
+     */
+    public static String decryptText(String sealedBase64, SecretKey key) {
+        return new String(open(key, Base64.getDecoder().decode(sealedBase64), null), StandardCharsets.UTF_8);
+    }
+}
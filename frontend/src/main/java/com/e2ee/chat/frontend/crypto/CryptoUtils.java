@@ -1,19 +1,27 @@
 package com.e2ee.chat.frontend.crypto;
 
 import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
 import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.security.*;
+import java.security.interfaces.XECPublicKey;
+import java.security.spec.NamedParameterSpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.security.spec.XECPublicKeySpec;
+import java.util.Arrays;
 import java.util.Base64;
 
 public class CryptoUtils {
     private static final String RSA_ALGORITHM = "RSA";
-    private static final String AES_ALGORITHM = "AES/GCM/NoPadding";
-    private static final int GCM_TAG_LENGTH = 128;
     private static final int AES_KEY_SIZE = 256;
+    private static final String X25519_ALGORITHM = "X25519";
+    private static final int X25519_KEY_LENGTH = 32;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
     
     /**
      * Generate a new RSA key pair for asymmetric encryption
@@ -47,62 +55,35 @@ public class CryptoUtils {
      * @param message The plaintext message to encrypt
      * @param key The AES key
      * @return Tuple containing the encrypted message and the IV
+     * @see CryptoEngine#encryptText for the combined nonce+ciphertext format
      */
     public static EncryptionResult encryptMessage(String message, SecretKey key) {
-        try {
-            byte[] messageBytes = message.getBytes();
-            
-            // Generate random IV (initialization vector)
-            SecureRandom secureRandom = new SecureRandom();
-            byte[] iv = new byte[12]; // 12 bytes (96 bits) for GCM
-            secureRandom.nextBytes(iv);
-            
-            // Initialize AES-GCM encryption
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            Cipher cipher = Cipher.getInstance(AES_ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, key, parameterSpec);
-            
-            // Encrypt the message
-            byte[] encryptedBytes = cipher.doFinal(messageBytes);
-            
-            // Encode to Base64 for transmission
-            String encryptedBase64 = Base64.getEncoder().encodeToString(encryptedBytes);
-            String ivBase64 = Base64.getEncoder().encodeToString(iv);
-            
-            return new EncryptionResult(encryptedBase64, ivBase64);
-            
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to encrypt message", e);
-        }
+        byte[] sealed = CryptoEngine.seal(key, message.getBytes(StandardCharsets.UTF_8), null);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return new EncryptionResult(
+                encoder.encodeToString(Arrays.copyOfRange(sealed, CryptoEngine.NONCE_LENGTH, sealed.length)),
+                encoder.encodeToString(Arrays.copyOf(sealed, CryptoEngine.NONCE_LENGTH)));
     }
     
     /**
      * Decrypt a message using AES-GCM
      * 
      * @param encryptedMessage The encrypted message (Base64 encoded)
-     * @param iv The initialization vector (Base64 encoded)
+     * @param iv The initialization vector (Base64 encoded), or empty if it is carried
+     *           in front of the ciphertext as produced by {@link CryptoEngine#encryptText}
      * @param key The AES key
      * @return The decrypted plaintext message
      */
     public static String decryptMessage(String encryptedMessage, String iv, SecretKey key) {
-        try {
-            // Decode from Base64
-            byte[] encryptedBytes = Base64.getDecoder().decode(encryptedMessage);
-            byte[] ivBytes = Base64.getDecoder().decode(iv);
-            
-            // Initialize AES-GCM decryption
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, ivBytes);
-            Cipher cipher = Cipher.getInstance(AES_ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, key, parameterSpec);
-            
-            // Decrypt the message
-            byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
-            
-            return new String(decryptedBytes);
-            
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to decrypt message", e);
+        if (iv == null || iv.isEmpty()) {
+            return CryptoEngine.decryptText(encryptedMessage, key);
         }
+        byte[] ivBytes = Base64.getDecoder().decode(iv);
+        byte[] encryptedBytes = Base64.getDecoder().decode(encryptedMessage);
+        byte[] sealed = new byte[ivBytes.length + encryptedBytes.length];
+        System.arraycopy(ivBytes, 0, sealed, 0, ivBytes.length);
+        System.arraycopy(encryptedBytes, 0, sealed, ivBytes.length, encryptedBytes.length);
+        return new String(CryptoEngine.open(key, sealed, null), StandardCharsets.UTF_8);
     }
     
     /**
@@ -164,6 +145,126 @@ public class CryptoUtils {
         }
     }
     
+    /**
+     * Generate a new X25519 key pair for elliptic-curve key agreement
+     */
+    public static KeyPair generateX25519KeyPair() {
+        try {
+            return KeyPairGenerator.getInstance(X25519_ALGORITHM).generateKeyPair();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to generate X25519 key pair", e);
+        }
+    }
+    
+    /**
+     * Encode an X25519 public key as its raw 32-byte little-endian u-coordinate (RFC 7748)
+     * 
+     * @param publicKey The X25519 public key
+     * @return Base64 encoded raw public key
+     */
+    public static String encodeX25519PublicKey(PublicKey publicKey) {
+        BigInteger u = ((XECPublicKey) publicKey).getU();
+        byte[] bigEndian = u.toByteArray();
+        byte[] raw = new byte[X25519_KEY_LENGTH];
+        // BigInteger is big-endian and may carry a leading sign byte
+        for (int i = 0; i < X25519_KEY_LENGTH && i < bigEndian.length; i++) {
+            raw[i] = bigEndian[bigEndian.length - 1 - i];
+        }
+        return Base64.getEncoder().encodeToString(raw);
+    }
+    
+    /**
+     * Decode a raw Base64 X25519 public key
+     * 
+     * @param publicKeyBase64 Base64 encoded 32-byte public key
+     * @return PublicKey object
+     */
+    public static PublicKey decodeX25519PublicKey(String publicKeyBase64) {
+        try {
+            byte[] raw = Base64.getDecoder().decode(publicKeyBase64);
+            if (raw.length != X25519_KEY_LENGTH) {
+                throw new IllegalArgumentException("X25519 public key must be 32 bytes");
+            }
+            byte[] bigEndian = new byte[X25519_KEY_LENGTH];
+            for (int i = 0; i < X25519_KEY_LENGTH; i++) {
+                bigEndian[i] = raw[X25519_KEY_LENGTH - 1 - i];
+            }
+            // Mask the unused top bit as required by RFC 7748
+            bigEndian[0] &= 0x7f;
+            XECPublicKeySpec spec = new XECPublicKeySpec(NamedParameterSpec.X25519, new BigInteger(1, bigEndian));
+            return KeyFactory.getInstance(X25519_ALGORITHM).generatePublic(spec);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to decode X25519 public key", e);
+        }
+    }
+    
+    /**
+     * Derive a symmetric key from an X25519 agreement using HKDF-SHA256.
+     * Both parties derive the same key from their own private key and the peer's public key.
+     * 
+     * @param privateKey Our X25519 private key
+     * @param peerPublicKey The peer's X25519 public key
+     * @param salt Context-specific salt (e.g. the chat ID)
+     * @param info Purpose label, so different uses never share a key
+     * @return 256-bit AES key
+     */
+    public static SecretKey deriveSharedKey(PrivateKey privateKey, PublicKey peerPublicKey, String salt, String info) {
+        byte[] sharedSecret = null;
+        try {
+            KeyAgreement agreement = KeyAgreement.getInstance(X25519_ALGORITHM);
+            agreement.init(privateKey);
+            agreement.doPhase(peerPublicKey, true);
+            sharedSecret = agreement.generateSecret();
+            byte[] keyBytes = hkdf(sharedSecret,
+                    salt.getBytes(StandardCharsets.UTF_8),
+                    info.getBytes(StandardCharsets.UTF_8),
+                    AES_KEY_SIZE / 8);
+            return new SecretKeySpec(keyBytes, "AES");
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to derive shared key", e);
+        } finally {
+            if (sharedSecret != null) {
+                Arrays.fill(sharedSecret, (byte) 0);
+            }
+        }
+    }
+    
+    /**
+     * HKDF-SHA256 extract-and-expand (RFC 5869)
+     * 
+     * @param inputKeyMaterial Secret input, e.g. an ECDH shared secret
+     * @param salt Optional salt (may be empty)
+     * @param info Context and application specific information
+     * @param length Number of output bytes (at most 255 * 32)
+     * @return Derived key material
+     */
+    public static byte[] hkdf(byte[] inputKeyMaterial, byte[] salt, byte[] info, int length) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            byte[] extractSalt = (salt == null || salt.length == 0) ? new byte[mac.getMacLength()] : salt;
+            mac.init(new SecretKeySpec(extractSalt, HMAC_ALGORITHM));
+            byte[] pseudoRandomKey = mac.doFinal(inputKeyMaterial);
+            
+            mac.init(new SecretKeySpec(pseudoRandomKey, HMAC_ALGORITHM));
+            byte[] output = new byte[length];
+            byte[] block = new byte[0];
+            int offset = 0;
+            for (byte counter = 1; offset < length; counter++) {
+                mac.update(block);
+                mac.update(info);
+                mac.update(counter);
+                block = mac.doFinal();
+                int chunk = Math.min(block.length, length - offset);
+                System.arraycopy(block, 0, output, offset, chunk);
+                offset += chunk;
+            }
+            Arrays.fill(pseudoRandomKey, (byte) 0);
+            return output;
+        } catch (Exception e) {
+            throw new RuntimeException("HKDF derivation failed", e);
+        }
+    }
+    
     /**
      * Inner class to hold encryption results
      */
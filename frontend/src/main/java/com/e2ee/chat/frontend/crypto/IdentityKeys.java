@@ -0,0 +1,105 @@
+package com.e2ee.chat.frontend.crypto;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.Base64;
+
+/**
+ * The local user's identity key pairs and the key-agreement operations built on them.
+ *
+ * X25519 is used whenever the peer publishes an X25519 key: chat keys are derived with
+ * ECDH + HKDF (no key-exchange message needed) and other keys are wrapped with an
+ * ECDH-derived key. RSA is kept only to talk to peers that still publish a legacy key.
+ */
+public class IdentityKeys {
+    private static final String CHAT_KEY_INFO = "e2ee-chat/chat-key/v1";
+    private static final String WRAP_KEY_INFO = "e2ee-chat/key-wrap/v1";
+    private static final String X25519_WRAP_PREFIX = "x25519:";
+    private static final String RSA_WRAP_PREFIX = "rsa:";
+
+    private final KeyPair rsaKeyPair;
+    private final KeyPair x25519KeyPair;
+
+    public IdentityKeys(KeyPair rsaKeyPair, KeyPair x25519KeyPair) {
+        this.rsaKeyPair = rsaKeyPair;
+        this.x25519KeyPair = x25519KeyPair;
+    }
+
+    public static IdentityKeys generate() {
+        return new IdentityKeys(CryptoUtils.generateKeyPair(), CryptoUtils.generateX25519KeyPair());
+    }
+
+    public KeyPair getRsaKeyPair() {
+        return rsaKeyPair;
+    }
+
+    public KeyPair getX25519KeyPair() {
+        return x25519KeyPair;
+    }
+
+    /**
+     * Value to publish as UserProfile.publicKey
+     */
+    public String publicKeyBundle() {
+        return PublicKeyBundle.encode(rsaKeyPair.getPublic(), x25519KeyPair.getPublic());
+    }
+
+    /**
+     * Derive the AES key of a direct chat. Both participants compute the same key locally.
+     * 
+     * @param peer The other participant's published keys
+     * @param chatId The chat ID, used as HKDF salt so every chat gets its own key
+     * @return The chat key, or null if the peer has no X25519 key (fall back to RSA exchange)
+     */
+    public SecretKey deriveChatKey(PublicKeyBundle peer, String chatId) {
+        if (peer == null || !peer.supportsX25519()) {
+            return null;
+        }
+        return CryptoUtils.deriveSharedKey(x25519KeyPair.getPrivate(), peer.getX25519(), chatId, CHAT_KEY_INFO);
+    }
+
+    /**
+     * Wrap a symmetric key for a peer, preferring X25519 over RSA
+     * 
+     * @param key The key to wrap
+     * @param peer The recipient's published keys
+     * @param context Binds the wrap to its use (e.g. the group ID)
+     * @return Algorithm-prefixed wrapped key
+     */
+    public String wrapKey(SecretKey key, PublicKeyBundle peer, String context) {
+        if (peer.supportsX25519()) {
+            SecretKey wrappingKey = CryptoUtils.deriveSharedKey(
+                    x25519KeyPair.getPrivate(), peer.getX25519(), context, WRAP_KEY_INFO);
+            return X25519_WRAP_PREFIX + Base64.getEncoder().encodeToString(
+                    CryptoEngine.seal(wrappingKey, key.getEncoded(), context.getBytes(StandardCharsets.UTF_8)));
+        }
+        if (peer.getRsa() == null) {
+            throw new IllegalArgumentException("Peer has no usable public key");
+        }
+        return RSA_WRAP_PREFIX + CryptoUtils.encryptAESKey(key, peer.getRsa());
+    }
+
+    /**
+     * Unwrap a key produced by {@link #wrapKey}. Values without a prefix are legacy RSA wraps.
+     * 
+     * @param wrapped The wrapped key
+     * @param sender The sender's published keys (only needed for X25519 wraps)
+     * @param context The context the key was wrapped with
+     * @return The unwrapped AES key
+     */
+    public SecretKey unwrapKey(String wrapped, PublicKeyBundle sender, String context) {
+        if (wrapped.startsWith(X25519_WRAP_PREFIX)) {
+            if (sender == null || !sender.supportsX25519()) {
+                throw new IllegalArgumentException("Sender X25519 key required to unwrap");
+            }
+            SecretKey wrappingKey = CryptoUtils.deriveSharedKey(
+                    x25519KeyPair.getPrivate(), sender.getX25519(), context, WRAP_KEY_INFO);
+            byte[] sealed = Base64.getDecoder().decode(wrapped.substring(X25519_WRAP_PREFIX.length()));
+            return new SecretKeySpec(CryptoEngine.open(wrappingKey, sealed, context.getBytes(StandardCharsets.UTF_8)), "AES");
+        }
+        String rsaWrapped = wrapped.startsWith(RSA_WRAP_PREFIX) ? wrapped.substring(RSA_WRAP_PREFIX.length()) : wrapped;
+        return CryptoUtils.decryptAESKey(rsaWrapped, rsaKeyPair.getPrivate());
+    }
+}
@@ -0,0 +1,86 @@
+package com.e2ee.chat.frontend.crypto;
+
+import java.security.PublicKey;
+import java.util.Base64;
+
+/**
+ * Public identity keys of a user as published in UserProfile.publicKey.
+ *
+ * Versioned format: {@code v2:x25519=<raw 32-byte key, Base64>;rsa=<X.509, Base64>}.
+ * A value without the version prefix is a legacy bare RSA key. Unknown algorithms are
+ * skipped, so peers negotiate on the strongest algorithm both sides understand.
+ */
+public final class PublicKeyBundle {
+    private static final String VERSION_PREFIX = "v2:";
+
+    private final PublicKey rsa;
+    private final PublicKey x25519;
+
+    public PublicKeyBundle(PublicKey rsa, PublicKey x25519) {
+        this.rsa = rsa;
+        this.x25519 = x25519;
+    }
+
+    /**
+     * Parse a published key value
+     * 
+     * @param encoded Value of UserProfile.publicKey
+     * @return The bundle, or null if no key has been published
+     */
+    public static PublicKeyBundle parse(String encoded) {
+        if (encoded == null || encoded.isBlank() || "null".equals(encoded)) {
+            return null;
+        }
+        if (!encoded.startsWith(VERSION_PREFIX)) {
+            // Legacy clients publish a bare Base64 RSA key
+            return new PublicKeyBundle(CryptoUtils.decodePublicKey(encoded), null);
+        }
+        PublicKey rsa = null;
+        PublicKey x25519 = null;
+        for (String part : encoded.substring(VERSION_PREFIX.length()).split(";")) {
+            int separator = part.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String algorithm = part.substring(0, separator);
+            String value = part.substring(separator + 1);
+            switch (algorithm) {
+                case "x25519" -> x25519 = CryptoUtils.decodeX25519PublicKey(value);
+                case "rsa" -> rsa = CryptoUtils.decodePublicKey(value);
+                default -> {
+                    // Newer algorithm we do not understand yet
+                }
+            }
+        }
+        return new PublicKeyBundle(rsa, x25519);
+    }
+
+    /**
+     * Encode our public keys for publishing
+     */
+    public static String encode(PublicKey rsa, PublicKey x25519) {
+        StringBuilder sb = new StringBuilder(VERSION_PREFIX);
+        if (x25519 != null) {
+            sb.append("x25519=").append(CryptoUtils.encodeX25519PublicKey(x25519));
+        }
+        if (rsa != null) {
+            if (x25519 != null) {
+                sb.append(';');
+            }
+            sb.append("rsa=").append(Base64.getEncoder().encodeToString(rsa.getEncoded()));
+        }
+        return sb.toString();
+    }
+
+    public boolean supportsX25519() {
+        return x25519 != null;
+    }
+
+    public PublicKey getRsa() {
+        return rsa;
+    }
+
+    public PublicKey getX25519() {
+        return x25519;
+    }
+}
@@ -0,0 +1,478 @@
+package com.e2ee.chat.frontend.crypto;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sender-key state for group chats.
+ *
+ * Every member owns one symmetric chain key per group and hands it to each other member
+ * once, wrapped for that member via {@link IdentityKeys#wrapKey} (X25519, or RSA for legacy
+ * peers). Each message then costs a single AES-GCM
+ * encryption with a key ratcheted from the chain (HMAC-SHA256), whatever the group size.
+ *
+ * Wire formats (all carried in the existing message content field):
+ * <ul>
+ *   <li>message:      SK1:keyId:iteration:sealed (nonce and ciphertext, see {@link CryptoEngine})</li>
+ *   <li>distribution: SKD1:groupId:keyId:iteration:wrappedChainKey</li>
+ *   <li>key request:  SKR1:groupId</li>
+ * </ul>
+ *
+ * A receiving chain keeps the chain key it was distributed with, so any later message
+ * (history, a re-fetched page) can be decrypted again, not just once. Those starting
+ * points are what {@link #exportChains()} hands to the keystore to survive a restart.
+ */
+public class SenderKeyStore {
+    public static final String MESSAGE_PREFIX = "SK1:";
+    public static final String DISTRIBUTION_PREFIX = "SKD1:";
+    public static final String REQUEST_PREFIX = "SKR1:";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int CHAIN_KEY_SIZE = 32;
+    private static final int MAX_SKIPPED_KEYS = 2000;
+    // Derived message keys kept per receiving chain; older ones are derived again from the start
+    private static final int MAX_CACHED_KEYS = 2000;
+
+    private static final byte[] MESSAGE_KEY_SEED = {0x01};
+    private static final byte[] CHAIN_KEY_SEED = {0x02};
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final String ownId;
+    private final SecureRandom secureRandom = CryptoEngine.secureRandom();
+
+    // groupId -> our own sending chain
+    private final Map<String, SenderChain> ownChains = new HashMap<>();
+    // groupId|senderId|keyId -> receiving chain of another member (and a copy of our own)
+    private final Map<String, SenderChain> receivedChains = new HashMap<>();
+    // groupId -> members that already hold our current chain key
+    private final Map<String, Set<String>> distributedTo = new HashMap<>();
+    // groupId|senderId|keyId of chains we already asked the sender for
+    private final Set<String> requested = new HashSet<>();
+    private Runnable changeListener = () -> { };
+
+    public SenderKeyStore(String ownId) {
+        this.ownId = ownId;
+    }
+
+    /**
+     * @param ownId Our profile ID
+     * @param chains Receiving chains persisted by an earlier session, see {@link #exportChains()}
+     */
+    public SenderKeyStore(String ownId, Map<String, String> chains) {
+        this(ownId);
+        chains.forEach((name, state) -> {
+            try {
+                String[] parts = state.split(":", 2);
+                String keyId = name.substring(name.lastIndexOf('|') + 1);
+                receivedChains.put(name, new SenderChain(keyId, Base64.getDecoder().decode(parts[1]), Integer.parseInt(parts[0])));
+            } catch (RuntimeException e) {
+                System.err.println("[SENDER_KEY] Skipping unreadable stored chain " + name + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Called whenever a receiving chain is added, so it can be persisted
+     */
+    public synchronized void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * @return Every receiving chain as groupId|senderId|keyId -> firstIteration:chainKey
+     */
+    public synchronized Map<String, String> exportChains() {
+        Map<String, String> chains = new HashMap<>();
+        Base64.Encoder encoder = Base64.getEncoder();
+        receivedChains.forEach((name, chain) ->
+                chains.put(name, chain.firstIteration + ":" + encoder.encodeToString(chain.firstChainKey)));
+        return chains;
+    }
+
+    public static boolean isGroupMessage(String content) {
+        return content != null && content.startsWith(MESSAGE_PREFIX);
+    }
+
+    public static boolean isDistribution(String content) {
+        return content != null && content.startsWith(DISTRIBUTION_PREFIX);
+    }
+
+    public static boolean isKeyRequest(String content) {
+        return content != null && content.startsWith(REQUEST_PREFIX);
+    }
+
+    public static String keyRequest(String groupId) {
+        return REQUEST_PREFIX + groupId;
+    }
+
+    public static String requestedGroup(String content) {
+        return content.substring(REQUEST_PREFIX.length());
+    }
+
+    /**
+     * @return ID of the chain carried by an SKD1 distribution
+     */
+    public static String distributedKeyId(String content) {
+        String[] parts = content.substring(DISTRIBUTION_PREFIX.length()).split(":", 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed sender key distribution");
+        }
+        return parts[1];
+    }
+
+    /**
+     * Record that we are asking for a missing chain. Every message of that chain fails the
+     * same way (a history page holds many), but one request per chain is enough.
+     *
+     * @return true the first time for this chain, i.e. when the request should be sent
+     */
+    public synchronized boolean markRequested(MissingSenderKeyException missing) {
+        return requested.add(chainKey(missing.getGroupId(), missing.getSenderId(), missing.getKeyId()));
+    }
+
+    /**
+     * Encrypt a group message with the next key of our sending chain
+     *
+     * @param groupId The group chat ID
+     * @param plaintext The message text
+     * @return Envelope to send as message content
+     */
+    public synchronized String encrypt(String groupId, String plaintext) {
+        SenderChain chain = ownChain(groupId);
+        int iteration = chain.iteration;
+        byte[] messageKey = chain.next();
+        try {
+            byte[] sealed = CryptoEngine.seal(new SecretKeySpec(messageKey, "AES"),
+                    plaintext.getBytes(StandardCharsets.UTF_8), associatedData(groupId, chain.keyId, iteration));
+            return MESSAGE_PREFIX + chain.keyId + ":" + iteration + ":" + Base64.getEncoder().encodeToString(sealed);
+        } finally {
+            Arrays.fill(messageKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Decrypt a group message envelope
+     *
+     * @param groupId The group chat ID
+     * @param senderId Profile ID of the sender
+     * @param envelope The SK1 envelope
+     * @return The plaintext
+     * @throws MissingSenderKeyException if we do not hold the sender's current chain
+     */
+    public String decrypt(String groupId, String senderId, String envelope) {
+        String[] parts = envelope.substring(MESSAGE_PREFIX.length()).split(":");
+        if (parts.length != 3 && parts.length != 4) {
+            throw new IllegalArgumentException("Malformed group message envelope");
+        }
+        String keyId = parts[0];
+        int iteration = Integer.parseInt(parts[1]);
+
+        // Only the ratchet step needs the lock; AES runs outside it so history pages decrypt in parallel
+        byte[] messageKey;
+        synchronized (this) {
+            SenderChain chain = receivedChains.get(chainKey(groupId, senderId, keyId));
+            if (chain == null) {
+                throw new MissingSenderKeyException(groupId, senderId, keyId);
+            }
+            messageKey = chain.keyFor(iteration);
+        }
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            // Early envelopes carried iv and ciphertext as separate fields
+            byte[] sealed = parts.length == 3
+                    ? decoder.decode(parts[2])
+                    : concat(decoder.decode(parts[2]), decoder.decode(parts[3]));
+            byte[] plaintext = CryptoEngine.open(new SecretKeySpec(messageKey, "AES"), sealed,
+                    associatedData(groupId, keyId, iteration));
+            return new String(plaintext, StandardCharsets.UTF_8);
+        } finally {
+            Arrays.fill(messageKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Capture our chain state for every member that does not hold it yet and mark them as
+     * distributed. Call it before {@link #encrypt} for the next message: the captured
+     * iteration is the one that message will use, so the members can decrypt it. If a member
+     * has left since the last distribution the chain is rotated first, so every remaining
+     * member needs the new one. Wrapping (and fetching the members' keys) can happen later,
+     * off the UI thread, via {@link PendingDistribution#wrapFor}.
+     *
+     * @param groupId The group chat ID
+     * @param participants Current participant profile IDs
+     * @return The members to send a distribution to, with the chain state to wrap for them
+     */
+    public synchronized PendingDistribution prepareDistribution(String groupId, Collection<String> participants) {
+        Set<String> sent = distributedTo.computeIfAbsent(groupId, id -> new HashSet<>());
+        if (!participants.containsAll(sent)) {
+            rotate(groupId);
+            sent = distributedTo.get(groupId);
+        }
+        List<String> members = new ArrayList<>();
+        for (String participant : participants) {
+            if (participant != null && !participant.equals(ownId) && !sent.contains(participant)) {
+                members.add(participant);
+            }
+        }
+        if (members.isEmpty()) {
+            return new PendingDistribution(groupId, null, null, 0, members);
+        }
+        SenderChain chain = ownChain(groupId);
+        sent.addAll(members);
+        return new PendingDistribution(groupId, chain.keyId, chain.chainKey.clone(), chain.iteration, members);
+    }
+
+    /**
+     * Forget that a member holds our chain, so the next send distributes it again
+     */
+    public synchronized void resetDistribution(String groupId, String memberId) {
+        Set<String> sent = distributedTo.get(groupId);
+        if (sent != null) {
+            sent.remove(memberId);
+        }
+    }
+
+    /**
+     * Install a chain key received from another member
+     *
+     * @param senderId Profile ID of the distributing member
+     * @param content SKD1 content
+     * @param identityKeys Our identity keys
+     * @param senderKeys The sender's published keys (may be null for legacy RSA wraps)
+     * @return The group chat ID the key belongs to
+     */
+    public synchronized String processDistribution(String senderId, String content,
+                                                   IdentityKeys identityKeys, PublicKeyBundle senderKeys) {
+        // The wrapped key is algorithm-prefixed and may itself contain ':'
+        String[] parts = content.substring(DISTRIBUTION_PREFIX.length()).split(":", 4);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Malformed sender key distribution");
+        }
+        String groupId = parts[0];
+        String keyId = parts[1];
+        int iteration = Integer.parseInt(parts[2]);
+
+        SenderChain existing = receivedChains.get(chainKey(groupId, senderId, keyId));
+        if (existing != null && existing.firstIteration <= iteration) {
+            // Re-sent distribution of a chain we already track from an earlier point
+            return groupId;
+        }
+        SecretKey chainKey = identityKeys.unwrapKey(parts[3], senderKeys, groupId);
+        receivedChains.put(chainKey(groupId, senderId, keyId), new SenderChain(keyId, chainKey.getEncoded(), iteration));
+        changeListener.run();
+        return groupId;
+    }
+
+    private SenderChain ownChain(String groupId) {
+        SenderChain chain = ownChains.get(groupId);
+        if (chain == null) {
+            chain = rotate(groupId);
+        }
+        return chain;
+    }
+
+    private SenderChain rotate(String groupId) {
+        byte[] seed = new byte[CHAIN_KEY_SIZE];
+        secureRandom.nextBytes(seed);
+        byte[] id = new byte[8];
+        secureRandom.nextBytes(id);
+        SenderChain chain = new SenderChain(HEX.formatHex(id), seed, 0);
+        ownChains.put(groupId, chain);
+        // Keep a receiving copy so our own messages (history, echoes) can be decrypted too
+        receivedChains.put(chainKey(groupId, ownId, chain.keyId), chain.copy());
+        distributedTo.put(groupId, new HashSet<>());
+        changeListener.run();
+        return chain;
+    }
+
+    private static String chainKey(String groupId, String senderId, String keyId) {
+        return groupId + "|" + senderId + "|" + keyId;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static byte[] associatedData(String groupId, String keyId, int iteration) {
+        return (groupId + ":" + keyId + ":" + iteration).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] hmac(byte[] key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+            return mac.doFinal(data);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to derive sender key", e);
+        }
+    }
+
+    /**
+     * Symmetric ratchet: each step yields one message key and replaces the chain key,
+     * so a leaked chain key does not expose messages before the chain's first iteration.
+     * Message keys handed out for decryption are copies; the chain keeps its own.
+     */
+    private static class SenderChain {
+        private final String keyId;
+        private final int firstIteration;
+        private final byte[] firstChainKey;
+        private byte[] chainKey;
+        private int iteration;
+        // Least recently used first
+        private final Map<Integer, byte[]> messageKeys = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                return size() > MAX_CACHED_KEYS;
+            }
+        };
+
+        SenderChain(String keyId, byte[] chainKey, int iteration) {
+            this.keyId = keyId;
+            this.firstIteration = iteration;
+            this.firstChainKey = chainKey.clone();
+            this.chainKey = chainKey;
+            this.iteration = iteration;
+        }
+
+        byte[] next() {
+            byte[] messageKey = hmac(chainKey, MESSAGE_KEY_SEED);
+            byte[] nextChainKey = hmac(chainKey, CHAIN_KEY_SEED);
+            Arrays.fill(chainKey, (byte) 0);
+            chainKey = nextChainKey;
+            iteration++;
+            return messageKey;
+        }
+
+        byte[] keyFor(int target) {
+            if (target < firstIteration) {
+                throw new IllegalStateException("Message key " + target + " predates the distributed chain");
+            }
+            byte[] cached = messageKeys.get(target);
+            if (cached != null) {
+                return cached.clone();
+            }
+            if (target < iteration) {
+                return rederive(target);
+            }
+            if (target - iteration > MAX_SKIPPED_KEYS) {
+                throw new IllegalStateException("Too many skipped group messages");
+            }
+            byte[] messageKey;
+            do {
+                int step = iteration;
+                messageKey = next();
+                messageKeys.put(step, messageKey);
+            } while (iteration <= target);
+            return messageKey.clone();
+        }
+
+        /**
+         * Walk the ratchet again from the first chain key, for a key that fell out of the cache
+         */
+        private byte[] rederive(int target) {
+            byte[] key = firstChainKey.clone();
+            for (int step = firstIteration; step < target; step++) {
+                byte[] nextKey = hmac(key, CHAIN_KEY_SEED);
+                Arrays.fill(key, (byte) 0);
+                key = nextKey;
+            }
+            byte[] messageKey = hmac(key, MESSAGE_KEY_SEED);
+            Arrays.fill(key, (byte) 0);
+            messageKeys.put(target, messageKey);
+            return messageKey.clone();
+        }
+
+        SenderChain copy() {
+            return new SenderChain(keyId, chainKey.clone(), iteration);
+        }
+    }
+
+    /**
+     * Our chain key at one iteration, captured by {@link #prepareDistribution} for the members
+     * that still need it. A member whose distribution cannot be sent must be handed to
+     * {@link #resetDistribution}, so the next send tries again.
+     */
+    public static final class PendingDistribution {
+        private final String groupId;
+        private final String keyId;
+        private final byte[] chainKey;
+        private final int iteration;
+        private final List<String> members;
+
+        private PendingDistribution(String groupId, String keyId, byte[] chainKey, int iteration, List<String> members) {
+            this.groupId = groupId;
+            this.keyId = keyId;
+            this.chainKey = chainKey;
+            this.iteration = iteration;
+            this.members = members;
+        }
+
+        public boolean isEmpty() {
+            return members.isEmpty();
+        }
+
+        public List<String> getMembers() {
+            return members;
+        }
+
+        /**
+         * Wrap the captured chain state for one member
+         *
+         * @param memberId Recipient profile ID
+         * @param identityKeys Our identity keys
+         * @param memberKeys Recipient's published keys
+         * @return SKD1 content to send to the member
+         */
+        public String wrapFor(String memberId, IdentityKeys identityKeys, PublicKeyBundle memberKeys) {
+            if (!members.contains(memberId)) {
+                throw new IllegalArgumentException(memberId + " is not part of this distribution");
+            }
+            String wrapped = identityKeys.wrapKey(new SecretKeySpec(chainKey, "AES"), memberKeys, groupId);
+            return DISTRIBUTION_PREFIX + groupId + ":" + keyId + ":" + iteration + ":" + wrapped;
+        }
+    }
+
+    /**
+     * Thrown when a group message arrives from a member whose chain key we do not hold yet
+     */
+    public static class MissingSenderKeyException extends RuntimeException {
+        private final String groupId;
+        private final String senderId;
+        private final String keyId;
+
+        public MissingSenderKeyException(String groupId, String senderId, String keyId) {
+            super("No sender key " + keyId + " for " + senderId + " in group " + groupId);
+            this.groupId = groupId;
+            this.senderId = senderId;
+            this.keyId = keyId;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getSenderId() {
+            return senderId;
+        }
+
+        public String getKeyId() {
+            return keyId;
+        }
+    }
+}
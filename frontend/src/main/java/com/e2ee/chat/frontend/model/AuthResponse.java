@@ -0,0 +1,46 @@
+package com.e2ee.chat.frontend.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Response of /api/auth/login and /api/auth/register
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AuthResponse {
+    private String token;
+    private String username;
+    private String displayName;
+    private String publicKey; // Key bundle the server currently publishes for us
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public void setDisplayName(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getPublicKey() {
+        return publicKey;
+    }
+
+    public void setPublicKey(String publicKey) {
+        this.publicKey = publicKey;
+    }
+}
@@ -7,6 +7,7 @@ import javafx.beans.property.StringProperty;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class Chat {
     private String chatId;
@@ -189,7 +190,43 @@ public class Chat {
     public void removeParticipant(String userId) {
         if (participants != null && userId != null) participants.remove(userId);
     }
-    
+
+    /**
+     * Copy the server-side fields of a fresh copy of this chat into this instance, keeping
+     * local state (messages, resolved username, online status) intact.
+     *
+     * @return true if anything shown in the chat list changed
+     */
+    public boolean updateFrom(Chat server) {
+        boolean changed = !Objects.equals(updatedAt, server.updatedAt)
+                || !Objects.equals(groupName, server.groupName)
+                || !Objects.equals(chatType, server.chatType)
+                || !Objects.equals(participants, server.participants);
+        participants = server.participants;
+        createdAt = server.createdAt;
+        updatedAt = server.updatedAt;
+        // Direct field write: setTargetUserId would reset the resolved username
+        targetUserId = server.targetUserId;
+        targetPublicKey = server.targetPublicKey;
+        ownerId = server.ownerId;
+        groupName = server.groupName;
+        chatType = server.chatType;
+        admins = server.admins;
+
+        String serverName = server.getTargetUsername();
+        if (serverName != null && !serverName.isEmpty() && !serverName.equals(server.targetUserId)
+                && !serverName.equals(getTargetUsername())) {
+            setTargetUsername(serverName);
+            changed = true;
+        }
+        String serverPreview = server.getLastMessagePreview();
+        if (serverPreview != null && !serverPreview.isEmpty() && !serverPreview.equals(getLastMessagePreview())) {
+            setLastMessagePreview(serverPreview);
+            changed = true;
+        }
+        return changed;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
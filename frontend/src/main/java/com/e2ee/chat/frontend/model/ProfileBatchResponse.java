@@ -0,0 +1,42 @@
+package com.e2ee.chat.frontend.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response of POST /api/profile/batch
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProfileBatchResponse {
+    private List<UserProfile> profiles = new ArrayList<>();
+    private Map<String, String> etags = new HashMap<>(); // profileId -> ETag
+    private List<String> notModified = new ArrayList<>(); // IDs whose ETag we sent is still current
+
+    public List<UserProfile> getProfiles() {
+        return profiles;
+    }
+
+    public void setProfiles(List<UserProfile> profiles) {
+        this.profiles = profiles;
+    }
+
+    public Map<String, String> getEtags() {
+        return etags;
+    }
+
+    public void setEtags(Map<String, String> etags) {
+        this.etags = etags;
+    }
+
+    public List<String> getNotModified() {
+        return notModified;
+    }
+
+    public void setNotModified(List<String> notModified) {
+        this.notModified = notModified;
+    }
+}
@@ -1,20 +1,33 @@
 package com.e2ee.chat.frontend.service;
 
+import com.e2ee.chat.frontend.model.AuthResponse;
+import com.e2ee.chat.frontend.model.ProfileBatchResponse;
 import com.e2ee.chat.frontend.model.UserProfile;
-import com.e2ee.chat.frontend.crypto.CryptoUtils;
+import com.e2ee.chat.frontend.crypto.ClientKeyStore;
+import com.e2ee.chat.frontend.crypto.IdentityKeys;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AuthService {
     public static final String API_BASE_URL = "http://localhost:8080/api";
@@ -25,15 +38,26 @@ public class AuthService {
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
     
-    private String authToken;
-    private String currentUsername;
-    private KeyPair keyPair;
+    private volatile String authToken;
+    private volatile String currentUsername;
+    private volatile ClientKeyStore keyStore;
+    // Why the last login failed after the server accepted it, for the login screen
+    private volatile String loginError;
+    private volatile CompletableFuture<UserProfile> currentProfile;
+    private volatile StartupOrchestrator startup;
+    
+    // Request metrics; with HTTP/2 every request after the first shares one connection
+    private final AtomicLong requestsSent = new AtomicLong();
+    private final AtomicLong http2Responses = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final AtomicLong totalLatencyMicros = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
     
     public AuthService() {
-        // Generate RSA key pair for E2EE
-        this.keyPair = CryptoUtils.generateKeyPair();
-        
+        // HTTP/2 multiplexes concurrent requests over one connection (h2c upgrade on plain http)
         this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
             .connectTimeout(Duration.ofSeconds(10))
             .build();
             
@@ -41,63 +65,187 @@ public class AuthService {
         this.objectMapper.findAndRegisterModules();
     }
     
-    public boolean login(String username, String password) {
+    /**
+     * Send a request without blocking; the JSON body is parsed straight from the response
+     * stream into the given type. Cancelling the returned future aborts the exchange.
+     *
+     * @param type Response type, or null to ignore the body
+     * @return Future failing with a RuntimeException on a non-2xx status
+     */
+    private <T> CompletableFuture<T> sendAsync(HttpRequest request, JavaType type) {
+        long start = System.nanoTime();
+        requestsSent.incrementAndGet();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        CompletableFuture<HttpResponse<InputStream>> exchange =
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<T> result = exchange.thenApply(response -> {
+            if (response.version() == HttpClient.Version.HTTP_2) {
+                http2Responses.incrementAndGet();
+            }
+            try (InputStream body = response.body()) {
+                if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                    throw new RuntimeException("HTTP " + response.statusCode() + " from " + request.uri().getPath());
+                }
+                return type == null ? null : objectMapper.<T>readValue(body, type);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            inFlight.decrementAndGet();
+            totalLatencyMicros.addAndGet((System.nanoTime() - start) / 1000);
+            if (error != null) {
+                failedRequests.incrementAndGet();
+                if (result.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+    
+    private <T> CompletableFuture<T> sendAsync(HttpRequest request, Class<T> type) {
+        return sendAsync(request, type != null ? objectMapper.constructType(type) : null);
+    }
+    
+    private HttpRequest.Builder authorized(String url) {
+        return HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .header("Authorization", "Bearer " + authToken);
+    }
+    
+    private HttpRequest.BodyPublisher json(Object body) {
         try {
-            // Create JSON data
-            Map<String, String> data = new HashMap<>();
-            data.put("username", username);
-            data.put("password", password);
-            
-            String jsonData = objectMapper.writeValueAsString(data);
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(LOGIN_URL))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(jsonData))
-                .build();
-                
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Summary of the HTTP client's request metrics
+     */
+    public String getHttpStats() {
+        long sent = requestsSent.get();
+        return String.format("HTTP[requests=%d, http2=%d, failed=%d, inFlight=%d, peakInFlight=%d, avgLatency=%.1fms]",
+            sent, http2Responses.get(), failedRequests.get(), inFlight.get(), peakInFlight.get(),
+            sent == 0 ? 0.0 : totalLatencyMicros.get() / 1000.0 / sent);
+    }
+    
+    /**
+     * Log in and unlock the local keystore. The keystore is opened (PBKDF2, or key generation
+     * on the first login on this device) in parallel with the login request and only written
+     * once the server accepted the password. Publishing the public key bundle (if needed)
+     * continues in the background so it overlaps with the WebSocket connect.
+     *
+     * @return Future completing with false on bad credentials or any failure
+     */
+    public CompletableFuture<Boolean> loginAsync(String username, String password) {
+        Map<String, String> data = new HashMap<>();
+        data.put("username", username);
+        data.put("password", password);
+        
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(LOGIN_URL))
+            .header("Content-Type", "application/json")
+            .POST(json(data))
+            .build();
+        
+        StartupOrchestrator startup = startup();
+        // Identity keys come from the local keystore; only generated on first login on this device
+        CompletableFuture<ClientKeyStore> opening = startup.phase("keystore.open",
+            () -> ClientKeyStore.open(username, password.toCharArray()));
+        CompletableFuture<AuthResponse> authenticating = startup.track("login.request", sendAsync(request, AuthResponse.class));
+        
+        loginError = null;
+        return authenticating.thenCombine(opening, (response, unlocked) -> {
+            if (unlocked.isNewlyCreated()) {
+                unlocked.save();
+            }
+            this.authToken = response.getToken();
+            this.currentUsername = username;
+            this.keyStore = unlocked;
+            this.currentProfile = null;
             
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                JsonNode root = objectMapper.readTree(response.body());
-                this.authToken = root.get("token").asText();
-                this.currentUsername = username;
-                
-                // Store the public key in the user's profile
+            // Publish our keys only if the server does not already have this exact bundle
+            if (unlocked.isNewlyCreated() || !getIdentityKeys().publicKeyBundle().equals(response.getPublicKey())) {
                 updateUserPublicKey();
-                
-                return true;
+            }
+            return true;
+        }).exceptionally(e -> {
+            System.err.println("[AuthService] Login failed: " + e.getMessage());
+            // A wrong password also fails the keystore; only report it once the server accepted the login
+            if (e.getCause() instanceof ClientKeyStore.UnreadableKeyStoreException unreadable
+                    && authenticating.isDone() && !authenticating.isCompletedExceptionally()) {
+                loginError = "The keys stored on this device (" + unreadable.getFile() + ") could not be opened "
+                    + "with this password. The file was left untouched; restore it or move it away to start "
+                    + "with new keys.";
             }
             return false;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+        });
+    }
+    
+    /**
+     * @return Why the last login failed although the credentials were accepted, or null
+     */
+    public String getLoginError() {
+        return loginError;
+    }
+    
+    /**
+     * Open the HTTP/2 connection to the server ahead of the first real request (while the
+     * login screen is shown). Any status is fine; only the connection matters.
+     */
+    public CompletableFuture<Void> warmUpAsync() {
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(API_BASE_URL))
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .<Void>thenApply(response -> null)
+            .exceptionally(e -> {
+                System.err.println("[AuthService] Connection warm-up failed: " + e.getMessage());
+                return null;
+            });
+    }
+    
+    public void setStartup(StartupOrchestrator startup) {
+        this.startup = startup;
+    }
+    
+    private StartupOrchestrator startup() {
+        StartupOrchestrator current = startup;
+        if (current == null) {
+            current = new StartupOrchestrator(TaskScheduler.shared());
+            startup = current;
         }
+        return current;
     }
     
-    public boolean register(String username, String password, String email) {
-        try {
-            // Create JSON data
-            Map<String, String> data = new HashMap<>();
-            data.put("username", username);
-            data.put("password", password);
-            // Email isn't defined in AuthRequest, need to modify backend or remove this
-            
-            String jsonData = objectMapper.writeValueAsString(data);
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(REGISTER_URL))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(jsonData))
-                .build();
-                
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            return response.statusCode() >= 200 && response.statusCode() < 300;
-        } catch (Exception e) {
-            e.printStackTrace();
+    public boolean login(String username, String password) {
+        return loginAsync(username, password).join();
+    }
+    
+    public CompletableFuture<Boolean> registerAsync(String username, String password, String email) {
+        Map<String, String> data = new HashMap<>();
+        data.put("username", username);
+        data.put("password", password);
+        // Email isn't defined in AuthRequest, need to modify backend or remove this
+        
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(REGISTER_URL))
+            .header("Content-Type", "application/json")
+            .POST(json(data))
+            .build();
+        
+        return sendAsync(request, (JavaType) null).thenApply(ignored -> true).exceptionally(e -> {
+            System.err.println("[AuthService] Registration failed: " + e.getMessage());
             return false;
-        }
+        });
+    }
+    
+    public boolean register(String username, String password, String email) {
+        return registerAsync(username, password, email).join();
     }
     
     /**
@@ -105,71 +253,55 @@ public class AuthService {
      * @return UserProfile object for the current user
      */
     public UserProfile getUserProfile() {
+        return getCurrentProfileAsync().join();
+    }
+    
+    /**
+     * The current user's profile, fetched once per login (started during startup, in parallel
+     * with the WebSocket connect) and refreshed after a profile update
+     */
+    public CompletableFuture<UserProfile> getCurrentProfileAsync() {
         if (currentUsername == null) {
             throw new IllegalStateException("No user is currently logged in");
         }
-        return getUserProfile(currentUsername);
+        CompletableFuture<UserProfile> profile = currentProfile;
+        // A failed fetch yields null; fetch again on the next call
+        if (profile == null || (profile.isDone() && profile.join() == null)) {
+            profile = getUserProfileAsync(currentUsername);
+            currentProfile = profile;
+        }
+        return profile;
     }
     
     public UserProfile getUserProfile(String username) {
-        try {
-            System.out.println("[AuthService] Retrieving profile for username: " + username);
-            System.out.println("[AuthService] Using auth token: " + (authToken != null ? authToken.substring(0, 10) + "..." : "null"));
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(PROFILE_URL + "/" + username))
-                .header("Authorization", "Bearer " + authToken)
-                .GET()
-                .build();
-                
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            System.out.println("[AuthService] Profile response status: " + response.statusCode());
-            
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                System.out.println("[AuthService] Profile response body: " + response.body());
-                JsonNode root = objectMapper.readTree(response.body());
-                UserProfile profile = new UserProfile();
-                profile.setUsername(root.get("username").asText());
-                profile.setDisplayName(root.has("displayName") ? root.get("displayName").asText() : "");
-                profile.setBio(root.has("bio") ? root.get("bio").asText() : "");
-                profile.setAvatarUrl(root.has("avatarUrl") ? root.get("avatarUrl").asText() : "");
-                profile.setStatus(root.has("status") ? root.get("status").asText() : "");
-                profile.setPublicKey(root.has("publicKey") ? root.get("publicKey").asText() : "");
-                profile.setEmail(root.has("email") ? root.get("email").asText() : "");
-                System.out.println("[AuthService] Successfully parsed profile for: " + profile.getUsername());
-                return profile;
-            } else {
-                System.err.println("[AuthService] Error retrieving profile. Status code: " + response.statusCode() + ", Response: " + response.body());
-            }
-            return null;
-        } catch (Exception e) {
+        return getUserProfileAsync(username).join();
+    }
+    
+    public CompletableFuture<UserProfile> getUserProfileAsync(String username) {
+        System.out.println("[AuthService] Retrieving profile for username: " + username);
+        HttpRequest request = authorized(PROFILE_URL + "?username=" + URLEncoder.encode(username, StandardCharsets.UTF_8))
+            .GET()
+            .build();
+        return sendAsync(request, UserProfile.class).exceptionally(e -> {
             System.err.println("[AuthService] Exception retrieving profile: " + e.getMessage());
-            e.printStackTrace();
             return null;
-        }
+        });
     }
     
     private void updateUserPublicKey() {
-        try {
-            String publicKeyBase64 = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
-            
-            Map<String, String> profileUpdate = new HashMap<>();
-            profileUpdate.put("publicKey", publicKeyBase64);
-            
-            String jsonBody = objectMapper.writeValueAsString(profileUpdate);
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(PROFILE_URL))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + authToken)
-                .PUT(HttpRequest.BodyPublishers.ofString(jsonBody))
-                .build();
-                
-            httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        // Versioned bundle so peers can negotiate X25519 and fall back to RSA
+        String publicKeyBundle = getIdentityKeys().publicKeyBundle();
+        
+        // Dedicated endpoint: PUT /profile only updates display fields and would drop the key
+        HttpRequest request = authorized(PROFILE_URL + "/public-key")
+            .header("Content-Type", "text/plain")
+            .PUT(HttpRequest.BodyPublishers.ofString(publicKeyBundle))
+            .build();
+        
+        sendAsync(request, (JavaType) null).exceptionally(e -> {
+            System.err.println("[AuthService] Failed to publish public key: " + e.getMessage());
+            return null;
+        });
     }
     
     /**
@@ -180,37 +312,26 @@ public class AuthService {
      */
     public void updateProfile(UserProfile updatedProfile, java.util.function.Consumer<UserProfile> onSuccess, 
                              java.util.function.Consumer<String> onError) {
+        HttpRequest request;
         try {
-            String jsonData = objectMapper.writeValueAsString(updatedProfile);
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(PROFILE_URL))
+            request = authorized(PROFILE_URL)
                 .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + authToken)
-                .PUT(HttpRequest.BodyPublishers.ofString(jsonData))
+                .PUT(json(updatedProfile))
                 .build();
-                
-            httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(response -> {
-                    if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                        try {
-                            UserProfile profile = objectMapper.readValue(response.body(), UserProfile.class);
-                            return profile;
-                        } catch (Exception e) {
-                            throw new RuntimeException("Failed to parse profile response: " + e.getMessage());
-                        }
-                    } else {
-                        throw new RuntimeException("Failed to update profile: " + response.statusCode() + " - " + response.body());
-                    }
-                })
-                .thenAccept(onSuccess)
-                .exceptionally(e -> {
-                    onError.accept(e.getMessage());
-                    return null;
-                });
         } catch (Exception e) {
             onError.accept("Error preparing profile update: " + e.getMessage());
+            return;
         }
+        sendAsync(request, UserProfile.class)
+            .thenApply(updated -> {
+                currentProfile = CompletableFuture.completedFuture(updated);
+                return updated;
+            })
+            .thenAccept(onSuccess)
+            .exceptionally(e -> {
+                onError.accept(e.getMessage());
+                return null;
+            });
     }
     
     public String getAuthToken() {
@@ -222,7 +343,18 @@ public class AuthService {
     }
     
     public KeyPair getKeyPair() {
-        return keyPair;
+        return getIdentityKeys().getRsaKeyPair();
+    }
+    
+    public IdentityKeys getIdentityKeys() {
+        if (keyStore == null) {
+            throw new IllegalStateException("No keystore unlocked, log in first");
+        }
+        return keyStore.getIdentityKeys();
+    }
+    
+    public ClientKeyStore getKeyStore() {
+        return keyStore;
     }
     
     /**
@@ -231,30 +363,21 @@ public class AuthService {
      * @return Array of UserProfile objects matching the query
      */
     public UserProfile[] searchUsers(String query) {
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(API_BASE_URL + "/users/search?q=" + 
-                    java.net.URLEncoder.encode(query, StandardCharsets.UTF_8)))
-                .header("Authorization", "Bearer " + authToken)
-                .GET()
-                .build();
-                
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            // Debug log the response body
-            System.out.println("Search response: " + response.body());
-            
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                return objectMapper.readValue(
-                    response.body(), 
-                    objectMapper.getTypeFactory().constructArrayType(UserProfile.class)
-                );
-            }
-            return new UserProfile[0];
-        } catch (Exception e) {
-            e.printStackTrace();
+        return searchUsersAsync(query).exceptionally(e -> {
+            System.err.println("[AuthService] Search failed: " + e.getMessage());
             return new UserProfile[0];
-        }
+        }).join();
+    }
+    
+    /**
+     * @return Future of the matches; fails on errors so callers can tell them from "no results",
+     *         and cancelling it aborts the request
+     */
+    public CompletableFuture<UserProfile[]> searchUsersAsync(String query) {
+        HttpRequest request = authorized(API_BASE_URL + "/users/search?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8))
+            .GET()
+            .build();
+        return sendAsync(request, UserProfile[].class);
     }
     
     /**
@@ -263,33 +386,50 @@ public class AuthService {
      * @return UserProfile object or null if not found
      */
     public UserProfile getUserProfileById(String profileId) {
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(API_BASE_URL + "/profile/id/" + profileId))
-                .header("Authorization", "Bearer " + authToken)
-                .GET()
-                .build();
-                
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            // Debug log
-            System.out.println("Profile by ID response code: " + response.statusCode());
-            
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                UserProfile profile = objectMapper.readValue(response.body(), UserProfile.class);
-                return profile;
-            }
-            return null;
-        } catch (Exception e) {
+        return getUserProfileByIdAsync(profileId).join();
+    }
+    
+    public CompletableFuture<UserProfile> getUserProfileByIdAsync(String profileId) {
+        HttpRequest request = authorized(API_BASE_URL + "/profile/id/" + profileId).GET().build();
+        return sendAsync(request, UserProfile.class).exceptionally(e -> {
             System.err.println("Error fetching user profile by ID: " + e.getMessage());
-            e.printStackTrace();
             return null;
-        }
+        });
+    }
+    
+    /**
+     * Fetch many profiles in one request. Requests may be issued concurrently; over HTTP/2
+     * they share one connection.
+     * @param profileIds Profiles to fetch
+     * @param knownEtags ETags of profiles we already hold; unchanged ones come back as notModified
+     * @return Future of the batch response, completing with null if the request failed
+     */
+    public CompletableFuture<ProfileBatchResponse> getProfilesBatchAsync(Collection<String> profileIds, Map<String, String> knownEtags) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("ids", new ArrayList<>(profileIds));
+        body.put("etags", knownEtags);
+        HttpRequest request = authorized(PROFILE_URL + "/batch")
+            .header("Content-Type", "application/json")
+            .POST(json(body))
+            .build();
+        return sendAsync(request, ProfileBatchResponse.class).exceptionally(e -> {
+            System.err.println("Error fetching profile batch: " + e.getMessage());
+            return null;
+        });
+    }
+    
+    public ProfileBatchResponse getProfilesBatch(Collection<String> profileIds, Map<String, String> knownEtags) {
+        return getProfilesBatchAsync(profileIds, knownEtags).join();
     }
     
     public void logout() {
+        if (keyStore != null) {
+            keyStore.flush();
+        }
         this.authToken = null;
         this.currentUsername = null;
+        this.keyStore = null;
+        this.currentProfile = null;
     }
 
     public String getUserIdFromToken(String token) {
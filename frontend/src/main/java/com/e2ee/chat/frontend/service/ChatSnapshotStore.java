@@ -0,0 +1,375 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.crypto.CryptoEngine;
+import com.e2ee.chat.frontend.model.Chat;
+import com.e2ee.chat.frontend.model.ChatMessage;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.SecretKey;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Encrypted on-disk snapshot of the chat list and the newest messages of every chat, used
+ * to render the main screen immediately on startup, before CHAT_LIST arrives.
+ *
+ * The file is an append-only log, {@code magic | record*}, each record being
+ * {@code length | nonce(12) | AES-GCM(json)} under the keystore's local data key. Changes are
+ * buffered and appended in one write shortly after they happen; once the log holds much more
+ * than the live state it is compacted into a fresh file. A torn tail (crash mid-append) ends
+ * the replay and is dropped by the next compaction. Message bodies are stored decrypted, so
+ * the snapshot is sealed as strongly as the keys that protect them.
+ */
+public class ChatSnapshotStore {
+    private static final byte[] MAGIC = "E2EESN1".getBytes(StandardCharsets.US_ASCII);
+    private static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".e2ee-chat");
+    private static final int MAX_RECORD_LENGTH = 1 << 20;
+    private static final long FLUSH_DELAY_MILLIS = 1000;
+    // Compact once the log is this many times larger than the live state
+    private static final int COMPACTION_FACTOR = 4;
+    // Placeholders shown for bodies that could not be decrypted (yet); never persisted
+    private static final String UNREADABLE_PREFIX = "[Encrypted message";
+
+    private final Path file;
+    private final SecretKey key;
+    private final int messagesPerChat;
+    private final TaskScheduler scheduler;
+    private final String flushPurpose;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, ChatSummary> chats = new LinkedHashMap<>();
+    private final Map<String, Map<String, ChatMessage>> messages = new LinkedHashMap<>();
+    private final List<Entry> pending = new ArrayList<>();
+    private int loggedRecords;
+    private boolean compactionNeeded;
+
+    /**
+     * One chat list row, without the local state (messages, online status) of {@link Chat}
+     */
+    public record ChatSummary(String chatId, String chatType, String groupName, List<String> participants,
+                              String targetUserId, String targetUsername, String ownerId, List<String> admins,
+                              LocalDateTime createdAt, LocalDateTime updatedAt, String lastMessagePreview) {
+
+        static ChatSummary of(Chat chat) {
+            return new ChatSummary(chat.getChatId(), chat.getChatType(), chat.getGroupName(),
+                    chat.getParticipants() != null ? new ArrayList<>(chat.getParticipants()) : null,
+                    chat.getTargetUserId(), chat.getTargetUsername(), chat.getOwnerId(),
+                    chat.getAdmins() != null ? new ArrayList<>(chat.getAdmins()) : null,
+                    chat.getCreatedAt(), chat.getUpdatedAt(), chat.getLastMessagePreview());
+        }
+
+        Chat toChat() {
+            Chat chat = new Chat();
+            chat.setChatId(chatId);
+            chat.setChatType(chatType);
+            chat.setGroupName(groupName);
+            chat.setParticipants(participants != null ? new ArrayList<>(participants) : new ArrayList<>());
+            // Sets the username to the ID as well, so the resolved name goes second
+            chat.setTargetUserId(targetUserId);
+            if (targetUsername != null) {
+                chat.setTargetUsername(targetUsername);
+            }
+            chat.setOwnerId(ownerId);
+            chat.setAdmins(admins != null ? new ArrayList<>(admins) : new ArrayList<>());
+            chat.setCreatedAt(createdAt);
+            chat.setUpdatedAt(updatedAt);
+            chat.setLastMessagePreview(lastMessagePreview);
+            return chat;
+        }
+    }
+
+    private record Entry(String kind, ChatSummary chat, String chatId, ChatMessage message) {
+        static final String CHAT = "chat";
+        static final String REMOVE = "remove";
+        static final String MESSAGE = "message";
+    }
+
+    /**
+     * @param userId The logged-in user (one snapshot per user)
+     * @param key The keystore's local data key
+     * @param messagesPerChat Newest messages kept per chat
+     */
+    public ChatSnapshotStore(String userId, SecretKey key, int messagesPerChat, TaskScheduler scheduler) {
+        this(DEFAULT_DIRECTORY, userId, key, messagesPerChat, scheduler);
+    }
+
+    ChatSnapshotStore(Path directory, String userId, SecretKey key, int messagesPerChat, TaskScheduler scheduler) {
+        this.file = directory.resolve("snapshot-" + userId.replaceAll("[^A-Za-z0-9._-]", "_") + ".log");
+        this.key = key;
+        this.messagesPerChat = messagesPerChat;
+        this.scheduler = scheduler;
+        this.flushPurpose = "snapshotFlush:" + userId;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.findAndRegisterModules();
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    /**
+     * Replay the log
+     *
+     * @return The snapshot chats, most recent first, each holding its newest messages
+     */
+    public synchronized List<Chat> load() {
+        chats.clear();
+        messages.clear();
+        loggedRecords = 0;
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                byte[] magic = in.readNBytes(MAGIC.length);
+                if (!Arrays.equals(magic, MAGIC)) {
+                    throw new IOException("Not a snapshot file");
+                }
+                Entry entry;
+                while ((entry = readRecord(in)) != null) {
+                    apply(entry);
+                    loggedRecords++;
+                }
+            } catch (Exception e) {
+                // Keep what was read; the next compaction rewrites the file without the damage
+                System.err.println("[SNAPSHOT] Replay of " + file + " stopped: " + e.getMessage());
+                compactionNeeded = true;
+            }
+        }
+
+        List<Chat> result = new ArrayList<>();
+        for (ChatSummary summary : chats.values()) {
+            Chat chat = summary.toChat();
+            chat.setMessages(sortedMessages(summary.chatId()));
+            result.add(chat);
+        }
+        result.sort(Comparator.comparing(Chat::getUpdatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder())));
+        System.out.println("[SNAPSHOT] Loaded " + result.size() + " chats and " + messageCount()
+                + " messages from " + loggedRecords + " records");
+        return result;
+    }
+
+    /**
+     * Newest message time of a snapshot chat: the sync cursor from which the server only has
+     * to send what was missed
+     */
+    public static LocalDateTime syncCursor(Chat chat) {
+        LocalDateTime cursor = null;
+        if (chat.getMessages() != null) {
+            for (ChatMessage message : chat.getMessages()) {
+                if (message.getTimestamp() != null && (cursor == null || message.getTimestamp().isAfter(cursor))) {
+                    cursor = message.getTimestamp();
+                }
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Record the current chat list; chats not in it are dropped from the snapshot
+     */
+    public synchronized void recordChats(Collection<Chat> current) {
+        Set<String> present = new HashSet<>();
+        for (Chat chat : current) {
+            if (chat.getChatId() == null) {
+                continue;
+            }
+            present.add(chat.getChatId());
+            ChatSummary summary = ChatSummary.of(chat);
+            if (!summary.equals(chats.get(chat.getChatId()))) {
+                append(new Entry(Entry.CHAT, summary, null, null));
+            }
+        }
+        for (String chatId : new ArrayList<>(chats.keySet())) {
+            if (!present.contains(chatId)) {
+                append(new Entry(Entry.REMOVE, null, chatId, null));
+            }
+        }
+    }
+
+    /**
+     * Record decrypted messages of a chat; messages without a server ID (not yet acknowledged)
+     * or with an undecryptable body are skipped
+     */
+    public synchronized void recordMessages(String chatId, Collection<ChatMessage> added) {
+        if (chatId == null || !chats.containsKey(chatId)) {
+            return;
+        }
+        Map<String, ChatMessage> known = messages.get(chatId);
+        for (ChatMessage message : added) {
+            if (message.getId() == null || message.getTimestamp() == null || message.getContent() == null
+                    || message.getType() == ChatMessage.MessageType.KEY_EXCHANGE
+                    || message.getContent().startsWith(UNREADABLE_PREFIX)
+                    || (known != null && known.containsKey(message.getId()))) {
+                continue;
+            }
+            append(new Entry(Entry.MESSAGE, null, chatId, copyOf(chatId, message)));
+            known = messages.get(chatId);
+        }
+    }
+
+    /**
+     * Write buffered records now (on logout or exit)
+     */
+    public void flush() {
+        scheduler.cancel(flushPurpose);
+        writePending();
+    }
+
+    private void append(Entry entry) {
+        apply(entry);
+        pending.add(entry);
+        scheduler.scheduleLatest(flushPurpose, this::writePending, FLUSH_DELAY_MILLIS);
+    }
+
+    private void apply(Entry entry) {
+        switch (entry.kind()) {
+            case Entry.CHAT -> chats.put(entry.chat().chatId(), entry.chat());
+            case Entry.REMOVE -> {
+                chats.remove(entry.chatId());
+                messages.remove(entry.chatId());
+            }
+            case Entry.MESSAGE -> {
+                Map<String, ChatMessage> chatMessages = messages.computeIfAbsent(entry.chatId(), id -> new LinkedHashMap<>());
+                chatMessages.put(entry.message().getId(), entry.message());
+                if (chatMessages.size() > messagesPerChat) {
+                    List<ChatMessage> sorted = sortedMessages(entry.chatId());
+                    for (ChatMessage dropped : sorted.subList(0, sorted.size() - messagesPerChat)) {
+                        chatMessages.remove(dropped.getId());
+                    }
+                }
+            }
+            default -> System.err.println("[SNAPSHOT] Unknown record kind " + entry.kind());
+        }
+    }
+
+    private synchronized void writePending() {
+        if (pending.isEmpty() && !compactionNeeded) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            int live = chats.size() + messageCount();
+            if (compactionNeeded || !Files.exists(file) || loggedRecords + pending.size() > COMPACTION_FACTOR * Math.max(live, 16)) {
+                compact();
+            } else {
+                try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+                    out.write(encode(pending));
+                }
+                loggedRecords += pending.size();
+                System.out.println("[SNAPSHOT] Appended " + pending.size() + " records");
+            }
+            pending.clear();
+        } catch (Exception e) {
+            // The in-memory state is intact; the next write retries with a full compaction
+            System.err.println("[SNAPSHOT] Failed to write " + file + ": " + e.getMessage());
+            compactionNeeded = true;
+        }
+    }
+
+    /**
+     * Rewrite the log with only the live state; the file is replaced atomically
+     */
+    private void compact() throws Exception {
+        List<Entry> live = new ArrayList<>();
+        for (ChatSummary summary : chats.values()) {
+            live.add(new Entry(Entry.CHAT, summary, null, null));
+            for (ChatMessage message : sortedMessages(summary.chatId())) {
+                live.add(new Entry(Entry.MESSAGE, null, summary.chatId(), message));
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(MAGIC);
+        bytes.write(encode(live));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        loggedRecords = live.size();
+        compactionNeeded = false;
+        System.out.println("[SNAPSHOT] Compacted to " + live.size() + " records (" + bytes.size() + " bytes)");
+    }
+
+    private byte[] encode(List<Entry> entries) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Entry entry : entries) {
+            // Every record is bound to the snapshot magic as associated data
+            byte[] sealed = CryptoEngine.seal(key, objectMapper.writeValueAsBytes(entry), MAGIC);
+            out.writeInt(sealed.length);
+            out.write(sealed);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return The next record, or null at the end of the log
+     */
+    private Entry readRecord(DataInputStream in) throws Exception {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < CryptoEngine.sealedLength(0) || length > MAX_RECORD_LENGTH) {
+            throw new IOException("Bad record length " + length);
+        }
+        byte[] record = readFully(in, length);
+        byte[] json = CryptoEngine.open(key, record, MAGIC);
+        return objectMapper.readValue(json, Entry.class);
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] data = in.readNBytes(length);
+        if (data.length < length) {
+            throw new EOFException("Truncated record");
+        }
+        return data;
+    }
+
+    private List<ChatMessage> sortedMessages(String chatId) {
+        Map<String, ChatMessage> chatMessages = messages.get(chatId);
+        List<ChatMessage> sorted = chatMessages != null ? new ArrayList<>(chatMessages.values()) : new ArrayList<>();
+        sorted.sort(Comparator.comparing(ChatMessage::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return sorted;
+    }
+
+    private int messageCount() {
+        int count = 0;
+        for (Map<String, ChatMessage> chatMessages : messages.values()) {
+            count += chatMessages.size();
+        }
+        return count;
+    }
+
+    private static ChatMessage copyOf(String chatId, ChatMessage message) {
+        ChatMessage copy = new ChatMessage();
+        copy.setId(message.getId());
+        copy.setChatId(Objects.requireNonNullElse(message.getChatId(), chatId));
+        copy.setType(message.getType());
+        copy.setSenderId(message.getSenderId());
+        copy.setContent(message.getContent());
+        copy.setTimestamp(message.getTimestamp());
+        copy.setClientTempId(message.getClientTempId());
+        copy.setOwn(message.isOwn());
+        return copy;
+    }
+}
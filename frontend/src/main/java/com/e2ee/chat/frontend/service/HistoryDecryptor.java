@@ -0,0 +1,94 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decrypts pages of chat history off the JavaFX thread.
+ *
+ * A page is split into chunks that are decrypted in parallel on a small bounded pool;
+ * the returned future completes once the whole page is done, so the caller can publish
+ * it to the UI in one batch. Plaintext goes through the shared {@link PlaintextCache}, so
+ * re-fetching a page does not decrypt the same message twice while it is still cached.
+ */
+public class HistoryDecryptor {
+    public static final String UNREADABLE_PLACEHOLDER = "[Encrypted message - cannot decrypt]";
+
+    private static final int CHUNK_SIZE = 32;
+
+    /**
+     * Decrypts one message; throws if the message cannot be decrypted (yet)
+     */
+    @FunctionalInterface
+    public interface MessageDecryptor {
+        String decrypt(ChatMessage message) throws Exception;
+    }
+
+    private final ExecutorService workers;
+    private final PlaintextCache plaintextCache;
+
+    public HistoryDecryptor(PlaintextCache plaintextCache) {
+        this(plaintextCache, Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
+    public HistoryDecryptor(PlaintextCache plaintextCache, int threads) {
+        this.plaintextCache = plaintextCache;
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "history-decrypt-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.workers = executor;
+    }
+
+    /**
+     * Decrypt every encrypted message of a page in place
+     *
+     * @param page Messages of one history page
+     * @param decryptor Decrypts a single message
+     * @return Future completing with the same list once all messages are processed
+     */
+    public CompletableFuture<List<ChatMessage>> decryptPage(List<ChatMessage> page, MessageDecryptor decryptor) {
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int from = 0; from < page.size(); from += CHUNK_SIZE) {
+            List<ChatMessage> chunk = page.subList(from, Math.min(from + CHUNK_SIZE, page.size()));
+            chunks.add(CompletableFuture.runAsync(() -> chunk.forEach(m -> decryptInPlace(m, decryptor)), workers));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).thenApply(done -> page);
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void decryptInPlace(ChatMessage message, MessageDecryptor decryptor) {
+        if (message.getType() != ChatMessage.MessageType.ENCRYPTED_CHAT) {
+            return;
+        }
+        String cached = plaintextCache.get(message.getId());
+        if (cached != null) {
+            message.setContent(cached);
+            return;
+        }
+        try {
+            String plaintext = decryptor.decrypt(message);
+            message.setContent(plaintext);
+            plaintextCache.put(message.getId(), plaintext);
+        } catch (Exception e) {
+            // Failures are not cached: the key may arrive later and a re-fetch should retry
+            System.out.println("[HISTORY] Failed to decrypt message " + message.getId() + ": " + e.getMessage());
+            message.setContent(UNREADABLE_PLACEHOLDER);
+        }
+    }
+}
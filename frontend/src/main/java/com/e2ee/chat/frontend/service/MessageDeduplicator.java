@@ -0,0 +1,78 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.model.ChatMessage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers recently seen incoming messages so duplicate frames are dropped.
+ *
+ * Entries sit in insertion order, which is also expiry order because every entry lives for
+ * the same TTL; expiry therefore only ever looks at the head of the map (amortized O(1)).
+ * The map is also capped by entry count so a burst cannot grow it without bound.
+ */
+public class MessageDeduplicator {
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Long> seen = new LinkedHashMap<>();
+
+    public MessageDeduplicator(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Record a message and report whether it is new
+     *
+     * @return true the first time a message is seen within the TTL, false for duplicates
+     */
+    public boolean markIfNew(ChatMessage message) {
+        return markIfNew(keyOf(message), System.currentTimeMillis());
+    }
+
+    synchronized boolean markIfNew(String key, long now) {
+        expire(now);
+        if (seen.containsKey(key)) {
+            return false;
+        }
+        seen.put(key, now);
+        if (seen.size() > maxEntries) {
+            Iterator<String> eldest = seen.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return true;
+    }
+
+    public synchronized int size() {
+        return seen.size();
+    }
+
+    public synchronized void clear() {
+        seen.clear();
+    }
+
+    private void expire(long now) {
+        Iterator<Map.Entry<String, Long>> oldest = seen.entrySet().iterator();
+        while (oldest.hasNext() && now - oldest.next().getValue() > ttlMillis) {
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Server message ID when known, otherwise the sender's clientTempId. Only frames with
+     * neither fall back to a compact signature; the full content is never part of the key.
+     */
+    private static String keyOf(ChatMessage message) {
+        if (message.getId() != null && !message.getId().isEmpty()) {
+            return "id:" + message.getId();
+        }
+        if (message.getClientTempId() != null && !message.getClientTempId().isEmpty()) {
+            return "tmp:" + message.getClientTempId();
+        }
+        return "sig:" + message.getSenderId() + ":" + message.getChatId() + ":" + message.getTimestamp()
+                + ":" + (message.getContent() != null ? message.getContent().hashCode() : 0);
+    }
+}
@@ -0,0 +1,356 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.crypto.CryptoEngine;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Durable queue of outgoing chat messages, so a message typed while offline or lost on a
+ * flaky link is delivered without the user resending it.
+ *
+ * Every message stays queued until the server acknowledges it (a MESSAGE_RECEIPT or our
+ * own echo, matched by clientTempId). Queued messages are sent in order, in batches,
+ * whenever the connection is up; messages that stay unacknowledged are resent with the
+ * same clientTempId, which the server uses to store and deliver each message only once.
+ * A message the server rejects, or that is still unacknowledged after MAX_ATTEMPTS sends,
+ * is dropped and reported to the failure listener instead of being resent forever.
+ *
+ * The queue is written to disk by a background write shortly after every change, so the
+ * caller (usually the UI thread) never waits for encryption or I/O. Payloads are queued
+ * already end-to-end encrypted; the file is additionally sealed with the keystore's local
+ * data key.
+ */
+public class MessageOutbox {
+    private static final byte[] MAGIC = "E2EEOB1".getBytes(StandardCharsets.US_ASCII);
+    private static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".e2ee-chat");
+    public static final int BATCH_SIZE = 20;
+    // Resend a message if no receipt arrived within this time
+    static final long ACK_TIMEOUT_MILLIS = 10_000;
+    // Sends without a receipt before a message is given up
+    static final int MAX_ATTEMPTS = 8;
+    // A burst of sends and receipts is written to disk once
+    private static final long SAVE_DELAY_MILLIS = 100;
+
+    private final Path file;
+    private final SecretKey key;
+    private final TaskScheduler scheduler;
+    private final String retryPurpose;
+    private final String savePurpose;
+    private final Object fileLock = new Object();
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> queue = new LinkedHashMap<>();
+    private Transport transport;
+    private Consumer<Entry> failureListener;
+
+    /**
+     * One queued message: the JSON payload exactly as it goes to /app/chat.send
+     */
+    public static class Entry {
+        private String clientTempId;
+        private String chatId;
+        private String payload;
+        private int attempts;
+        private long lastSentAt;
+
+        public Entry() {
+        }
+
+        Entry(String clientTempId, String chatId, String payload) {
+            this.clientTempId = clientTempId;
+            this.chatId = chatId;
+            this.payload = payload;
+        }
+
+        public String getClientTempId() {
+            return clientTempId;
+        }
+
+        public void setClientTempId(String clientTempId) {
+            this.clientTempId = clientTempId;
+        }
+
+        public String getChatId() {
+            return chatId;
+        }
+
+        public void setChatId(String chatId) {
+            this.chatId = chatId;
+        }
+
+        public String getPayload() {
+            return payload;
+        }
+
+        public void setPayload(String payload) {
+            this.payload = payload;
+        }
+
+        Entry copy() {
+            Entry copy = new Entry(clientTempId, chatId, payload);
+            copy.attempts = attempts;
+            copy.lastSentAt = lastSentAt;
+            return copy;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public void setAttempts(int attempts) {
+            this.attempts = attempts;
+        }
+
+        public long getLastSentAt() {
+            return lastSentAt;
+        }
+
+        public void setLastSentAt(long lastSentAt) {
+            this.lastSentAt = lastSentAt;
+        }
+    }
+
+    /**
+     * Puts a batch of queued messages on the wire
+     */
+    @FunctionalInterface
+    public interface Transport {
+        /**
+         * @return false if the batch could not be sent (not connected); it stays queued
+         */
+        boolean send(List<Entry> batch);
+    }
+
+    /**
+     * @param userId The logged-in user (one outbox per user)
+     * @param key The keystore's local data key
+     */
+    public MessageOutbox(String userId, SecretKey key, TaskScheduler scheduler) {
+        this(DEFAULT_DIRECTORY, userId, key, scheduler);
+    }
+
+    MessageOutbox(Path directory, String userId, SecretKey key, TaskScheduler scheduler) {
+        this.file = directory.resolve("outbox-" + userId.replaceAll("[^A-Za-z0-9._-]", "_") + ".bin");
+        this.key = key;
+        this.scheduler = scheduler;
+        this.retryPurpose = "outboxRetry:" + userId;
+        this.savePurpose = "outboxSave:" + userId;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        load();
+    }
+
+    public synchronized void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Called with every message that is given up (rejected by the server or never acknowledged)
+     */
+    public synchronized void setFailureListener(Consumer<Entry> failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * Queue a message and send it right away if connected; it reaches the disk in the background
+     */
+    public void enqueue(String clientTempId, String chatId, String payload) {
+        synchronized (this) {
+            queue.put(clientTempId, new Entry(clientTempId, chatId, payload));
+            saveLater();
+        }
+        flush();
+    }
+
+    /**
+     * The server stored the message; it is never sent again
+     */
+    public synchronized void acknowledge(String clientTempId) {
+        if (clientTempId != null && queue.remove(clientTempId) != null) {
+            System.out.println("[OUTBOX] Acknowledged " + clientTempId + ", " + queue.size() + " still queued");
+            saveLater();
+            if (queue.isEmpty()) {
+                scheduler.cancel(retryPurpose);
+            }
+        }
+    }
+
+    /**
+     * The server refused the message (e.g. the chat no longer exists); resending cannot help
+     */
+    public void reject(String clientTempId, String reason) {
+        Entry rejected;
+        synchronized (this) {
+            rejected = clientTempId != null ? queue.remove(clientTempId) : null;
+            if (rejected == null) {
+                return;
+            }
+            saveLater();
+        }
+        System.err.println("[OUTBOX] Server rejected " + clientTempId + ": " + reason);
+        notifyFailed(List.of(rejected));
+    }
+
+    public synchronized boolean isQueued(String clientTempId) {
+        return clientTempId != null && queue.containsKey(clientTempId);
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    /**
+     * Send, in order and in batches, every queued message that was never sent or whose
+     * receipt is overdue (on connect and on a retry tick)
+     */
+    public void flush() {
+        flush(System.currentTimeMillis());
+    }
+
+    void flush(long now) {
+        List<Entry> failed = sendDue(now);
+        if (!failed.isEmpty()) {
+            notifyFailed(failed);
+        }
+    }
+
+    private synchronized List<Entry> sendDue(long now) {
+        List<Entry> failed = new ArrayList<>();
+        if (transport == null || queue.isEmpty()) {
+            return failed;
+        }
+        List<Entry> due = new ArrayList<>();
+        for (Iterator<Entry> it = queue.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.lastSentAt != 0 && now - entry.lastSentAt < ACK_TIMEOUT_MILLIS) {
+                continue;
+            }
+            if (entry.attempts >= MAX_ATTEMPTS) {
+                // Sent MAX_ATTEMPTS times over a live connection and never acknowledged
+                System.err.println("[OUTBOX] Giving up on " + entry.clientTempId + " after " + entry.attempts + " attempts");
+                it.remove();
+                failed.add(entry);
+                continue;
+            }
+            due.add(entry);
+        }
+        int sent = 0;
+        for (int from = 0; from < due.size(); from += BATCH_SIZE) {
+            List<Entry> batch = due.subList(from, Math.min(from + BATCH_SIZE, due.size()));
+            if (!transport.send(batch)) {
+                break; // Offline; everything stays queued for the next connect
+            }
+            for (Entry entry : batch) {
+                entry.attempts++;
+                entry.lastSentAt = now;
+            }
+            sent += batch.size();
+        }
+        if (sent > 0) {
+            System.out.println("[OUTBOX] Sent " + sent + " of " + queue.size() + " queued messages");
+        }
+        if (sent > 0 || !failed.isEmpty()) {
+            saveLater();
+        }
+        if (!queue.isEmpty()) {
+            // Check for missing receipts; a resend keeps its clientTempId
+            scheduler.scheduleLatest(retryPurpose, this::flush, ACK_TIMEOUT_MILLIS);
+        }
+        return failed;
+    }
+
+    private void notifyFailed(List<Entry> failed) {
+        Consumer<Entry> listener;
+        synchronized (this) {
+            listener = failureListener;
+        }
+        if (listener != null) {
+            failed.forEach(listener);
+        }
+    }
+
+    /**
+     * Stop the retry timer and write the queue now (on logout); it stays on disk for the next login
+     */
+    public void close() {
+        scheduler.cancel(retryPurpose);
+        scheduler.cancel(savePurpose);
+        save();
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            byte[] data = Files.readAllBytes(file);
+            if (data.length < MAGIC.length || !Arrays.equals(Arrays.copyOf(data, MAGIC.length), MAGIC)) {
+                throw new IllegalStateException("Not an outbox file");
+            }
+            byte[] json = CryptoEngine.open(key, data, MAGIC.length, data.length - MAGIC.length, MAGIC);
+            List<Entry> entries = objectMapper.readValue(json, new TypeReference<List<Entry>>() {
+            });
+            for (Entry entry : entries) {
+                // Whatever was in flight when the client stopped is resent on the next connect
+                entry.lastSentAt = 0;
+                queue.put(entry.clientTempId, entry);
+            }
+            System.out.println("[OUTBOX] Restored " + queue.size() + " unacknowledged messages");
+        } catch (Exception e) {
+            System.err.println("[OUTBOX] Could not restore " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void saveLater() {
+        scheduler.scheduleLatest(savePurpose, this::save, SAVE_DELAY_MILLIS);
+    }
+
+    /**
+     * Seal and write the queue; the file is replaced atomically so a crash never leaves it half written
+     */
+    void save() {
+        List<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(queue.size());
+            for (Entry entry : queue.values()) {
+                entries.add(entry.copy());
+            }
+        }
+        synchronized (fileLock) {
+            write(entries);
+        }
+    }
+
+    private void write(List<Entry> entries) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(entries);
+            // The magic is bound as associated data, so a file of another kind never opens as an outbox
+            byte[] ciphertext = CryptoEngine.seal(key, json, MAGIC);
+            byte[] sealed = ByteBuffer.allocate(MAGIC.length + ciphertext.length)
+                    .put(MAGIC).put(ciphertext).array();
+
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, sealed);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            // Still queued in memory; only a crash before the next save would lose it
+            System.err.println("[OUTBOX] Failed to save " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Group messages shown with a placeholder because the sender's chain key has not arrived yet.
+ *
+ * Their ciphertext is kept here, keyed by the missing chain (groupId|senderId|keyId), so
+ * they can be decrypted in place once the distribution is installed. A history re-fetch
+ * cannot do that: messages already in the chat are skipped when a page is merged.
+ * Live messages and history pages both add to it, so it is thread-safe.
+ */
+public class PendingGroupMessages {
+    public static final int DEFAULT_MAX_MESSAGES = 5000;
+
+    /**
+     * A message waiting for its chain and the ciphertext it arrived with
+     */
+    public static final class Pending {
+        private final ChatMessage message;
+        private final String ciphertext;
+
+        private Pending(ChatMessage message, String ciphertext) {
+            this.message = message;
+            this.ciphertext = ciphertext;
+        }
+
+        public ChatMessage getMessage() {
+            return message;
+        }
+
+        public String getCiphertext() {
+            return ciphertext;
+        }
+    }
+
+    private final int maxMessages;
+    private final Map<String, Map<String, Pending>> byChain = new HashMap<>();
+    private int size;
+
+    public PendingGroupMessages() {
+        this(DEFAULT_MAX_MESSAGES);
+    }
+
+    public PendingGroupMessages(int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * Remember a message whose chain is missing. The first message registered under an ID
+     * is kept, since that is the one the chat retained; a re-fetched copy is ignored.
+     *
+     * @return false if the message is already waiting or the bound is reached
+     */
+    public synchronized boolean add(String groupId, String senderId, String keyId,
+                                    ChatMessage message, String ciphertext) {
+        if (size >= maxMessages) {
+            return false;
+        }
+        String messageKey = message.getId() != null
+                ? message.getId()
+                : "@" + System.identityHashCode(message);
+        Map<String, Pending> waiting = byChain.computeIfAbsent(chainKey(groupId, senderId, keyId),
+                chain -> new LinkedHashMap<>());
+        if (waiting.putIfAbsent(messageKey, new Pending(message, ciphertext)) != null) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove and return every message waiting for a chain, in the order they arrived
+     */
+    public synchronized List<Pending> take(String groupId, String senderId, String keyId) {
+        Map<String, Pending> waiting = byChain.remove(chainKey(groupId, senderId, keyId));
+        if (waiting == null) {
+            return List.of();
+        }
+        size -= waiting.size();
+        return new ArrayList<>(waiting.values());
+    }
+
+    /**
+     * Forget every message (on logout)
+     */
+    public synchronized void clear() {
+        byChain.clear();
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private static String chainKey(String groupId, String senderId, String keyId) {
+        return groupId + "|" + senderId + "|" + keyId;
+    }
+}
@@ -0,0 +1,135 @@
+package com.e2ee.chat.frontend.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory-bounded LRU cache of decrypted message bodies, keyed by message ID.
+ *
+ * Shared by the history loader, live message handling and chat previews so a message is
+ * decrypted at most once while it stays hot. The bound is an estimate of retained bytes
+ * rather than an entry count, since message sizes vary widely. Wiped on logout.
+ *
+ * Eviction only costs a second decryption: entries must be messages whose key is kept
+ * (chat keys in the keystore, group sender chains from their first iteration), never
+ * the only copy of a plaintext.
+ */
+public class PlaintextCache {
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+
+    // Rough per-entry cost of the map node, key and value String objects
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public PlaintextCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public PlaintextCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return Cached plaintext, or null on a miss
+     */
+    public synchronized String get(String messageId) {
+        if (messageId == null) {
+            return null;
+        }
+        String plaintext = entries.get(messageId);
+        if (plaintext != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return plaintext;
+    }
+
+    public synchronized void put(String messageId, String plaintext) {
+        if (messageId == null || plaintext == null) {
+            return;
+        }
+        long size = sizeOf(messageId, plaintext);
+        if (size > maxBytes) {
+            return; // Would evict everything else; not worth caching
+        }
+        String previous = entries.put(messageId, plaintext);
+        if (previous != null) {
+            currentBytes -= sizeOf(messageId, previous);
+        }
+        currentBytes += size;
+        evictIfNeeded();
+    }
+
+    public synchronized void remove(String messageId) {
+        String previous = entries.remove(messageId);
+        if (previous != null) {
+            currentBytes -= sizeOf(messageId, previous);
+        }
+    }
+
+    /**
+     * Drop every plaintext (on logout) and reset the metrics
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("PlaintextCache[entries=%d, bytes=%d/%d, hitRate=%.1f%%, hits=%d, misses=%d, evictions=%d]",
+                entries.size(), currentBytes, maxBytes, getHitRate() * 100, hits, misses, evictions);
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, String>> eldest = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, String> entry = eldest.next();
+            currentBytes -= sizeOf(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static long sizeOf(String messageId, String plaintext) {
+        // UTF-16 upper bound; compact Latin-1 strings use half of this
+        return ENTRY_OVERHEAD + 2L * (messageId.length() + plaintext.length());
+    }
+}
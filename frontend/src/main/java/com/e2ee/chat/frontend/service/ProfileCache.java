@@ -0,0 +1,172 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.model.ProfileBatchResponse;
+import com.e2ee.chat.frontend.model.UserProfile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side cache of other users' profiles.
+ *
+ * Missing profiles are fetched in one POST /api/profile/batch round-trip however many are
+ * asked for. Entries are fresh for {@link #TTL_MILLIS}; stale ones are revalidated in the
+ * same batch by sending their ETag, so unchanged profiles cost only their ID on the wire.
+ */
+public class ProfileCache {
+    public static final long TTL_MILLIS = 5 * 60_000;
+
+    // Server-side cap of one batch request
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private final AuthService authService;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    private static final class Entry {
+        final UserProfile profile;
+        final String etag;
+        volatile long validatedAt;
+
+        Entry(UserProfile profile, String etag, long validatedAt) {
+            this.profile = profile;
+            this.etag = etag;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    public ProfileCache(AuthService authService) {
+        this(authService, System::currentTimeMillis);
+    }
+
+    ProfileCache(AuthService authService, LongSupplier clock) {
+        this.authService = authService;
+        this.clock = clock;
+    }
+
+    /**
+     * @return Cached profile (possibly stale) without touching the network, or null
+     */
+    public UserProfile getCached(String profileId) {
+        Entry entry = profileId != null ? entries.get(profileId) : null;
+        return entry != null ? entry.profile : null;
+    }
+
+    /**
+     * @return true if the profile is cached and within its TTL, so {@link #get} will not fetch it
+     */
+    public boolean isFresh(String profileId) {
+        Entry entry = profileId != null ? entries.get(profileId) : null;
+        return entry != null && clock.getAsLong() - entry.validatedAt <= TTL_MILLIS;
+    }
+
+    /**
+     * Profile by ID, fetching it if missing or stale. Blocking; call off the FX thread.
+     */
+    public UserProfile get(String profileId) {
+        if (profileId == null || profileId.isEmpty()) {
+            return null;
+        }
+        return getAll(Collections.singleton(profileId)).get(profileId);
+    }
+
+    /**
+     * Profiles by ID; missing and stale ones are loaded in a single batch request.
+     * Blocking; call off the FX thread.
+     *
+     * @return Known profiles by ID (IDs that do not exist are absent)
+     */
+    public Map<String, UserProfile> getAll(Collection<String> profileIds) {
+        long now = clock.getAsLong();
+        Map<String, UserProfile> result = new HashMap<>();
+        Set<String> toFetch = new LinkedHashSet<>();
+        Map<String, String> knownEtags = new HashMap<>();
+        for (String profileId : profileIds) {
+            if (profileId == null || profileId.isEmpty()) {
+                continue;
+            }
+            Entry entry = entries.get(profileId);
+            if (entry != null && now - entry.validatedAt <= TTL_MILLIS) {
+                result.put(profileId, entry.profile);
+                continue;
+            }
+            toFetch.add(profileId);
+            if (entry != null && entry.etag != null) {
+                knownEtags.put(profileId, entry.etag);
+            }
+        }
+        if (!toFetch.isEmpty()) {
+            fetch(toFetch, knownEtags, result, now);
+        }
+        return result;
+    }
+
+    /**
+     * Seed the cache with a profile the client received by other means (e.g. search results)
+     */
+    public void put(UserProfile profile) {
+        if (profile != null && profile.getProfileId() != null) {
+            // No ETag: the next revalidation fetches it in full
+            entries.put(profile.getProfileId(), new Entry(profile, null, clock.getAsLong()));
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private void fetch(Set<String> toFetch, Map<String, String> knownEtags, Map<String, UserProfile> result, long now) {
+        // Chunks are sent concurrently; over HTTP/2 they are multiplexed on one connection
+        String[] ids = toFetch.toArray(new String[0]);
+        List<Set<String>> chunks = new ArrayList<>();
+        List<CompletableFuture<ProfileBatchResponse>> responses = new ArrayList<>();
+        for (int from = 0; from < ids.length; from += MAX_BATCH_SIZE) {
+            Set<String> chunk = new LinkedHashSet<>();
+            Map<String, String> chunkEtags = new HashMap<>();
+            for (int i = from; i < Math.min(ids.length, from + MAX_BATCH_SIZE); i++) {
+                chunk.add(ids[i]);
+                if (knownEtags.containsKey(ids[i])) {
+                    chunkEtags.put(ids[i], knownEtags.get(ids[i]));
+                }
+            }
+            chunks.add(chunk);
+            responses.add(authService.getProfilesBatchAsync(chunk, chunkEtags));
+        }
+        for (int c = 0; c < chunks.size(); c++) {
+            ProfileBatchResponse response = responses.get(c).join();
+            if (response == null) {
+                // Server unreachable: stale data beats none
+                for (String profileId : chunks.get(c)) {
+                    UserProfile stale = getCached(profileId);
+                    if (stale != null) {
+                        result.put(profileId, stale);
+                    }
+                }
+                continue;
+            }
+            for (UserProfile profile : response.getProfiles()) {
+                String profileId = profile.getProfileId();
+                entries.put(profileId, new Entry(profile, response.getEtags().get(profileId), now));
+                result.put(profileId, profile);
+            }
+            for (String profileId : response.getNotModified()) {
+                Entry entry = entries.get(profileId);
+                if (entry != null) {
+                    entry.validatedAt = now;
+                    result.put(profileId, entry.profile);
+                }
+            }
+        }
+        System.out.println("[PROFILE_CACHE] Fetched " + toFetch.size() + " profiles (" + knownEtags.size()
+                + " revalidated), " + entries.size() + " cached, " + authService.getHttpStats());
+    }
+}
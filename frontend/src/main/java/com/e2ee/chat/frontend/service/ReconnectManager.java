@@ -0,0 +1,111 @@
+package com.e2ee.chat.frontend.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Reconnects a dropped WebSocket session with exponential backoff and full jitter.
+ *
+ * The delay before attempt n is drawn uniformly from [0, min(cap, base * 2^n)], so after a
+ * backend restart the clients spread their reconnects over the window instead of arriving
+ * all at once. A connection that stayed up for {@link #STABLE_AFTER_MILLIS} resets the
+ * backoff; a connection that drops right away keeps growing it.
+ */
+public class ReconnectManager {
+    public static final long BASE_DELAY_MILLIS = 1_000;
+    public static final long MAX_DELAY_MILLIS = 60_000;
+    static final long MIN_DELAY_MILLIS = 250;
+    static final long STABLE_AFTER_MILLIS = 30_000;
+
+    private final TaskScheduler scheduler;
+    private final String purpose;
+    private final BooleanSupplier attempt;
+    private final LongSupplier clock;
+    private int attempts;
+    private long connectedAt;
+    private boolean active;
+
+    /**
+     * @param attempt Opens a new session (blocking); returns false if it failed
+     */
+    public ReconnectManager(TaskScheduler scheduler, String purpose, BooleanSupplier attempt) {
+        this(scheduler, purpose, attempt, System::currentTimeMillis);
+    }
+
+    ReconnectManager(TaskScheduler scheduler, String purpose, BooleanSupplier attempt, LongSupplier clock) {
+        this.scheduler = scheduler;
+        this.purpose = purpose;
+        this.attempt = attempt;
+        this.clock = clock;
+    }
+
+    /**
+     * Begin watching a new login's connection
+     */
+    public synchronized void start() {
+        active = true;
+        attempts = 0;
+        connectedAt = 0;
+    }
+
+    /**
+     * Stop reconnecting (on logout)
+     */
+    public synchronized void stop() {
+        active = false;
+        scheduler.cancel(purpose);
+    }
+
+    public synchronized void connected() {
+        connectedAt = clock.getAsLong();
+        scheduler.cancel(purpose);
+    }
+
+    /**
+     * The session dropped or an attempt failed; schedule the next attempt
+     */
+    public synchronized void connectionLost() {
+        if (!active) {
+            return;
+        }
+        if (connectedAt != 0 && clock.getAsLong() - connectedAt >= STABLE_AFTER_MILLIS) {
+            attempts = 0;
+        }
+        connectedAt = 0;
+        long delay = nextDelay(attempts++);
+        System.out.println("[RECONNECT] Attempt " + attempts + " in " + delay + " ms");
+        // The timer thread only hands the blocking connect over to a worker
+        scheduler.scheduleLatest(purpose, () -> scheduler.submitIfIdle(purpose + ":attempt", this::runAttempt), delay);
+    }
+
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    private void runAttempt() {
+        synchronized (this) {
+            if (!active) {
+                return;
+            }
+        }
+        boolean success;
+        try {
+            success = attempt.getAsBoolean();
+        } catch (RuntimeException e) {
+            System.err.println("[RECONNECT] Attempt failed: " + e.getMessage());
+            success = false;
+        }
+        if (success) {
+            System.out.println("[RECONNECT] Reconnected after " + getAttempts() + " attempts");
+            connected();
+        } else {
+            connectionLost();
+        }
+    }
+
+    static long nextDelay(int attempt) {
+        long ceiling = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt, 16));
+        return Math.max(MIN_DELAY_MILLIS, ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+}
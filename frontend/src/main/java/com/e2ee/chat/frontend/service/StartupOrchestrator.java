@@ -0,0 +1,76 @@
+package com.e2ee.chat.frontend.service;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs the independent steps of the client startup concurrently and logs their timing.
+ *
+ * Steps that do not depend on each other (crypto warm-up and identity key generation while
+ * the password is typed, keystore unlock alongside the login request, the WebSocket connect
+ * alongside loading the main screen and the profile fetch) are started as phases on the
+ * shared {@link TaskScheduler}. Every phase logs its own duration and the time since launch;
+ * milestones such as "first chat list" are logged once.
+ */
+public class StartupOrchestrator {
+    private final TaskScheduler scheduler;
+    private final long launchedAt = System.nanoTime();
+    private final Set<String> reached = ConcurrentHashMap.newKeySet();
+
+    public StartupOrchestrator(TaskScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Run a blocking step in the background as a timed phase
+     */
+    public <T> CompletableFuture<T> phase(String name, Supplier<T> step) {
+        long start = System.nanoTime();
+        return track(name, start, scheduler.supply(step));
+    }
+
+    public CompletableFuture<Void> phase(String name, Runnable step) {
+        return phase(name, () -> {
+            step.run();
+            return null;
+        });
+    }
+
+    /**
+     * Time an operation that is already running (e.g. a non-blocking HTTP call)
+     *
+     * @return The same future
+     */
+    public <T> CompletableFuture<T> track(String name, CompletableFuture<T> operation) {
+        return track(name, System.nanoTime(), operation);
+    }
+
+    /**
+     * Log a point in the startup sequence, the first time it is reached only
+     */
+    public void milestone(String name) {
+        if (reached.add(name)) {
+            System.out.println("[STARTUP] " + name + " reached at +" + millisSince(launchedAt) + " ms");
+        }
+    }
+
+    /**
+     * Forget the reached milestones, so the next login is timed again
+     */
+    public void reset() {
+        reached.clear();
+    }
+
+    private <T> CompletableFuture<T> track(String name, long start, CompletableFuture<T> operation) {
+        operation.whenComplete((value, error) -> System.out.println("[STARTUP] phase " + name
+                + (error == null ? " done in " : " failed after ") + millisSince(start) + " ms (+"
+                + millisSince(launchedAt) + " ms since launch)"));
+        return operation;
+    }
+
+    private static long millisSince(long nanos) {
+        return (System.nanoTime() - nanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,178 @@
+package com.e2ee.chat.frontend.service;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Shared background executors for the client, replacing one-off {@code new Thread(...)}.
+ *
+ * Blocking work (HTTP calls, login) runs on a small bounded pool and delayed actions on a
+ * single timer thread. Tasks can be tagged with a purpose: submitting a new task for the
+ * same purpose cancels the previous one, so e.g. a new search keystroke drops the query
+ * still in flight and a burst of "refresh the chat list later" requests collapses into one.
+ */
+public class TaskScheduler {
+    private static final TaskScheduler SHARED = new TaskScheduler(4);
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService timer;
+    private final Map<String, Future<?>> byPurpose = new ConcurrentHashMap<>();
+
+    public TaskScheduler(int threads) {
+        this.workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("client-worker-"));
+        this.workers.allowCoreThreadTimeOut(true);
+        ScheduledThreadPoolExecutor scheduled = new ScheduledThreadPoolExecutor(1, daemonThreads("client-timer-"));
+        // Cancelled delayed tasks should not sit in the queue until their delay expires
+        scheduled.setRemoveOnCancelPolicy(true);
+        this.timer = scheduled;
+    }
+
+    public static TaskScheduler shared() {
+        return SHARED;
+    }
+
+    /**
+     * Run blocking work in the background
+     */
+    public Future<?> submit(Runnable task) {
+        return workers.submit(task);
+    }
+
+    /**
+     * Compute a value in the background
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, workers);
+    }
+
+    /**
+     * Compute a value in the background, cancelling the previous task with the same purpose.
+     * A superseded task's future is cancelled, so its dependent stages never run even if
+     * the underlying call could not be interrupted.
+     */
+    public <T> CompletableFuture<T> supplyLatest(String purpose, Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = workers.submit(() -> {
+            try {
+                result.complete(task.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                byPurpose.remove(purpose, result);
+            }
+        });
+        // Cancelling the result also interrupts the worker running it
+        result.whenComplete((value, error) -> {
+            if (error instanceof CancellationException) {
+                running.cancel(true);
+            }
+        });
+        replace(purpose, result);
+        return result;
+    }
+
+    /**
+     * Track an already running asynchronous operation (e.g. a non-blocking HTTP call) under a
+     * purpose, cancelling the previous operation with the same purpose
+     *
+     * @return The same future
+     */
+    public <T> CompletableFuture<T> trackLatest(String purpose, CompletableFuture<T> operation) {
+        replace(purpose, operation);
+        operation.whenComplete((value, error) -> byPurpose.remove(purpose, operation));
+        return operation;
+    }
+
+    /**
+     * Run blocking work in the background unless a task with this purpose is still running
+     *
+     * @return false if the task was skipped
+     */
+    public boolean submitIfIdle(String purpose, Runnable task) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (byPurpose.putIfAbsent(purpose, result) != null) {
+            return false;
+        }
+        workers.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                byPurpose.remove(purpose, result);
+                result.complete(null);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Run an action after a delay
+     */
+    public Future<?> schedule(Runnable task, long delayMillis) {
+        return timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run an action after a delay, replacing a pending action with the same purpose
+     */
+    public Future<?> scheduleLatest(String purpose, Runnable task, long delayMillis) {
+        CompletableFuture<Void> handle = new CompletableFuture<>();
+        Future<?> scheduled = timer.schedule(() -> {
+            byPurpose.remove(purpose, handle);
+            if (!handle.isDone()) {
+                task.run();
+                handle.complete(null);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        handle.whenComplete((value, error) -> {
+            if (error instanceof CancellationException) {
+                scheduled.cancel(false);
+            }
+        });
+        replace(purpose, handle);
+        return handle;
+    }
+
+    public void cancel(String purpose) {
+        Future<?> previous = byPurpose.remove(purpose);
+        if (previous != null) {
+            previous.cancel(true);
+        }
+    }
+
+    /**
+     * Cancel every tagged task (on logout); the executors stay usable for the next session
+     */
+    public void cancelAll() {
+        for (String purpose : byPurpose.keySet()) {
+            cancel(purpose);
+        }
+    }
+
+    private void replace(String purpose, Future<?> next) {
+        Future<?> previous = byPurpose.put(purpose, next);
+        if (previous != null && previous != next) {
+            previous.cancel(true);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,190 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.model.UserProfile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Debounced, cached user search for the search box and the group dialog.
+ *
+ * Keystrokes are debounced and a newer query cancels the pending or in-flight one. Results
+ * are cached per normalized query. The server matches on username / display-name word
+ * prefixes and caps the result count, so a cached prefix result below that cap holds every
+ * match for its prefix: a longer query extending it is answered by filtering locally,
+ * without another request. The server falls back to its text index only when nothing
+ * matches the prefix, so a cached text result, or a longer query that filters down to
+ * nothing, still goes to the server.
+ */
+public class UserSearchEngine {
+    public static final long DEBOUNCE_MILLIS = 250;
+
+    // Result cap of /api/users/search (ProfileService.searchUsers)
+    private static final int SERVER_LIMIT = 4;
+    private static final int MAX_CACHED_QUERIES = 64;
+    private static final long CACHE_TTL_MILLIS = 60_000;
+
+    private final Function<String, CompletableFuture<UserProfile[]>> backend;
+    private final TaskScheduler scheduler;
+    private final String purpose;
+    private final Map<String, CachedResult> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            return size() > MAX_CACHED_QUERIES;
+        }
+    };
+
+    private record CachedResult(List<UserProfile> users, long fetchedAt) {
+    }
+
+    /**
+     * @param backend Starts the non-blocking HTTP search (e.g. AuthService::searchUsersAsync)
+     * @param purpose Cancellation tag; engines sharing a tag cancel each other's queries
+     */
+    public UserSearchEngine(Function<String, CompletableFuture<UserProfile[]>> backend, TaskScheduler scheduler, String purpose) {
+        this.backend = backend;
+        this.scheduler = scheduler;
+        this.purpose = purpose;
+    }
+
+    /**
+     * Search as the user types. Cached or locally narrowed results are delivered right away,
+     * otherwise the request is sent once typing pauses for {@link #DEBOUNCE_MILLIS}.
+     *
+     * @param onResults Receives the results, on the calling or a background thread
+     */
+    public void search(String query, Consumer<List<UserProfile>> onResults) {
+        search(query, DEBOUNCE_MILLIS, onResults);
+    }
+
+    /**
+     * Search immediately (explicit search button)
+     */
+    public void searchNow(String query, Consumer<List<UserProfile>> onResults) {
+        search(query, 0, onResults);
+    }
+
+    /**
+     * Drop the pending and in-flight query (e.g. the query was cleared)
+     */
+    public void cancel() {
+        scheduler.cancel(debouncePurpose());
+        scheduler.cancel(purpose);
+    }
+
+    public synchronized void clearCache() {
+        cache.clear();
+    }
+
+    private void search(String query, long delayMillis, Consumer<List<UserProfile>> onResults) {
+        String normalized = normalize(query);
+        List<UserProfile> local = lookup(normalized);
+        if (local != null) {
+            // Answered locally; make sure an older request cannot overwrite it
+            cancel();
+            System.out.println("[SEARCH] '" + normalized + "' answered from cache (" + local.size() + " results)");
+            onResults.accept(local);
+            return;
+        }
+        // Superseding the tracked request cancels the HTTP exchange itself
+        Runnable fetch = () -> scheduler.trackLatest(purpose, backend.apply(normalized))
+                .thenAccept(results -> {
+                    List<UserProfile> users = results != null ? Arrays.asList(results) : Collections.emptyList();
+                    store(normalized, users);
+                    onResults.accept(users);
+                })
+                .exceptionally(e -> {
+                    // Failures and cancellations are not cached
+                    System.out.println("[SEARCH] '" + normalized + "' not completed: " + e.getMessage());
+                    return null;
+                });
+        if (delayMillis <= 0) {
+            scheduler.cancel(debouncePurpose());
+            fetch.run();
+        } else {
+            scheduler.scheduleLatest(debouncePurpose(), fetch, delayMillis);
+        }
+    }
+
+    private synchronized List<UserProfile> lookup(String normalized) {
+        long now = System.currentTimeMillis();
+        CachedResult exact = cache.get(normalized);
+        if (exact != null && now - exact.fetchedAt() <= CACHE_TTL_MILLIS) {
+            return exact.users();
+        }
+        // Longest cached prefix that holds every match for its prefix
+        for (int length = normalized.length() - 1; length > 0; length--) {
+            CachedResult prefix = cache.get(normalized.substring(0, length));
+            if (prefix != null && now - prefix.fetchedAt() <= CACHE_TTL_MILLIS) {
+                if (!isPrefixComplete(prefix.users(), normalized.substring(0, length))) {
+                    return null;
+                }
+                List<UserProfile> narrowed = new ArrayList<>();
+                for (UserProfile user : prefix.users()) {
+                    if (matches(user, normalized)) {
+                        narrowed.add(user);
+                    }
+                }
+                // No prefix match: the server would try its text fallback
+                return narrowed.isEmpty() ? null : narrowed;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether a response holds every prefix match of its query: not cut off at the result
+     * cap, and every result matches the prefix (a text fallback result need not)
+     */
+    private static boolean isPrefixComplete(List<UserProfile> users, String query) {
+        if (users.isEmpty() || users.size() >= SERVER_LIMIT) {
+            return false;
+        }
+        for (UserProfile user : users) {
+            if (!matches(user, query)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void store(String normalized, List<UserProfile> users) {
+        cache.put(normalized, new CachedResult(users, System.currentTimeMillis()));
+    }
+
+    private String debouncePurpose() {
+        return purpose + ":debounce";
+    }
+
+    /**
+     * Same prefix rule as the server's search terms: the username, the display name or
+     * any display-name word starts with the query
+     */
+    private static boolean matches(UserProfile user, String normalized) {
+        if (normalize(user.getUsername()).startsWith(normalized)) {
+            return true;
+        }
+        String displayName = normalize(user.getDisplayName());
+        if (displayName.startsWith(normalized)) {
+            return true;
+        }
+        for (String word : displayName.split("\\s+")) {
+            if (word.startsWith(normalized)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -5,6 +5,7 @@ import com.e2ee.chat.frontend.model.ChatMessage;
 import com.e2ee.chat.frontend.model.UserProfile;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.tomcat.websocket.WsWebSocketContainer;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
@@ -12,6 +13,9 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.messaging.simp.stomp.StompSession;
 import org.springframework.messaging.simp.stomp.StompSessionHandler;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.WebSocketClient;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
 import org.springframework.web.socket.sockjs.client.SockJsClient;
@@ -26,35 +30,77 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public class WebSocketService {
-    private static final String WEBSOCKET_URL = "http://localhost:8080/ws"; // Changed to http for SockJS
+    // Raw WebSocket endpoint, no SockJS framing; SockJS stays as a fallback
+    private static final String NATIVE_WEBSOCKET_URL = "ws://localhost:8080/ws-native";
+    private static final String SOCKJS_URL = "http://localhost:8080/ws"; // http for SockJS
+    // Offer permessage-deflate on the native connection; the server may decline it
+    private static final boolean OFFER_COMPRESSION = true;
     private static final String SEND_ENDPOINT = "/app/chat.send";
+    private static final String SEND_BATCH_ENDPOINT = "/app/chat.sendBatch";
     private static final String KEY_EXCHANGE_ENDPOINT = "/app/chat.keyExchange";
+    private static final String SENDER_KEY_ENDPOINT = "/app/chat.senderKey";
+    private static final String HISTORY_ENDPOINT = "/app/chat.getHistory";
     private static final String CREATE_GROUP_ENDPOINT = "/app/chat.createGroup";
     private static final String PROMOTE_ADMIN_ENDPOINT = "/app/chat.promoteAdmin";
     private static final String REMOVE_PARTICIPANT_ENDPOINT = "/app/chat.removeParticipant";
     private static final String UPDATE_GROUP_NAME_ENDPOINT = "/app/chat.updateGroupName";
-
-    private WebSocketStompClient stompClient;
-    private StompSession stompSession;
+    // Purpose tag for delayed chat list refreshes, so bursts collapse into one request
+    public static final String CHAT_LIST_REFRESH = "chatListRefresh";
+    private static final long SUBSCRIBE_GATE_TIMEOUT_SECONDS = 10;
+    // STOMP CONNECT header carrying the token of the previous session
+    private static final String RESUME_TOKEN_HEADER = "resume-token";
+
+    private WebSocketStompClient nativeStompClient;
+    private WebSocketStompClient sockJsStompClient;
+    // Set for the rest of a login once the native endpoint failed but SockJS worked (e.g. a proxy)
+    private volatile boolean preferSockJs;
+    // Connected on a startup worker, used from the UI thread
+    private volatile StompSession stompSession;
     private String username;
     private String userId;
     private final ObjectMapper objectMapper;
-    private boolean connected = false;
+    private volatile boolean connected = false;
+    private volatile CompletableFuture<Void> subscribeGate = CompletableFuture.completedFuture(null);
+    // Outgoing chat messages, kept until the server acknowledges them
+    private volatile MessageOutbox outbox;
+    private final CustomStompSessionHandler sessionHandler = new CustomStompSessionHandler();
+    private final ReconnectManager reconnectManager =
+            new ReconnectManager(TaskScheduler.shared(), "websocketReconnect", this::openSession);
+    // Issued by the server on subscribe; lets a reconnect within its window skip the full replay
+    private volatile String resumeToken;
 
     private final Map<String, Chat> chats = new HashMap<>();
     private final List<UserProfile> onlineUsers = new ArrayList<>();
 
-    // Message deduplication: track processed messages by their unique signature
-    private final Map<String, Long> processedMessages = new HashMap<>();
-    private static final long MESSAGE_DEDUP_TIMEOUT = 5000; // 5 seconds (reduced from 1 minute)
+    // Server default of websocket.resume-window-ms: a resumed session replays what was sent since the drop
+    private static final long RESUME_WINDOW_MILLIS = 120_000;
+    // Message deduplication by messageId / clientTempId, O(1) per message. A duplicate can arrive
+    // as late as a resume replay after the longest reconnect backoff, or an outbox resend whose
+    // receipt was lost (every ACK timeout until the outbox gives up), so entries outlive both.
+    private static final long MESSAGE_DEDUP_TIMEOUT = Math.max(
+            RESUME_WINDOW_MILLIS + ReconnectManager.MAX_DELAY_MILLIS,
+            MessageOutbox.ACK_TIMEOUT_MILLIS * MessageOutbox.MAX_ATTEMPTS);
+    private static final int MESSAGE_DEDUP_MAX_ENTRIES = 10_000;
+    private final MessageDeduplicator processedMessages =
+            new MessageDeduplicator(MESSAGE_DEDUP_TIMEOUT, MESSAGE_DEDUP_MAX_ENTRIES);
 
     private Consumer<ChatMessage> messageHandler;
     private Consumer<List<Chat>> chatListHandler;
     private Consumer<List<UserProfile>> userListHandler;
+    private BiConsumer<String, List<ChatMessage>> historyHandler;
+    private volatile Consumer<String> undeliveredHandler;
+    private volatile Consumer<String> historyFailureHandler;
+    private volatile Runnable reconnectHandler;
+    // Sessions opened since connect(); every one after the first is a reconnect
+    private int sessionsOpened;
 
     public WebSocketService() {
         this.objectMapper = new ObjectMapper();
@@ -62,200 +108,189 @@ public class WebSocketService {
         this.objectMapper.findAndRegisterModules();
     }
 
-    public void connect(String username, String userId) {
-        this.userId = userId;
-        this.username = username;
-
-        // Create a WebSocketClient that supports SockJS
-        List<Transport> transports = new ArrayList<>();
-        transports.add(new WebSocketTransport(new StandardWebSocketClient()));
-        SockJsClient sockJsClient = new SockJsClient(transports);
+    /**
+     * Route chat messages through a durable outbox: they are queued while offline and
+     * resent until the server acknowledges them
+     */
+    public void setOutbox(MessageOutbox outbox) {
+        if (this.outbox != null) {
+            this.outbox.close();
+        }
+        this.outbox = outbox;
+        outbox.setTransport(this::sendOutboxBatch);
+        outbox.setFailureListener(entry -> {
+            Consumer<String> handler = undeliveredHandler;
+            if (handler != null) {
+                handler.accept(entry.getClientTempId());
+            }
+        });
+    }
 
-        stompClient = new WebSocketStompClient(sockJsClient);
+    /**
+     * Delay the subscriptions of the next {@link #connect} until the gate completes, so the
+     * connection handshake can run while the UI that installs the handlers is still loading
+     */
+    public void subscribeWhen(CompletableFuture<Void> gate) {
+        this.subscribeGate = gate;
+    }
 
-        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        mapper.findAndRegisterModules(); // Optional, but safe
-        converter.setObjectMapper(mapper);
-        stompClient.setMessageConverter(converter);
+    /**
+     * Connect for a newly logged-in user; if the server is unreachable or the connection
+     * drops later, reconnects with backoff until {@link #disconnect}
+     *
+     * @return true if the first attempt connected
+     */
+    public boolean connect(String username, String userId) {
+        this.userId = userId;
+        this.username = username;
+        this.resumeToken = null;
+        this.preferSockJs = false;
+        this.sessionsOpened = 0;
+        reconnectManager.start();
+
+        if (openSession()) {
+            reconnectManager.connected();
+            return true;
+        }
+        reconnectManager.connectionLost();
+        return false;
+    }
 
+    /**
+     * Open a STOMP session and subscribe every channel with the shared session handler.
+     * A resume token from the previous session is sent on CONNECT; if the server accepts
+     * it, it replays only what was missed and the chat list is not requested again.
+     *
+     * @return false if the connection could not be established
+     */
+    private boolean openSession() {
         try {
-            // Remove connectHeaders, not used with SockJS
-            // Explicitly use userId parameter for server-side principal identification
-            String fullUrl = WEBSOCKET_URL + "?userId=" + userId;
+            String token = resumeToken;
 
             System.out.println("\n========== WEBSOCKET ATTEMPTING CONNECTION ==========");
-            System.out.println("Connection URL: " + fullUrl);
             System.out.println("Profile ID (Principal): " + userId);
             System.out.println("Display Name: " + username);
-            System.out.println("Using 'userId' parameter for principal identification");
+            System.out.println("Resuming previous session: " + (token != null));
 
-            // Connect without connectHeaders
-            stompSession = stompClient.connect(fullUrl, new CustomStompSessionHandler()).get();
+            StompHeaders connectHeaders = new StompHeaders();
+            if (token != null) {
+                connectHeaders.add(RESUME_TOKEN_HEADER, token);
+            }
+            stompSession = connectStomp(connectHeaders);
             connected = true;
 
             System.out.println("\n========== WEBSOCKET CONNECTION ESTABLISHED ==========");
             System.out.println("Successfully connected to WebSocket server with userId: " + userId);
 
-            // Subscribe to personal message queue with a dedicated handler
-            StompSession.Subscription messagesSub = stompSession.subscribe("/user/queue/messages",
-                    new StompSessionHandler() {
-                        @Override
-                        public void afterConnected(@NonNull StompSession session,
-                                @NonNull StompHeaders connectedHeaders) {
-                            // Not needed - connection already established
-                        }
-
-                        @Override
-                        public void handleException(@NonNull StompSession session, @Nullable StompCommand command,
-                                @NonNull StompHeaders headers, @Nullable byte[] payload, @NonNull Throwable exception) {
-                            System.err.println("Exception in message queue handler: " + exception.getMessage());
-                            exception.printStackTrace();
-                        }
-
-                        @Override
-                        public void handleTransportError(@NonNull StompSession session, @NonNull Throwable exception) {
-                            System.err.println("Transport error in message queue handler: " + exception.getMessage());
-                            exception.printStackTrace();
-                        }
-
-                        @Override
-                        public @NonNull Type getPayloadType(@NonNull StompHeaders headers) {
-                            return Map.class;
-                        }
-
-                        @Override
-                        public void handleFrame(@NonNull StompHeaders headers, @Nullable Object payload) {
-                            System.out.println("\n========== PERSONAL MESSAGE QUEUE FRAME RECEIVED ==========");
-                            System.out.println(
-                                    "SPECIAL HANDLER: Received frame in personal queue with headers: " + headers);
-                            System.out.println("SPECIAL HANDLER: Payload class: "
-                                    + (payload != null ? payload.getClass().getName() : "null"));
-                            System.out.println("SPECIAL HANDLER: Payload content raw: " + payload);
-
-                            // Process the frame
-                            processWebSocketFrame(headers, payload);
-                        }
-                    });
-            System.out.println("Subscribed to personal message queue: " + messagesSub.getSubscriptionId());
-
-            // Subscribe to public channel for online user list
-            StompSession.Subscription publicSub = stompSession.subscribe("/topic/public",
-                    new CustomStompSessionHandler());
-            System.out.println("Subscribed to public channel: " + publicSub.getSubscriptionId());
-
-            // Subscribe to chat updates channel
-            StompSession.Subscription chatUpdatesSub = stompSession.subscribe("/user/queue/chat.updates",
-                    new CustomStompSessionHandler());
-            System.out.println("Subscribed to chat updates channel: " + chatUpdatesSub.getSubscriptionId());
-
-            // Also subscribe to a potential alternative chat notifications channel
-            StompSession.Subscription chatNotificationsSub = stompSession.subscribe("/user/queue/notifications",
-                    new CustomStompSessionHandler());
-            System.out.println("Subscribed to notifications channel: " + chatNotificationsSub.getSubscriptionId());
-
-            // Additional subscription to a topic for chat events
-            StompSession.Subscription chatTopicSub = stompSession.subscribe("/topic/chat.events",
-                    new CustomStompSessionHandler());
-            System.out.println("Subscribed to chat events topic: " + chatTopicSub.getSubscriptionId());
-
-            // Add explicit subscription for chat list response
-            StompSession.Subscription chatListSub = stompSession.subscribe("/user/queue/chat.list",
-                    new StompSessionHandler() {
-                        @Override
-                        public void afterConnected(@NonNull StompSession session,
-                                @NonNull StompHeaders connectedHeaders) {
-                            // Not needed - connection already established
-                        }
-
-                        @Override
-                        public void handleException(@NonNull StompSession session, @Nullable StompCommand command,
-                                @NonNull StompHeaders headers, @Nullable byte[] payload, @NonNull Throwable exception) {
-                            System.err.println("Exception in chat list handler: " + exception.getMessage());
-                            exception.printStackTrace();
-                        }
+            // The handshake overlapped with loading the UI; frames must not arrive before its handlers exist
+            try {
+                subscribeGate.get(SUBSCRIBE_GATE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                System.err.println("Handlers not installed after " + SUBSCRIBE_GATE_TIMEOUT_SECONDS + "s, subscribing anyway");
+            }
 
-                        @Override
-                        public void handleTransportError(@NonNull StompSession session, @NonNull Throwable exception) {
-                            System.err.println("Transport error in chat list handler: " + exception.getMessage());
-                            exception.printStackTrace();
-                        }
+            // Personal queue (messages, receipts, session token), public online list, chat events and chat lists
+            subscribe("/user/queue/messages");
+            subscribe("/topic/public");
+            subscribe("/user/queue/chat.updates");
+            subscribe("/user/queue/notifications");
+            subscribe("/topic/chat.events");
+            subscribe("/user/queue/chat.list");
+            subscribe("/user/" + userId + "/queue/chat.list");
+
+            if (token == null) {
+                // Request initial chat list
+                requestChatList();
+                System.out.println("Sent request for initial chat list");
+            }
 
-                        @Override
-                        public @NonNull Type getPayloadType(@NonNull StompHeaders headers) {
-                            return Map.class;
-                        }
+            // Deliver whatever was queued while offline or left unacknowledged
+            if (outbox != null) {
+                outbox.flush();
+            }
+            Runnable onReconnect = reconnectHandler;
+            if (sessionsOpened++ > 0 && onReconnect != null) {
+                onReconnect.run();
+            }
+            System.out.println("========== WEBSOCKET SETUP COMPLETE ==========\n");
+            return true;
 
-                        @Override
-                        public void handleFrame(@NonNull StompHeaders headers, @Nullable Object payload) {
-                            System.out.println("\n========== CHAT LIST SPECIFIC CHANNEL FRAME RECEIVED ==========");
-                            System.out.println(
-                                    "CHAT LIST HANDLER: Received frame in chat.list channel with headers: " + headers);
-                            System.out.println("CHAT LIST HANDLER: Payload class: "
-                                    + (payload != null ? payload.getClass().getName() : "null"));
-                            System.out.println("CHAT LIST HANDLER: Payload content raw: " + payload);
-
-                            // Process the frame with our main handler logic
-                            processWebSocketFrame(headers, payload);
-                        }
-                    });
-            System.out.println("Subscribed to chat list response channel: " + chatListSub.getSubscriptionId());
-
-            // Additional chat list channel subscription
-            StompSession.Subscription chatListAltSub = stompSession.subscribe("/user/" + userId + "/queue/chat.list",
-                    new StompSessionHandler() {
-                        @Override
-                        public void afterConnected(@NonNull StompSession session,
-                                @NonNull StompHeaders connectedHeaders) {
-                            // Not needed - connection already established
-                        }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while connecting to WebSocket server");
+        } catch (ExecutionException e) {
+            System.err.println("Failed to connect to WebSocket server: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // e.g. the session dropped again while subscribing
+            System.err.println("WebSocket setup failed: " + e.getMessage());
+        }
+        connected = false;
+        return false;
+    }
 
-                        @Override
-                        public void handleException(@NonNull StompSession session, @Nullable StompCommand command,
-                                @NonNull StompHeaders headers, @Nullable byte[] payload, @NonNull Throwable exception) {
-                            System.err.println("Exception in alternative chat list handler: " + exception.getMessage());
-                            exception.printStackTrace();
-                        }
+    /**
+     * Connect over the native WebSocket endpoint, falling back to SockJS if it fails
+     */
+    private StompSession connectStomp(StompHeaders connectHeaders) throws InterruptedException, ExecutionException {
+        // Explicitly use userId parameter for server-side principal identification
+        String query = "?userId=" + userId;
+        if (!preferSockJs) {
+            try {
+                System.out.println("Connection URL: " + NATIVE_WEBSOCKET_URL + query);
+                return nativeStompClient().connect(NATIVE_WEBSOCKET_URL + query, nativeHandshakeHeaders(),
+                        connectHeaders, sessionHandler).get();
+            } catch (ExecutionException e) {
+                System.err.println("Native WebSocket connection failed, trying SockJS: " + e.getMessage());
+            }
+        }
+        System.out.println("Connection URL: " + SOCKJS_URL + query);
+        StompSession session = sockJsStompClient().connect(SOCKJS_URL + query, null, connectHeaders, sessionHandler).get();
+        preferSockJs = true;
+        return session;
+    }
 
-                        @Override
-                        public void handleTransportError(@NonNull StompSession session, @NonNull Throwable exception) {
-                            System.err.println(
-                                    "Transport error in alternative chat list handler: " + exception.getMessage());
-                            exception.printStackTrace();
-                        }
+    private synchronized WebSocketStompClient nativeStompClient() {
+        if (nativeStompClient == null) {
+            // Tomcat's JSR-356 client implements permessage-deflate; the Tyrus bundle does not ship it
+            nativeStompClient = newStompClient(OFFER_COMPRESSION
+                    ? new StandardWebSocketClient(new WsWebSocketContainer())
+                    : new StandardWebSocketClient());
+        }
+        return nativeStompClient;
+    }
 
-                        @Override
-                        public @NonNull Type getPayloadType(@NonNull StompHeaders headers) {
-                            return Map.class;
-                        }
+    private static WebSocketHttpHeaders nativeHandshakeHeaders() {
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        if (OFFER_COMPRESSION) {
+            headers.setSecWebSocketExtensions(List.of(new WebSocketExtension("permessage-deflate")));
+        }
+        return headers;
+    }
 
-                        @Override
-                        public void handleFrame(@NonNull StompHeaders headers, @Nullable Object payload) {
-                            System.out.println("\n========== ALTERNATIVE CHAT LIST CHANNEL FRAME RECEIVED ==========");
-                            System.out.println(
-                                    "ALT CHAT LIST HANDLER: Received frame in userId-specific chat.list channel with headers: "
-                                            + headers);
-                            System.out.println("ALT CHAT LIST HANDLER: Payload class: "
-                                    + (payload != null ? payload.getClass().getName() : "null"));
-                            System.out.println("ALT CHAT LIST HANDLER: Payload content raw: " + payload);
-
-                            // Process the frame with our main handler logic
-                            processWebSocketFrame(headers, payload);
-                        }
-                    });
-            System.out.println(
-                    "Subscribed to alternative chat list response channel: " + chatListAltSub.getSubscriptionId());
+    private synchronized WebSocketStompClient sockJsStompClient() {
+        if (sockJsStompClient == null) {
+            // Create a WebSocketClient that supports SockJS
+            List<Transport> transports = new ArrayList<>();
+            transports.add(new WebSocketTransport(new StandardWebSocketClient()));
+            sockJsStompClient = newStompClient(new SockJsClient(transports));
+        }
+        return sockJsStompClient;
+    }
 
-            // Request initial chat list
-            requestChatList();
-            System.out.println("Sent request for initial chat list");
-            System.out.println("========== WEBSOCKET SETUP COMPLETE ==========\n");
+    private static WebSocketStompClient newStompClient(WebSocketClient webSocketClient) {
+        WebSocketStompClient client = new WebSocketStompClient(webSocketClient);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.findAndRegisterModules(); // Optional, but safe
+        converter.setObjectMapper(mapper);
+        client.setMessageConverter(converter);
+        return client;
+    }
 
-        } catch (InterruptedException | ExecutionException e) {
-            System.err.println("Failed to connect to WebSocket server: " + e.getMessage());
-            e.printStackTrace();
-        }
+    private void subscribe(String destination) {
+        StompSession.Subscription subscription = stompSession.subscribe(destination, sessionHandler);
+        System.out.println("Subscribed to " + destination + ": " + subscription.getSubscriptionId());
     }
 
     // Method to request chat list from server
@@ -286,13 +321,9 @@ public class WebSocketService {
             System.out.println("Sending payload as JSON string: " + jsonPayload);
 
             // Send the JSON string as payload
+            // The response arrives on /user/queue/chat.list, subscribed once on connect
             stompSession.send(headers, jsonPayload.getBytes(StandardCharsets.UTF_8));
 
-            // Subscribe specifically to the chat list response on a dedicated channel
-            StompSession.Subscription chatListSub = stompSession.subscribe("/user/queue/chat.list",
-                    new CustomStompSessionHandler());
-            System.out.println("Subscribed to chat list response channel: " + chatListSub.getSubscriptionId());
-
             System.out.println("Chat list request sent to server");
             System.out.println("========== CHAT LIST REQUEST SENT ==========\n");
         } catch (Exception e) {
@@ -326,6 +357,11 @@ public class WebSocketService {
     }
 
     public void disconnect() {
+        reconnectManager.stop();
+        resumeToken = null;
+        if (outbox != null) {
+            outbox.close();
+        }
         if (stompSession != null && stompSession.isConnected()) {
             stompSession.disconnect();
             connected = false;
@@ -333,7 +369,14 @@ public class WebSocketService {
     }
 
     public String sendMessage(String chatId, String content) {
-        if (!connected || stompSession == null) {
+        return sendMessage(chatId, content, UUID.randomUUID().toString());
+    }
+
+    /**
+     * @param clientTempId ID the caller already shows the message under
+     */
+    public String sendMessage(String chatId, String content, String clientTempId) {
+        if (outbox == null && (!connected || stompSession == null)) {
             System.err.println("[DEBUG] sendMessage: Not connected to WebSocket server");
             return null;
         }
@@ -352,9 +395,6 @@ public class WebSocketService {
             System.out.println("[DEBUG] sendMessage: Sending to group chat: " + chat.getGroupName());
         }
 
-        // Generate a client-side temporary ID for deduplication
-        String clientTempId = UUID.randomUUID().toString();
-
         // Create a map with field names that match the backend model
         Map<String, Object> messageMap = new HashMap<>();
         messageMap.put("messageId", UUID.randomUUID().toString()); // Using UUID instead of id
@@ -374,19 +414,17 @@ public class WebSocketService {
             System.out.println("[DEBUG] sendMessage: Message map: " + messageMap);
             String jsonPayload = objectMapper.writeValueAsString(messageMap);
             System.out.println("[DEBUG] sendMessage: JSON payload: " + jsonPayload);
-            stompSession.send(SEND_ENDPOINT, jsonPayload.getBytes(StandardCharsets.UTF_8));
+            if (outbox != null) {
+                // Persisted first; sent now if connected, otherwise on the next connect
+                outbox.enqueue(clientTempId, chatId, jsonPayload);
+            } else {
+                stompSession.send(SEND_ENDPOINT, jsonPayload.getBytes(StandardCharsets.UTF_8));
+            }
             System.out.println("[DEBUG] sendMessage: Message sent successfully");
 
-            // For group chats, request an updated chat list after sending
+            // For group chats, request an updated chat list after sending; a burst of sends refreshes once
             if (isGroupChat) {
-                new Thread(() -> {
-                    try {
-                        Thread.sleep(500); // Short delay to ensure message is processed
-                        requestChatList();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }).start();
+                TaskScheduler.shared().scheduleLatest(CHAT_LIST_REFRESH, this::requestChatList, 500);
             }
 
             return clientTempId;
@@ -398,7 +436,15 @@ public class WebSocketService {
     }
 
     public String sendEncryptedMessage(String chatId, String encryptedContent, String encryptedKey, String iv) {
-        if (!connected || stompSession == null) {
+        return sendEncryptedMessage(chatId, encryptedContent, encryptedKey, iv, UUID.randomUUID().toString());
+    }
+
+    /**
+     * @param clientTempId ID the caller already shows the message under
+     */
+    public String sendEncryptedMessage(String chatId, String encryptedContent, String encryptedKey, String iv,
+                                       String clientTempId) {
+        if (outbox == null && (!connected || stompSession == null)) {
             System.err.println("[DEBUG] sendEncryptedMessage: Not connected to WebSocket server");
             return null;
         }
@@ -411,9 +457,6 @@ public class WebSocketService {
         System.out.println("[DEBUG] sendEncryptedMessage: IV: " + iv);
         System.out.println("[DEBUG] sendEncryptedMessage: Endpoint: " + SEND_ENDPOINT);
 
-        // Generate a client-side temporary ID for deduplication
-        String clientTempId = UUID.randomUUID().toString();
-
         // Create a map with field names that match the backend model
         Map<String, Object> messageMap = new HashMap<>();
         messageMap.put("messageId", UUID.randomUUID().toString()); // Using UUID instead of id
@@ -431,7 +474,12 @@ public class WebSocketService {
             System.out.println("[DEBUG] sendEncryptedMessage: Message map: " + messageMap);
             String jsonPayload = objectMapper.writeValueAsString(messageMap);
             System.out.println("[DEBUG] sendEncryptedMessage: JSON payload: " + jsonPayload);
-            stompSession.send(SEND_ENDPOINT, jsonPayload.getBytes(StandardCharsets.UTF_8));
+            if (outbox != null) {
+                // Persisted first; sent now if connected, otherwise on the next connect
+                outbox.enqueue(clientTempId, chatId, jsonPayload);
+            } else {
+                stompSession.send(SEND_ENDPOINT, jsonPayload.getBytes(StandardCharsets.UTF_8));
+            }
             System.out.println("[DEBUG] sendEncryptedMessage: Encrypted message sent successfully");
             return clientTempId;
         } catch (Exception e) {
@@ -442,6 +490,34 @@ public class WebSocketService {
         }
     }
 
+    /**
+     * Outbox transport: a single message goes to /app/chat.send, several at once (catching
+     * up after a reconnect) go to /app/chat.sendBatch in one frame
+     */
+    private boolean sendOutboxBatch(List<MessageOutbox.Entry> batch) {
+        StompSession session = stompSession;
+        if (!connected || session == null || !session.isConnected()) {
+            return false;
+        }
+        try {
+            if (batch.size() == 1) {
+                session.send(SEND_ENDPOINT, batch.get(0).getPayload().getBytes(StandardCharsets.UTF_8));
+            } else {
+                List<String> payloads = new ArrayList<>();
+                for (MessageOutbox.Entry entry : batch) {
+                    payloads.add(entry.getPayload());
+                }
+                Map<String, Object> frame = new HashMap<>();
+                frame.put("messages", payloads);
+                session.send(SEND_BATCH_ENDPOINT, frame);
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("[OUTBOX] Sending " + batch.size() + " messages failed: " + e.getMessage());
+            return false;
+        }
+    }
+
     public void sendKeyExchange(String chatId, String publicKey) {
         if (!connected || stompSession == null) {
             System.err.println("[DEBUG] sendKeyExchange: Not connected to WebSocket server");
@@ -476,6 +552,96 @@ public class WebSocketService {
         }
     }
 
+    /**
+     * Send a group sender-key distribution or key request to a single member.
+     * Relayed by the server to the member's personal queue as a KEY_EXCHANGE message.
+     */
+    public void sendSenderKey(String groupId, String recipientId, String content) {
+        if (!connected || stompSession == null) {
+            System.err.println("[SENDER_KEY] Not connected, dropped key message for group " + groupId);
+            return;
+        }
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("chatId", groupId);
+        payload.put("senderId", userId);
+        payload.put("recipientId", recipientId);
+        payload.put("content", content);
+        try {
+            stompSession.send(SENDER_KEY_ENDPOINT, payload);
+        } catch (Exception e) {
+            System.err.println("[SENDER_KEY] Sending key message for group " + groupId + " failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Request one page of a chat's history; the reply arrives as a CHAT_HISTORY frame
+     * 
+     * @param chatId The chat ID
+     * @param offset Number of newest messages to skip
+     * @param limit Page size
+     */
+    public void requestChatHistory(String chatId, int offset, int limit) {
+        requestChatHistory(chatId, offset, limit, null, null);
+    }
+
+    /**
+     * Request the page of messages older than a cursor (newest first, at most limit)
+     *
+     * @param before Server timestamp of the oldest message already held
+     * @param beforeId Its message ID, which orders messages sharing that timestamp
+     */
+    public void requestChatHistoryBefore(String chatId, LocalDateTime before, String beforeId, int limit) {
+        requestChatHistory(chatId, 0, limit, null, Map.of("before", before.toString(), "beforeId", beforeId));
+    }
+
+    /**
+     * Request the messages of a chat from a sync cursor on (newest first, at most limit);
+     * used to catch up a chat restored from the local snapshot
+     *
+     * @param since Timestamp of the newest message already held
+     */
+    public void requestChatHistorySince(String chatId, LocalDateTime since, int limit) {
+        requestChatHistory(chatId, 0, limit, since, null);
+    }
+
+    /**
+     * A request that cannot be sent is reported to the history failure handler, so the
+     * caller may ask again later
+     */
+    private void requestChatHistory(String chatId, int offset, int limit, LocalDateTime since, Map<String, String> cursor) {
+        if (!connected || stompSession == null) {
+            System.err.println("[HISTORY] Not connected, cannot request history of chat " + chatId);
+            historyRequestFailed(chatId);
+            return;
+        }
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("chatId", chatId);
+        payload.put("requesterId", userId);
+        payload.put("offset", offset);
+        payload.put("limit", limit);
+        if (since != null) {
+            payload.put("since", since.toString());
+        }
+        if (cursor != null) {
+            payload.putAll(cursor);
+        }
+        try {
+            stompSession.send(HISTORY_ENDPOINT, payload);
+        } catch (Exception e) {
+            System.err.println("[HISTORY] Requesting history of chat " + chatId + " failed: " + e.getMessage());
+            e.printStackTrace();
+            historyRequestFailed(chatId);
+        }
+    }
+
+    private void historyRequestFailed(String chatId) {
+        Consumer<String> handler = historyFailureHandler;
+        if (handler != null && chatId != null) {
+            handler.accept(chatId);
+        }
+    }
+
     public void sendCreateChatMessage(Map<String, Object> payload) {
         if (!connected || stompSession == null) {
             System.err.println("Cannot send create chat message - not connected to WebSocket server");
@@ -560,17 +726,8 @@ public class WebSocketService {
                 stompSession.send(CREATE_GROUP_ENDPOINT, payload);
                 System.out.println("Group chat creation request sent");
 
-                // Request an updated chat list after a short delay
-                new Thread(() -> {
-                    try {
-                        // Wait 1 second to give the server time to process
-                        Thread.sleep(1000);
-                        // Request updated chat list
-                        requestChatList();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }).start();
+                // Request an updated chat list once the server had time to process it
+                TaskScheduler.shared().scheduleLatest(CHAT_LIST_REFRESH, this::requestChatList, 1000);
             } else {
                 System.err.println("Cannot create group chat - not connected to WebSocket server");
             }
@@ -665,6 +822,34 @@ public class WebSocketService {
         this.userListHandler = handler;
     }
 
+    /**
+     * Receives history pages on the WebSocket thread, so decryption can stay off the UI thread
+     */
+    public void setHistoryHandler(BiConsumer<String, List<ChatMessage>> handler) {
+        this.historyHandler = handler;
+    }
+
+    /**
+     * Receives the chat ID of every history request that could not be sent or that the server refused
+     */
+    public void setHistoryFailureHandler(Consumer<String> handler) {
+        this.historyFailureHandler = handler;
+    }
+
+    /**
+     * Runs after a dropped connection was re-established
+     */
+    public void setReconnectHandler(Runnable handler) {
+        this.reconnectHandler = handler;
+    }
+
+    /**
+     * Receives the clientTempId of every message the outbox gave up on
+     */
+    public void setUndeliveredHandler(Consumer<String> handler) {
+        this.undeliveredHandler = handler;
+    }
+
     public boolean isConnected() {
         return connected;
     }
@@ -683,36 +868,9 @@ public class WebSocketService {
         // But in this implementation we're using simple username authentication
     }
 
-    // Helper method to process WebSocket frames directly from inner anonymous
-    // classes
-    private void processWebSocketFrame(StompHeaders headers, Object payload) {
-        // Call our handler's implementation directly
-        if (stompSession != null && stompSession.isConnected()) {
-            try {
-                // Find the custom handler instance that's currently registered
-                CustomStompSessionHandler handler = findActiveSessionHandler();
-                if (handler != null) {
-                    // Call its handleFrame method directly
-                    handler.handleFrame(headers, payload);
-                } else {
-                    // Fallback: Create a new handler just for processing this frame
-                    new CustomStompSessionHandler().handleFrame(headers, payload);
-                }
-            } catch (Exception e) {
-                System.err.println("Error processing frame via helper: " + e.getMessage());
-                e.printStackTrace();
-            }
-        }
-    }
-
-    // Find the current active session handler
-    private CustomStompSessionHandler findActiveSessionHandler() {
-        // In this basic implementation, we just create a new one
-        // In a more complex app, you might want to maintain a reference to the active
-        // handler
-        return new CustomStompSessionHandler();
-    }
-
+    /**
+     * One handler for the session and every subscription, reused across reconnects
+     */
     private class CustomStompSessionHandler implements StompSessionHandler {
         @Override
         public void afterConnected(@NonNull StompSession session, @NonNull StompHeaders connectedHeaders) {
@@ -736,16 +894,19 @@ public class WebSocketService {
         @Override
         public void handleException(@NonNull StompSession session, @Nullable StompCommand command,
                 @NonNull StompHeaders headers, @Nullable byte[] payload, @NonNull Throwable exception) {
+            // A frame could not be handled; the session itself is still up
             System.err.println("Exception in WebSocket session: " + exception.getMessage());
             exception.printStackTrace();
-            connected = false;
         }
 
         @Override
         public void handleTransportError(@NonNull StompSession session, @NonNull Throwable exception) {
             System.err.println("Transport error in WebSocket session: " + exception.getMessage());
-            exception.printStackTrace();
+            if (session != stompSession || !connected) {
+                return; // A session we already replaced, or a drop already being handled
+            }
             connected = false;
+            reconnectManager.connectionLost();
         }
 
         @Override
@@ -994,6 +1155,30 @@ public class WebSocketService {
                                 System.out.println("WEBSOCKET DEBUG: Processing CHAT_LIST message");
                                 handleChatListMessage(messageMap);
                                 break;
+                            case "CHAT_HISTORY":
+                                handleChatHistoryMessage(messageMap);
+                                break;
+                            case "SESSION":
+                                // Keep the token for resuming after a short disconnect
+                                resumeToken = (String) messageMap.get("resumeToken");
+                                System.out.println("[RECONNECT] Session token received, resumed: " + messageMap.get("resumed"));
+                                break;
+                            case "MESSAGE_RECEIPT":
+                                // The server stored one of our messages; stop resending it
+                                if (outbox != null) {
+                                    outbox.acknowledge((String) messageMap.get("clientTempId"));
+                                }
+                                break;
+                            case "CHAT_HISTORY_ERROR":
+                                System.err.println("History request for chat " + messageMap.get("chatId") + " failed: " + messageMap.get("error"));
+                                historyRequestFailed((String) messageMap.get("chatId"));
+                                break;
+                            case "MESSAGE_REJECTED":
+                                // The server will never store it; resending cannot help
+                                if (outbox != null) {
+                                    outbox.reject((String) messageMap.get("clientTempId"), (String) messageMap.get("reason"));
+                                }
+                                break;
                             default:
                                 System.out.println("Received unknown message type: " + type);
                         }
@@ -1059,34 +1244,19 @@ public class WebSocketService {
             System.out.println("Content: " + message.getContent());
             System.out.println("ClientTempId: " + message.getClientTempId());
 
-            // Create a unique signature for this message for deduplication
-            // Use timestamp to allow same content to be sent multiple times
-            String messageSignature = String.format("%s:%s:%s:%s:%s",
-                    message.getSenderId(),
-                    message.getChatId(),
-                    message.getContent(),
-                    message.getClientTempId() != null ? message.getClientTempId() : "",
-                    message.getTimestamp() != null ? message.getTimestamp().toString() : System.currentTimeMillis());
-
-            long currentTime = System.currentTimeMillis();
-
-            // Check if we've already processed this message recently
-            if (processedMessages.containsKey(messageSignature)) {
-                long lastProcessed = processedMessages.get(messageSignature);
-                if (currentTime - lastProcessed < MESSAGE_DEDUP_TIMEOUT) {
-                    System.out.println(
-                            "WEBSOCKET DEDUP: Skipping duplicate message (signature: " + messageSignature + ")");
-                    return;
-                }
+            // Our own echo doubles as the receipt, even when it is a duplicate
+            if (outbox != null && userId != null && userId.equals(message.getSenderId())) {
+                outbox.acknowledge(message.getClientTempId());
             }
 
-            // Mark this message as processed
-            processedMessages.put(messageSignature, currentTime);
-
-            // Clean up old entries to prevent memory leaks
-            processedMessages.entrySet().removeIf(entry -> currentTime - entry.getValue() > MESSAGE_DEDUP_TIMEOUT);
+            // Drop frames we have already seen (keyed by messageId / clientTempId)
+            if (!processedMessages.markIfNew(message)) {
+                System.out.println("WEBSOCKET DEDUP: Skipping duplicate message (id: " + message.getId()
+                        + ", clientTempId: " + message.getClientTempId() + ")");
+                return;
+            }
 
-            System.out.println("WEBSOCKET DEDUP: Processing new message (signature: " + messageSignature + ")");
+            System.out.println("WEBSOCKET DEDUP: Processing new message (id: " + message.getId() + ")");
             System.out.println("ClientTempId: " + message.getClientTempId());
 
             // Mark message as own if sent by current user
@@ -1136,14 +1306,7 @@ public class WebSocketService {
                 chats.put(chatId, chat);
 
                 // Request full chat list from server to ensure we have complete chat info
-                new Thread(() -> {
-                    try {
-                        Thread.sleep(500); // Short delay
-                        requestChatList();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }).start();
+                TaskScheduler.shared().scheduleLatest(CHAT_LIST_REFRESH, this::requestChatList, 500);
 
                 // Debug output
                 System.out.println("[WebSocketService] Created new chat for message. ChatId: " + chatId +
@@ -1183,6 +1346,59 @@ public class WebSocketService {
             System.out.println("======= CHAT MESSAGE HANDLED =======\n");
         }
 
+        @SuppressWarnings("unchecked")
+        private void handleChatHistoryMessage(Map<String, Object> messageMap) {
+            String chatId = (String) messageMap.get("chatId");
+            Object rawMessages = messageMap.get("messages");
+            if (chatId == null || !(rawMessages instanceof List)) {
+                System.err.println("[HISTORY] Malformed CHAT_HISTORY frame: " + messageMap.keySet());
+                return;
+            }
+
+            List<ChatMessage> page = new ArrayList<>();
+            for (Object raw : (List<Object>) rawMessages) {
+                if (!(raw instanceof Map)) {
+                    continue;
+                }
+                Map<String, Object> messageData = (Map<String, Object>) raw;
+                ChatMessage message = new ChatMessage();
+                message.setId((String) messageData.get("id"));
+                message.setChatId(chatId);
+                message.setSenderId((String) messageData.get("senderId"));
+                message.setContent((String) messageData.get("content"));
+                message.setType("ENCRYPTED_CHAT".equals(messageData.get("type"))
+                        ? ChatMessage.MessageType.ENCRYPTED_CHAT
+                        : ChatMessage.MessageType.MESSAGE);
+                message.setTimestamp(parseTimestamp(messageData.get("timestamp")));
+                message.setOwn(message.getSenderId() != null && message.getSenderId().equals(userId));
+                page.add(message);
+            }
+
+            if (historyHandler != null) {
+                historyHandler.accept(chatId, page);
+            }
+        }
+
+        private LocalDateTime parseTimestamp(Object timestampObj) {
+            try {
+                if (timestampObj instanceof String) {
+                    return LocalDateTime.parse((String) timestampObj);
+                }
+                if (timestampObj instanceof List) {
+                    // Jackson's array form: [year, month, day, hour, minute, second, nano]
+                    List<?> parts = (List<?>) timestampObj;
+                    int[] values = new int[7];
+                    for (int i = 0; i < values.length && i < parts.size(); i++) {
+                        values[i] = ((Number) parts.get(i)).intValue();
+                    }
+                    return LocalDateTime.of(values[0], values[1], values[2], values[3], values[4], values[5], values[6]);
+                }
+            } catch (Exception e) {
+                System.err.println("[HISTORY] Unparseable timestamp: " + timestampObj);
+            }
+            return LocalDateTime.now();
+        }
+
         private void handleUserListMessage(Map<String, Object> messageMap) {
             String content = (String) messageMap.get("content");
             if (content != null && !content.isEmpty()) {
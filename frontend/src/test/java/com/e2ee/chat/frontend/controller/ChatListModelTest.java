@@ -0,0 +1,128 @@
+package com.e2ee.chat.frontend.controller;
+
+import com.e2ee.chat.frontend.model.Chat;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.scene.control.SelectionModel;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatListModelTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final ObservableList<Chat> chats = FXCollections.observableArrayList();
+    private final AtomicReference<Chat> selected = new AtomicReference<>();
+    @SuppressWarnings("unchecked")
+    private final SelectionModel<Chat> selection = mock(SelectionModel.class);
+    private final ChatListModel model = new ChatListModel(chats, selection);
+
+    ChatListModelTest() {
+        // Behaves like the ListView's selection: removing the selected row clears it
+        when(selection.getSelectedItem()).thenAnswer(invocation -> selected.get());
+        doAnswer(invocation -> {
+            selected.set(invocation.getArgument(0));
+            return null;
+        }).when(selection).select(any(Chat.class));
+        chats.addListener((ListChangeListener<Chat>) change -> {
+            while (change.next()) {
+                if (change.getRemoved().contains(selected.get()) && !change.getAddedSubList().contains(selected.get())) {
+                    selected.set(null);
+                }
+            }
+        });
+    }
+
+    private static Chat chat(String chatId, int minutes) {
+        Chat chat = new Chat();
+        chat.setChatId(chatId);
+        chat.setParticipants(List.of("alice", "bob"));
+        chat.setUpdatedAt(T0.plusMinutes(minutes));
+        return chat;
+    }
+
+    private List<String> order() {
+        return chats.stream().map(Chat::getChatId).toList();
+    }
+
+    @Test
+    void snapshotIsSortedMostRecentFirst() {
+        List<Chat> added = model.apply(List.of(chat("a", 1), chat("b", 3), chat("c", 2)));
+
+        assertEquals(List.of("b", "c", "a"), order());
+        assertEquals(3, added.size());
+    }
+
+    @Test
+    void updatedChatMovesButKeepsItsIdentity() {
+        model.apply(List.of(chat("a", 1), chat("b", 3), chat("c", 2)));
+        Chat a = model.get("a");
+
+        List<Chat> added = model.apply(List.of(chat("a", 4), chat("b", 3), chat("c", 2)));
+
+        assertEquals(List.of("a", "b", "c"), order());
+        assertSame(a, chats.get(0));
+        assertEquals(T0.plusMinutes(4), a.getUpdatedAt());
+        assertTrue(added.isEmpty());
+    }
+
+    @Test
+    void unchangedSnapshotTouchesNoRow() {
+        model.apply(List.of(chat("a", 1), chat("b", 3)));
+        AtomicInteger changes = new AtomicInteger();
+        chats.addListener((ListChangeListener<Chat>) change -> changes.incrementAndGet());
+
+        model.apply(List.of(chat("a", 1), chat("b", 3)));
+
+        assertEquals(0, changes.get());
+    }
+
+    @Test
+    void chatsMissingFromTheSnapshotAreRemoved() {
+        model.apply(List.of(chat("a", 1), chat("b", 3)));
+
+        model.apply(List.of(chat("b", 3)));
+
+        assertEquals(List.of("b"), order());
+        assertNull(model.get("a"));
+    }
+
+    @Test
+    void selectedChatStaysSelectedWhenItMoves() {
+        model.apply(List.of(chat("a", 1), chat("b", 3)));
+        Chat a = model.get("a");
+        selection.select(a);
+
+        model.apply(List.of(chat("a", 5), chat("b", 3)));
+
+        assertEquals(List.of("a", "b"), order());
+        assertSame(a, selected.get());
+    }
+
+    @Test
+    void addingAKnownChatOnlyRepositionsIt() {
+        model.apply(List.of(chat("a", 1), chat("b", 3)));
+        Chat a = model.get("a");
+        a.setUpdatedAt(T0.plusMinutes(6));
+
+        model.add(chat("a", 6));
+
+        assertEquals(List.of("a", "b"), order());
+        assertSame(a, chats.get(0));
+        assertEquals(2, chats.size());
+    }
+}
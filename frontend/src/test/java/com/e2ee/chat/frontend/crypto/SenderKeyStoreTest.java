@@ -0,0 +1,133 @@
+package com.e2ee.chat.frontend.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SenderKeyStoreTest {
+
+    private static final String GROUP = "group-1";
+
+    private final IdentityKeys aliceKeys = IdentityKeys.generate();
+    private final IdentityKeys bobKeys = IdentityKeys.generate();
+    private final SenderKeyStore alice = new SenderKeyStore("alice");
+    private final SenderKeyStore bob = new SenderKeyStore("bob");
+
+    private void distributeAliceToBob(SenderKeyStore receiver) {
+        deliver(alice.prepareDistribution(GROUP, List.of("alice", "bob")), receiver);
+    }
+
+    private void deliver(SenderKeyStore.PendingDistribution pending, SenderKeyStore receiver) {
+        String distribution = pending.wrapFor("bob", aliceKeys, PublicKeyBundle.parse(bobKeys.publicKeyBundle()));
+        receiver.processDistribution("alice", distribution, bobKeys, PublicKeyBundle.parse(aliceKeys.publicKeyBundle()));
+    }
+
+    private List<String> send(int count) {
+        List<String> envelopes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            envelopes.add(alice.encrypt(GROUP, "message " + i));
+        }
+        return envelopes;
+    }
+
+    @Test
+    void messagesDecryptOutOfOrderAndMoreThanOnce() {
+        distributeAliceToBob(bob);
+        List<String> envelopes = send(3);
+
+        assertEquals("message 2", bob.decrypt(GROUP, "alice", envelopes.get(2)));
+        assertEquals("message 0", bob.decrypt(GROUP, "alice", envelopes.get(0)));
+        assertEquals("message 0", bob.decrypt(GROUP, "alice", envelopes.get(0)));
+        assertEquals("message 2", bob.decrypt(GROUP, "alice", envelopes.get(2)));
+        assertEquals("message 1", bob.decrypt(GROUP, "alice", envelopes.get(1)));
+    }
+
+    @Test
+    void distributionPreparedBeforeTheNextMessageCoversIt() {
+        alice.encrypt(GROUP, "before bob joined");
+        SenderKeyStore.PendingDistribution pending = alice.prepareDistribution(GROUP, List.of("alice", "bob"));
+        String first = alice.encrypt(GROUP, "welcome");
+        // Wrapped later, e.g. once bob's keys were fetched
+        deliver(pending, bob);
+
+        assertEquals("welcome", bob.decrypt(GROUP, "alice", first));
+        assertTrue(alice.prepareDistribution(GROUP, List.of("alice", "bob")).isEmpty());
+    }
+
+    @Test
+    void failedMemberIsIncludedAgainAfterAReset() {
+        alice.prepareDistribution(GROUP, List.of("alice", "bob"));
+        alice.resetDistribution(GROUP, "bob");
+
+        assertEquals(List.of("bob"), alice.prepareDistribution(GROUP, List.of("alice", "bob")).getMembers());
+    }
+
+    @Test
+    void senderReadsOwnMessages() {
+        String envelope = alice.encrypt(GROUP, "hello");
+
+        assertEquals("hello", alice.decrypt(GROUP, "alice", envelope));
+        assertEquals("hello", alice.decrypt(GROUP, "alice", envelope));
+    }
+
+    @Test
+    void keyEvictedFromTheCacheIsDerivedAgain() {
+        distributeAliceToBob(bob);
+        List<String> envelopes = send(2001);
+
+        assertEquals("message 2000", bob.decrypt(GROUP, "alice", envelopes.get(2000)));
+        assertEquals("message 0", bob.decrypt(GROUP, "alice", envelopes.get(0)));
+        assertEquals("message 1000", bob.decrypt(GROUP, "alice", envelopes.get(1000)));
+    }
+
+    @Test
+    void exportedChainsDecryptHistoryAfterARestart() {
+        AtomicInteger changes = new AtomicInteger();
+        bob.setChangeListener(changes::incrementAndGet);
+        distributeAliceToBob(bob);
+        List<String> envelopes = send(2);
+        bob.decrypt(GROUP, "alice", envelopes.get(1));
+        assertEquals(1, changes.get());
+
+        SenderKeyStore restarted = new SenderKeyStore("bob", bob.exportChains());
+
+        assertEquals("message 0", restarted.decrypt(GROUP, "alice", envelopes.get(0)));
+        assertEquals("message 1", restarted.decrypt(GROUP, "alice", envelopes.get(1)));
+    }
+
+    @Test
+    void rotatedChainKeepsOlderMessagesReadable() {
+        distributeAliceToBob(bob);
+        String before = alice.encrypt(GROUP, "before");
+        // carol joined and left: the chain rotates and bob gets the new one
+        alice.prepareDistribution(GROUP, List.of("alice", "bob", "carol"));
+        SenderKeyStore.PendingDistribution rotated = alice.prepareDistribution(GROUP, Set.of("alice", "bob"));
+        assertEquals(List.of("bob"), rotated.getMembers());
+        deliver(rotated, bob);
+        String after = alice.encrypt(GROUP, "after");
+
+        assertEquals("after", bob.decrypt(GROUP, "alice", after));
+        assertEquals("before", bob.decrypt(GROUP, "alice", before));
+    }
+
+    @Test
+    void missingChainIsRequestedOnce() {
+        List<String> envelopes = send(2);
+
+        SenderKeyStore.MissingSenderKeyException first = assertThrows(SenderKeyStore.MissingSenderKeyException.class,
+                () -> bob.decrypt(GROUP, "alice", envelopes.get(0)));
+        SenderKeyStore.MissingSenderKeyException second = assertThrows(SenderKeyStore.MissingSenderKeyException.class,
+                () -> bob.decrypt(GROUP, "alice", envelopes.get(1)));
+
+        assertTrue(bob.markRequested(first));
+        assertFalse(bob.markRequested(second));
+    }
+}
@@ -0,0 +1,131 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.model.Chat;
+import com.e2ee.chat.frontend.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatSnapshotStoreTest {
+
+    private static final SecretKey KEY = new SecretKeySpec(new byte[32], "AES");
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @TempDir
+    Path directory;
+
+    private final TaskScheduler scheduler = new TaskScheduler(1);
+
+    private ChatSnapshotStore open(SecretKey key, int messagesPerChat) {
+        return new ChatSnapshotStore(directory, "alice", key, messagesPerChat, scheduler);
+    }
+
+    private static Chat chat(String chatId, String groupName) {
+        Chat chat = new Chat();
+        chat.setChatId(chatId);
+        chat.setChatType("group");
+        chat.setGroupName(groupName);
+        chat.setParticipants(List.of("alice", "bob"));
+        chat.setUpdatedAt(T0);
+        return chat;
+    }
+
+    private static ChatMessage message(String id, String content, int minutes) {
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        message.setChatId("c1");
+        message.setSenderId("bob");
+        message.setType(ChatMessage.MessageType.ENCRYPTED_CHAT);
+        message.setContent(content);
+        message.setTimestamp(T0.plusMinutes(minutes));
+        return message;
+    }
+
+    private String fileContents() throws Exception {
+        return new String(Files.readAllBytes(directory.resolve("snapshot-alice.log")), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    void snapshotIsSealedOnDiskAndRestored() throws Exception {
+        ChatSnapshotStore store = open(KEY, 10);
+        store.recordChats(List.of(chat("c1", "Project Falcon")));
+        store.recordMessages("c1", List.of(message("m1", "the launch code is 1234", 1)));
+        store.flush();
+
+        String file = fileContents();
+        assertFalse(file.contains("launch code"));
+        assertFalse(file.contains("Project Falcon"));
+
+        List<Chat> restored = open(KEY, 10).load();
+        assertEquals(1, restored.size());
+        assertEquals("Project Falcon", restored.get(0).getGroupName());
+        assertEquals("the launch code is 1234", restored.get(0).getMessages().get(0).getContent());
+        assertEquals(T0.plusMinutes(1), ChatSnapshotStore.syncCursor(restored.get(0)));
+    }
+
+    @Test
+    void anotherKeyReadsNothing() {
+        ChatSnapshotStore store = open(KEY, 10);
+        store.recordChats(List.of(chat("c1", "Project Falcon")));
+        store.flush();
+
+        List<Chat> restored = open(new SecretKeySpec(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32}, "AES"), 10).load();
+
+        assertTrue(restored.isEmpty());
+    }
+
+    @Test
+    void tornTailKeepsTheRecordsBeforeIt() throws Exception {
+        ChatSnapshotStore store = open(KEY, 10);
+        store.recordChats(List.of(chat("c1", "Project Falcon")));
+        store.recordMessages("c1", List.of(message("m1", "first", 1)));
+        store.flush();
+        Files.write(directory.resolve("snapshot-alice.log"), new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        List<Chat> restored = open(KEY, 10).load();
+
+        assertEquals(1, restored.size());
+        assertEquals("first", restored.get(0).getMessages().get(0).getContent());
+    }
+
+    @Test
+    void placeholdersAndUnacknowledgedMessagesAreNotStored() {
+        ChatSnapshotStore store = open(KEY, 10);
+        store.recordChats(List.of(chat("c1", "Project Falcon")));
+        store.recordMessages("c1", List.of(
+                message("m1", HistoryDecryptor.UNREADABLE_PLACEHOLDER, 1),
+                message(null, "pending", 2),
+                message("m3", "stored", 3)));
+        store.flush();
+
+        List<ChatMessage> restored = open(KEY, 10).load().get(0).getMessages();
+
+        assertEquals(1, restored.size());
+        assertEquals("stored", restored.get(0).getContent());
+    }
+
+    @Test
+    void onlyTheNewestMessagesOfAChatAreKept() {
+        ChatSnapshotStore store = open(KEY, 2);
+        store.recordChats(List.of(chat("c1", "Project Falcon")));
+        store.recordMessages("c1", List.of(message("m3", "third", 3), message("m1", "first", 1), message("m2", "second", 2)));
+        store.flush();
+
+        List<ChatMessage> restored = open(KEY, 2).load().get(0).getMessages();
+
+        assertEquals(List.of("second", "third"), restored.stream().map(ChatMessage::getContent).toList());
+    }
+}
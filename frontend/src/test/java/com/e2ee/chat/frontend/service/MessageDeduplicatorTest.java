@@ -0,0 +1,73 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageDeduplicatorTest {
+
+    private static ChatMessage message(String id, String clientTempId, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        message.setClientTempId(clientTempId);
+        message.setChatId("c1");
+        message.setSenderId("alice");
+        message.setTimestamp(LocalDateTime.of(2026, 1, 1, 12, 0));
+        message.setContent(content);
+        return message;
+    }
+
+    @Test
+    void duplicateIsDroppedUntilTheTtlHasPassed() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(1_000, 100);
+
+        assertTrue(deduplicator.markIfNew("id:m1", 0));
+        assertFalse(deduplicator.markIfNew("id:m1", 1_000));
+        assertTrue(deduplicator.markIfNew("id:m1", 1_001));
+    }
+
+    @Test
+    void expiryOnlyDropsEntriesOlderThanTheTtl() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(1_000, 100);
+        deduplicator.markIfNew("id:m1", 0);
+        deduplicator.markIfNew("id:m2", 600);
+
+        assertTrue(deduplicator.markIfNew("id:m3", 1_200));
+
+        assertEquals(2, deduplicator.size());
+        assertFalse(deduplicator.markIfNew("id:m2", 1_300));
+    }
+
+    @Test
+    void capDropsTheOldestEntry() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(60_000, 10_000);
+        for (int i = 0; i <= 10_000; i++) {
+            assertTrue(deduplicator.markIfNew("id:m" + i, i));
+        }
+
+        assertEquals(10_000, deduplicator.size());
+        assertFalse(deduplicator.markIfNew("id:m10000", 10_001));
+        assertTrue(deduplicator.markIfNew("id:m0", 10_002));
+    }
+
+    @Test
+    void messagesAreKeyedByIdThenClientTempIdThenSignature() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(60_000, 100);
+
+        assertTrue(deduplicator.markIfNew(message("m1", "t1", "hi")));
+        // Same server ID with a different body is still the same message
+        assertFalse(deduplicator.markIfNew(message("m1", "t2", "edited")));
+
+        assertTrue(deduplicator.markIfNew(message(null, "t3", "hi")));
+        assertFalse(deduplicator.markIfNew(message(null, "t3", "hi")));
+
+        assertTrue(deduplicator.markIfNew(message(null, null, "hi")));
+        assertFalse(deduplicator.markIfNew(message(null, null, "hi")));
+        assertTrue(deduplicator.markIfNew(message(null, null, "hello")));
+    }
+}
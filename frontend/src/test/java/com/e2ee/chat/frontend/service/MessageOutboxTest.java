@@ -0,0 +1,116 @@
+package com.e2ee.chat.frontend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageOutboxTest {
+
+    private static final SecretKey KEY = new SecretKeySpec(new byte[32], "AES");
+
+    @TempDir
+    Path directory;
+
+    private final TaskScheduler scheduler = new TaskScheduler(1);
+    private final List<String> sent = new ArrayList<>();
+    private final List<String> failed = new ArrayList<>();
+    private MessageOutbox outbox;
+
+    private MessageOutbox open() {
+        MessageOutbox opened = new MessageOutbox(directory, "alice", KEY, scheduler);
+        opened.setTransport(batch -> {
+            batch.forEach(entry -> sent.add(entry.getClientTempId()));
+            return true;
+        });
+        opened.setFailureListener(entry -> failed.add(entry.getClientTempId()));
+        return opened;
+    }
+
+    @AfterEach
+    void closeOutbox() {
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    @Test
+    void acknowledgedMessageIsNeverResent() {
+        outbox = open();
+        outbox.enqueue("t1", "chat", "{}");
+        outbox.acknowledge("t1");
+
+        outbox.flush(System.currentTimeMillis() + MessageOutbox.ACK_TIMEOUT_MILLIS);
+
+        assertEquals(List.of("t1"), sent);
+        assertFalse(outbox.isQueued("t1"));
+    }
+
+    @Test
+    void unacknowledgedMessageIsResentWithTheSameClientTempIdOnlyAfterTheTimeout() {
+        outbox = open();
+        long now = System.currentTimeMillis();
+        outbox.enqueue("t1", "chat", "{}");
+        outbox.flush(now);
+        outbox.flush(now + 2 * MessageOutbox.ACK_TIMEOUT_MILLIS);
+
+        assertEquals(List.of("t1", "t1"), sent);
+        assertTrue(outbox.isQueued("t1"));
+    }
+
+    @Test
+    void messageIsGivenUpAfterMaxAttempts() {
+        outbox = open();
+        outbox.enqueue("t1", "chat", "{}");
+        long now = System.currentTimeMillis();
+        for (int attempt = 1; attempt <= MessageOutbox.MAX_ATTEMPTS; attempt++) {
+            now += 2 * MessageOutbox.ACK_TIMEOUT_MILLIS;
+            outbox.flush(now);
+        }
+
+        assertEquals(MessageOutbox.MAX_ATTEMPTS, sent.size());
+        assertEquals(List.of("t1"), failed);
+        assertFalse(outbox.isQueued("t1"));
+    }
+
+    @Test
+    void rejectedMessageIsDroppedAndReported() {
+        outbox = open();
+        outbox.enqueue("t1", "chat", "{}");
+        outbox.reject("t1", "Chat not found");
+        outbox.reject("t1", "Chat not found");
+
+        assertEquals(List.of("t1"), failed);
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    void queueSurvivesARestartSealed() throws Exception {
+        MessageOutbox first = open();
+        first.setTransport(batch -> false);
+        first.enqueue("t1", "chat", "{\"content\":\"secret payload\"}");
+        first.enqueue("t2", "chat", "{}");
+        first.acknowledge("t2");
+        first.close();
+
+        byte[] file = Files.readAllBytes(directory.resolve("outbox-alice.bin"));
+        assertFalse(new String(file, StandardCharsets.ISO_8859_1).contains("secret payload"));
+
+        outbox = open();
+        assertTrue(outbox.isQueued("t1"));
+        assertEquals(1, outbox.size());
+        outbox.flush();
+        assertEquals(List.of("t1"), sent);
+    }
+}
@@ -0,0 +1,85 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.crypto.IdentityKeys;
+import com.e2ee.chat.frontend.crypto.PublicKeyBundle;
+import com.e2ee.chat.frontend.crypto.SenderKeyStore;
+import com.e2ee.chat.frontend.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PendingGroupMessagesTest {
+
+    private static final String GROUP = "group-1";
+
+    private final IdentityKeys aliceKeys = IdentityKeys.generate();
+    private final IdentityKeys bobKeys = IdentityKeys.generate();
+    private final SenderKeyStore alice = new SenderKeyStore("alice");
+    private final SenderKeyStore bob = new SenderKeyStore("bob");
+    private final PendingGroupMessages pending = new PendingGroupMessages();
+
+    private static ChatMessage encrypted(String id, String envelope) {
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        message.setChatId(GROUP);
+        message.setSenderId("alice");
+        message.setType(ChatMessage.MessageType.ENCRYPTED_CHAT);
+        message.setContent(envelope);
+        return message;
+    }
+
+    /**
+     * What the UI does with a message whose chain is missing
+     */
+    private void receive(ChatMessage message) {
+        String ciphertext = message.getContent();
+        SenderKeyStore.MissingSenderKeyException missing = assertThrows(SenderKeyStore.MissingSenderKeyException.class,
+                () -> bob.decrypt(GROUP, "alice", ciphertext));
+        pending.add(missing.getGroupId(), missing.getSenderId(), missing.getKeyId(), message, ciphertext);
+        message.setContent(HistoryDecryptor.UNREADABLE_PLACEHOLDER);
+    }
+
+    @Test
+    void waitingMessagesDecryptOnceTheirChainArrives() {
+        // The distribution is wrapped off the UI thread, so the messages can overtake it
+        SenderKeyStore.PendingDistribution distributed = alice.prepareDistribution(GROUP, List.of("alice", "bob"));
+        String envelope = alice.encrypt(GROUP, "hello");
+        ChatMessage first = encrypted("m1", envelope);
+        ChatMessage second = encrypted("m2", alice.encrypt(GROUP, "again"));
+        receive(first);
+        receive(second);
+        // The same message from a re-fetched history page; the chat keeps the first copy
+        receive(encrypted("m1", envelope));
+        assertEquals(2, pending.size());
+
+        String distribution = distributed.wrapFor("bob", aliceKeys, PublicKeyBundle.parse(bobKeys.publicKeyBundle()));
+        String groupId = bob.processDistribution("alice", distribution, bobKeys,
+                PublicKeyBundle.parse(aliceKeys.publicKeyBundle()));
+
+        List<PendingGroupMessages.Pending> waiting = pending.take(groupId, "alice",
+                SenderKeyStore.distributedKeyId(distribution));
+        assertEquals(2, waiting.size());
+        assertSame(first, waiting.get(0).getMessage());
+        assertEquals("hello", bob.decrypt(GROUP, "alice", waiting.get(0).getCiphertext()));
+        assertEquals("again", bob.decrypt(GROUP, "alice", waiting.get(1).getCiphertext()));
+
+        assertTrue(pending.take(groupId, "alice", SenderKeyStore.distributedKeyId(distribution)).isEmpty());
+        assertEquals(0, pending.size());
+    }
+
+    @Test
+    void messagesBeyondTheBoundAreNotKept() {
+        PendingGroupMessages bounded = new PendingGroupMessages(1);
+        assertTrue(bounded.add(GROUP, "alice", "k1", encrypted("m1", "SK1:a"), "SK1:a"));
+        assertFalse(bounded.add(GROUP, "alice", "k1", encrypted("m2", "SK1:b"), "SK1:b"));
+
+        assertEquals(1, bounded.take(GROUP, "alice", "k1").size());
+        assertTrue(bounded.add(GROUP, "alice", "k1", encrypted("m2", "SK1:b"), "SK1:b"));
+    }
+}
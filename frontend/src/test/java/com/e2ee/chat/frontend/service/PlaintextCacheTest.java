@@ -0,0 +1,73 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.crypto.SenderKeyStore;
+import com.e2ee.chat.frontend.model.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlaintextCacheTest {
+
+    private static final String GROUP = "group-1";
+
+    // Room for one short message, so every decryption evicts the previous one
+    private final PlaintextCache cache = new PlaintextCache(150);
+    private final HistoryDecryptor decryptor = new HistoryDecryptor(cache, 1);
+
+    @AfterEach
+    void shutdown() {
+        decryptor.shutdown();
+    }
+
+    private static ChatMessage encrypted(String id, String envelope) {
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        message.setChatId(GROUP);
+        message.setSenderId("alice");
+        message.setType(ChatMessage.MessageType.ENCRYPTED_CHAT);
+        message.setContent(envelope);
+        return message;
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedByBytes() {
+        PlaintextCache cache = new PlaintextCache(400);
+        cache.put("m1", "a".repeat(50));
+        cache.put("m2", "b".repeat(50));
+        cache.get("m1");
+        cache.put("m3", "c".repeat(50));
+
+        assertNull(cache.get("m2"));
+        assertEquals("a".repeat(50), cache.get("m1"));
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.getCurrentBytes() <= 400);
+    }
+
+    @Test
+    void evictedGroupMessageDecryptsAgainOnTheNextPage() {
+        SenderKeyStore alice = new SenderKeyStore("alice");
+        List<String> envelopes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            envelopes.add(alice.encrypt(GROUP, "message " + i));
+        }
+
+        for (int fetch = 0; fetch < 2; fetch++) {
+            List<ChatMessage> page = new ArrayList<>();
+            for (int i = 0; i < envelopes.size(); i++) {
+                page.add(encrypted("m" + i, envelopes.get(i)));
+            }
+            decryptor.decryptPage(page, m -> alice.decrypt(m.getChatId(), m.getSenderId(), m.getContent())).join();
+
+            for (int i = 0; i < page.size(); i++) {
+                assertEquals("message " + i, page.get(i).getContent());
+            }
+        }
+        assertTrue(cache.getEvictions() > 0);
+    }
+}
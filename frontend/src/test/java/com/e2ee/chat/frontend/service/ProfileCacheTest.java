@@ -0,0 +1,110 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.model.ProfileBatchResponse;
+import com.e2ee.chat.frontend.model.UserProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProfileCacheTest {
+
+    private final AuthService authService = mock(AuthService.class);
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final ProfileCache cache = new ProfileCache(authService, now::get);
+
+    private static UserProfile profile(String profileId, String publicKey) {
+        UserProfile profile = new UserProfile();
+        profile.setProfileId(profileId);
+        profile.setPublicKey(publicKey);
+        return profile;
+    }
+
+    private static CompletableFuture<ProfileBatchResponse> response(List<UserProfile> profiles,
+                                                                    Map<String, String> etags, List<String> notModified) {
+        ProfileBatchResponse response = new ProfileBatchResponse();
+        response.setProfiles(profiles);
+        response.setEtags(etags);
+        response.setNotModified(notModified);
+        return CompletableFuture.completedFuture(response);
+    }
+
+    @Test
+    void freshEntryIsServedWithoutAFetch() {
+        when(authService.getProfilesBatchAsync(any(), anyMap()))
+                .thenReturn(response(List.of(profile("bob", "k1")), Map.of("bob", "e1"), List.of()));
+
+        UserProfile first = cache.get("bob");
+        now.addAndGet(ProfileCache.TTL_MILLIS);
+
+        assertTrue(cache.isFresh("bob"));
+        assertSame(first, cache.get("bob"));
+        verify(authService, times(1)).getProfilesBatchAsync(any(), anyMap());
+    }
+
+    @Test
+    void staleEntryIsRevalidatedWithItsEtag() {
+        when(authService.getProfilesBatchAsync(any(), anyMap()))
+                .thenReturn(response(List.of(profile("bob", "k1")), Map.of("bob", "e1"), List.of()));
+        UserProfile cached = cache.get("bob");
+
+        now.addAndGet(ProfileCache.TTL_MILLIS + 1);
+        assertFalse(cache.isFresh("bob"));
+        when(authService.getProfilesBatchAsync(Set.of("bob"), Map.of("bob", "e1")))
+                .thenReturn(response(List.of(), Map.of(), List.of("bob")));
+
+        assertSame(cached, cache.get("bob"));
+        assertTrue(cache.isFresh("bob"));
+    }
+
+    @Test
+    void rotatedKeyReplacesTheStaleProfile() {
+        when(authService.getProfilesBatchAsync(any(), anyMap()))
+                .thenReturn(response(List.of(profile("bob", "k1")), Map.of("bob", "e1"), List.of()));
+        cache.get("bob");
+
+        now.addAndGet(ProfileCache.TTL_MILLIS + 1);
+        when(authService.getProfilesBatchAsync(any(), eq(Map.of("bob", "e1"))))
+                .thenReturn(response(List.of(profile("bob", "k2")), Map.of("bob", "e2"), List.of()));
+
+        assertEquals("k2", cache.get("bob").getPublicKey());
+    }
+
+    @Test
+    void unreachableServerFallsBackToTheStaleProfile() {
+        when(authService.getProfilesBatchAsync(any(), anyMap()))
+                .thenReturn(response(List.of(profile("bob", "k1")), Map.of("bob", "e1"), List.of()));
+        cache.get("bob");
+
+        now.addAndGet(ProfileCache.TTL_MILLIS + 1);
+        when(authService.getProfilesBatchAsync(any(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals("k1", cache.get("bob").getPublicKey());
+        assertFalse(cache.isFresh("bob"));
+    }
+
+    @Test
+    void seededProfileIsFreshUntilItsTtl() {
+        cache.put(profile("carol", "k1"));
+
+        assertTrue(cache.isFresh("carol"));
+        assertEquals("k1", cache.get("carol").getPublicKey());
+        verify(authService, never()).getProfilesBatchAsync(any(), anyMap());
+    }
+}
@@ -0,0 +1,110 @@
+package com.e2ee.chat.frontend.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ReconnectManagerTest {
+
+    private static final String PURPOSE = "reconnect";
+
+    private final TaskScheduler scheduler = mock(TaskScheduler.class);
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final AtomicInteger opened = new AtomicInteger();
+    private boolean attemptSucceeds;
+    private final ReconnectManager manager = new ReconnectManager(scheduler, PURPOSE, () -> {
+        opened.incrementAndGet();
+        return attemptSucceeds;
+    }, now::get);
+
+    /**
+     * Fire the scheduled attempt the way the timer and worker would
+     */
+    private void runScheduledAttempt() {
+        ArgumentCaptor<Runnable> timer = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).scheduleLatest(eq(PURPOSE), timer.capture(), anyLong());
+        timer.getValue().run();
+        ArgumentCaptor<Runnable> worker = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).submitIfIdle(eq(PURPOSE + ":attempt"), worker.capture());
+        clearInvocations(scheduler);
+        worker.getValue().run();
+    }
+
+    @Test
+    void delayIsJitteredBelowTheGrowingCeiling() {
+        for (int attempt = 0; attempt < 24; attempt++) {
+            long ceiling = Math.min(ReconnectManager.MAX_DELAY_MILLIS, ReconnectManager.BASE_DELAY_MILLIS << Math.min(attempt, 16));
+            long longest = 0;
+            for (int sample = 0; sample < 500; sample++) {
+                long delay = ReconnectManager.nextDelay(attempt);
+                assertTrue(delay >= ReconnectManager.MIN_DELAY_MILLIS && delay <= ceiling, "delay " + delay);
+                longest = Math.max(longest, delay);
+            }
+            // Full jitter spreads over the whole window, not just its start
+            assertTrue(longest > ceiling / 2, "attempt " + attempt + " never went past " + longest);
+        }
+    }
+
+    @Test
+    void failedAttemptSchedulesTheNextOne() {
+        manager.start();
+        manager.connectionLost();
+        runScheduledAttempt();
+
+        assertEquals(1, opened.get());
+        assertEquals(2, manager.getAttempts());
+        verify(scheduler).scheduleLatest(eq(PURPOSE), any(Runnable.class), anyLong());
+    }
+
+    @Test
+    void successfulAttemptStopsRetrying() {
+        manager.start();
+        manager.connectionLost();
+        attemptSucceeds = true;
+        runScheduledAttempt();
+
+        verify(scheduler).cancel(PURPOSE);
+        verify(scheduler, never()).scheduleLatest(anyString(), any(Runnable.class), anyLong());
+    }
+
+    @Test
+    void onlyAStableConnectionResetsTheBackoff() {
+        manager.start();
+        for (int i = 0; i < 3; i++) {
+            manager.connectionLost();
+        }
+        manager.connected();
+        now.addAndGet(ReconnectManager.STABLE_AFTER_MILLIS - 1);
+        manager.connectionLost();
+        assertEquals(4, manager.getAttempts());
+
+        manager.connected();
+        now.addAndGet(ReconnectManager.STABLE_AFTER_MILLIS);
+        manager.connectionLost();
+        assertEquals(1, manager.getAttempts());
+    }
+
+    @Test
+    void stoppedManagerIgnoresLostConnections() {
+        manager.start();
+        manager.stop();
+        manager.connectionLost();
+
+        verify(scheduler).cancel(PURPOSE);
+        verify(scheduler, never()).scheduleLatest(anyString(), any(Runnable.class), anyLong());
+        assertEquals(0, manager.getAttempts());
+    }
+}
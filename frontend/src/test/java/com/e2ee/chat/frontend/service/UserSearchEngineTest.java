@@ -0,0 +1,76 @@
+package com.e2ee.chat.frontend.service;
+
+import com.e2ee.chat.frontend.model.UserProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UserSearchEngineTest {
+
+    private final List<String> requests = new ArrayList<>();
+    private final Map<String, UserProfile[]> responses = new HashMap<>();
+    private final UserSearchEngine engine = new UserSearchEngine(query -> {
+        requests.add(query);
+        return CompletableFuture.completedFuture(responses.getOrDefault(query, new UserProfile[0]));
+    }, new TaskScheduler(1), "search");
+
+    private static UserProfile user(String username, String displayName) {
+        UserProfile user = new UserProfile(username);
+        user.setDisplayName(displayName);
+        return user;
+    }
+
+    private List<String> search(String query) {
+        List<String> usernames = new ArrayList<>();
+        engine.searchNow(query, users -> users.forEach(user -> usernames.add(user.getUsername())));
+        return usernames;
+    }
+
+    @Test
+    void completePrefixResultIsNarrowedLocally() {
+        responses.put("jo", new UserProfile[]{user("john", "John Smith"), user("jolene", "Jolene")});
+
+        search("jo");
+        assertEquals(List.of("john"), search("joh"));
+
+        assertEquals(List.of("jo"), requests);
+    }
+
+    @Test
+    void resultAtTheServerCapIsNotNarrowed() {
+        responses.put("jo", new UserProfile[]{user("john", null), user("joe", null), user("josh", null), user("joan", null)});
+
+        search("jo");
+        search("joh");
+
+        assertEquals(List.of("jo", "joh"), requests);
+    }
+
+    @Test
+    void textFallbackResultIsNotNarrowed() {
+        // "runs" starts no name; the server answered from its text index ("running" stems to "run")
+        responses.put("runs", new UserProfile[]{user("alice", "Running Club")});
+
+        search("runs");
+        search("runsh");
+
+        assertEquals(List.of("runs", "runsh"), requests);
+    }
+
+    @Test
+    void extensionWithoutLocalMatchesAsksTheServer() {
+        // The server may still find "jon" through its text fallback
+        responses.put("jo", new UserProfile[]{user("john", null)});
+
+        search("jo");
+        search("jon");
+
+        assertEquals(List.of("jo", "jon"), requests);
+    }
+}